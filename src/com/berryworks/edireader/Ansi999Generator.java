@@ -61,13 +61,11 @@ public class Ansi999Generator extends AnsiFAGenerator {
         // Generate the ST 999
         logger.debug("generating first part of 999");
         thisDocumentCount++;
-        ackStream.write("ST" + delimiter + "999" + delimiter + CONTROL_NUMBER_999 + delimiter + groupVersion);
-        ackStream.write(terminatorWithSuffix);
+        segmentWriter().segment("ST").element("999").element(CONTROL_NUMBER_999).element(groupVersion)
+                .writeTo(ackStream);
 
         // Generate the AK1 segment to identify the group being acknowledged
-        ackStream.write("AK1" + delimiter + groupFunctionCode + delimiter
-                + groupControlNumber);
-        ackStream.write(terminatorWithSuffix);
+        segmentWriter().segment("AK1").element(groupFunctionCode).element(groupControlNumber).writeTo(ackStream);
         headerGenerated = true;
     }
 
@@ -75,13 +73,10 @@ public class Ansi999Generator extends AnsiFAGenerator {
     protected void generateTransactionAcknowledgmentUsing(String transactionCode, String controlNumber) {
         logger.debug("generating AK2/IK5");
         // Generate the AK2 segment to identify the transaction set
-        ackStream.writeTrunk("AK2" + delimiter + transactionCode + delimiter
-                + controlNumber);
-        ackStream.writeTrunk(terminatorWithSuffix);
+        segmentWriter().segment("AK2").element(transactionCode).element(controlNumber).writeTrunkTo(ackStream);
 
         // Generate the IK5 segment acknowledging the transaction set
-        ackStream.writeTrunk("IK5" + delimiter + "A");
-        ackStream.writeTrunk(terminatorWithSuffix);
+        segmentWriter().segment("IK5").element("A").writeTrunkTo(ackStream);
     }
 
 
@@ -22,12 +22,15 @@ package com.berryworks.edireader;
 
 import com.berryworks.edireader.util.BranchingWriter;
 import com.berryworks.edireader.util.DateTimeGenerator;
+import com.berryworks.edireader.util.SegmentWriter;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
 
 import static com.berryworks.edireader.util.FixedLength.valueOf;
 
@@ -50,6 +53,7 @@ public class AnsiFAGenerator extends ReplyGenerator {
     protected boolean groupTrailerGenerated;
     protected char delimiter;
     protected String terminatorWithSuffix;
+    private SegmentWriter segmentWriter;
 
     private static final String CONTROL_NUMBER_997 = "0001";
 
@@ -80,13 +84,10 @@ public class AnsiFAGenerator extends ReplyGenerator {
         // Generate the ST 997
         logger.debug("generating first part of 997");
         thisDocumentCount++;
-        ackStream.write("ST" + delimiter + "997" + delimiter + CONTROL_NUMBER_997);
-        ackStream.write(terminatorWithSuffix);
+        segmentWriter().segment("ST").element("997").element(CONTROL_NUMBER_997).writeTo(ackStream);
 
         // Generate the AK1 segment to identify the group being acknowledged
-        ackStream.write("AK1" + delimiter + groupFunctionCode + delimiter
-                + groupControlNumber);
-        ackStream.write(terminatorWithSuffix);
+        segmentWriter().segment("AK1").element(groupFunctionCode).element(groupControlNumber).writeTo(ackStream);
         headerGenerated = true;
     }
 
@@ -102,13 +103,10 @@ public class AnsiFAGenerator extends ReplyGenerator {
     protected void generateTransactionAcknowledgmentUsing(String transactionCode, String controlNumber) {
         logger.debug("generating AK2/AK5");
         // Generate the AK2 segment to identify the transaction set
-        ackStream.writeTrunk("AK2" + delimiter + transactionCode + delimiter
-                + controlNumber);
-        ackStream.writeTrunk(terminatorWithSuffix);
+        segmentWriter().segment("AK2").element(transactionCode).element(controlNumber).writeTrunkTo(ackStream);
 
         // Generate the AK5 segment acknowledging the transaction set
-        ackStream.writeTrunk("AK5" + delimiter + "A");
-        ackStream.writeTrunk(terminatorWithSuffix);
+        segmentWriter().segment("AK5").element("A").writeTrunkTo(ackStream);
     }
 
     @Override
@@ -120,19 +118,17 @@ public class AnsiFAGenerator extends ReplyGenerator {
         logger.debug("generating AK9, SE");
         // For the trunk, generate the AK9 segment to designate acceptance of the entire
         // functional group.
-        ackStream.writeTrunk("AK9" + delimiter + "A" + delimiter + docCount
-                + delimiter + docCount + delimiter + docCount);
+        segmentWriter().segment("AK9").element("A").element(docCount).element(docCount).element(docCount)
+                .writeTrunkTo(ackStream);
         // For the branch, generate the AK9 segment to designate rejection of the entire
         // functional group.
-        ackStream.writeBranch("AK9" + delimiter + "R" + delimiter + docCount
-                + delimiter + docCount + delimiter + "0");
-        ackStream.write(terminatorWithSuffix);
+        segmentWriter().segment("AK9").element("R").element(docCount).element(docCount).element("0")
+                .writeBranchTo(ackStream);
 
         // Generate the SE to match the ST
         final int segmentCount = 4 + (standardReader.isGroupAcknowledgment() ? 0 : 2 * docCount);
-        ackStream.writeTrunk("SE" + delimiter + segmentCount + delimiter + CONTROL_NUMBER_997);
-        ackStream.writeBranch("SE" + delimiter + "4" + delimiter + CONTROL_NUMBER_997);
-        ackStream.write(terminatorWithSuffix);
+        segmentWriter().segment("SE").element(segmentCount).element(CONTROL_NUMBER_997).writeTrunkTo(ackStream);
+        segmentWriter().segment("SE").element(4).element(CONTROL_NUMBER_997).writeBranchTo(ackStream);
         groupTrailerGenerated = true;
     }
 
@@ -158,12 +154,10 @@ public class AnsiFAGenerator extends ReplyGenerator {
 
         logger.debug("generating GE, IEA");
         // Generate the GE to match the GS
-        ackStream.write("GE" + delimiter + thisDocumentCount + delimiter + thisGroupControlNumber);
-        ackStream.write(terminatorWithSuffix);
+        segmentWriter().segment("GE").element(thisDocumentCount).element(thisGroupControlNumber).writeTo(ackStream);
 
         // Finish with an IEA corresponding to the ISA
-        ackStream.write("IEA" + delimiter + "1" + delimiter + thisInterchangeControlNumber);
-        ackStream.write(terminatorWithSuffix);
+        segmentWriter().segment("IEA").element(1).element(thisInterchangeControlNumber).writeTo(ackStream);
         if (positiveFA)
             ackStream.close();
         else
@@ -218,13 +212,12 @@ public class AnsiFAGenerator extends ReplyGenerator {
         ackStream.write(terminatorWithSuffix);
 
         if (standardReader.isInterchangeAcknowledgment()) {
-            ackStream.write("TA1" + delimiter +
-                    thisInterchangeControlNumber + delimiter +
-                    valueOf(isaFields[9], 6) + delimiter +
-                    valueOf(isaFields[10], 4) + delimiter);
-            ackStream.writeTrunk("A" + delimiter + "000");
-            ackStream.writeBranch("R" + delimiter + "022");
-            ackStream.write(terminatorWithSuffix);
+            String date = valueOf(isaFields[9], 6);
+            String time = valueOf(isaFields[10], 4);
+            segmentWriter().segment("TA1").element(thisInterchangeControlNumber).element(date).element(time)
+                    .element("A").element("000").writeTrunkTo(ackStream);
+            segmentWriter().segment("TA1").element(thisInterchangeControlNumber).element(date).element(time)
+                    .element("R").element("022").writeBranchTo(ackStream);
         }
 
         // There are several ways we could select a control number for the GS/GE segments.
@@ -234,20 +227,37 @@ public class AnsiFAGenerator extends ReplyGenerator {
         thisGroupControlNumber = thisInterchangeControlNumber;
 
         // Write the GS segment
-        ackStream.write("GS" + delimiter + "FA" + delimiter + groupReceiver
-                + delimiter + groupSender + delimiter
-                + controlDateAndTime(groupDateLength, delimiter) + delimiter
-                + thisGroupControlNumber + delimiter + "X" + delimiter
-                + groupVersion);
-        ackStream.write(terminatorWithSuffix);
+        segmentWriter().segment("GS").element("FA").element(groupReceiver).element(groupSender)
+                .element(controlDateAndTime(groupDateLength, delimiter))
+                .element(thisGroupControlNumber).element("X").element(groupVersion).writeTo(ackStream);
 
         preambleGenerated = true;
     }
 
     private String[] splitOnDelimiter() {
-        final String delimiterAsString = String.valueOf(referencedISA.charAt(3));
-        final String delimiterPattern = REGEX_CHARS_NEEDING_ESCAPE.contains(delimiterAsString) ? REGEX_PREFIX + delimiter : delimiterAsString;
-        return referencedISA.split(delimiterPattern);
+        final char isaDelimiter = referencedISA.charAt(3);
+        final List<String> fields = new ArrayList<>(17);
+        int start = 0;
+        for (int i = 0; i < referencedISA.length(); i++) {
+            if (referencedISA.charAt(i) == isaDelimiter) {
+                fields.add(referencedISA.substring(start, i));
+                start = i + 1;
+            }
+        }
+        fields.add(referencedISA.substring(start));
+        return fields.toArray(new String[0]);
+    }
+
+    /**
+     * Returns the SegmentWriter used to form the segments of the acknowledgment, establishing
+     * the syntax characters if that has not already been done.
+     *
+     * @return SegmentWriter
+     */
+    protected SegmentWriter segmentWriter() {
+        if (segmentWriter == null)
+            establishSyntaxCharacters();
+        return segmentWriter;
     }
 
     private void establishSyntaxCharacters() {
@@ -272,6 +282,7 @@ public class AnsiFAGenerator extends ReplyGenerator {
             terminatorSuffix = standardReader.getTerminatorSuffix();
 
         terminatorWithSuffix = terminator + terminatorSuffix;
+        segmentWriter = new SegmentWriter(delimiter, terminatorWithSuffix);
     }
 
     @Override
@@ -21,6 +21,7 @@
 package com.berryworks.edireader;
 
 import com.berryworks.edireader.error.MissingMandatoryElementException;
+import com.berryworks.edireader.tokenizer.AbstractTokenizer;
 import com.berryworks.edireader.tokenizer.Token;
 import com.berryworks.edireader.util.ContentHandlerBase64Encoder;
 import com.berryworks.edireader.util.FixedLength;
@@ -29,10 +30,13 @@ import com.berryworks.edireader.util.sax.QueuedContentHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static com.berryworks.edireader.tokenizer.Token.TokenType.SEGMENT_END;
 import static com.berryworks.edireader.tokenizer.Token.TokenType.SEGMENT_START;
@@ -49,6 +53,17 @@ import static com.berryworks.edireader.tokenizer.Token.TokenType.SEGMENT_START;
 public class AnsiReader extends StandardReader {
     private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
 
+    /**
+     * Number of chars of a BIN data object read from the tokenizer at a time
+     */
+    private static final int BIN_PORTION_SIZE = 3 * 4096;
+
+    /**
+     * Segment types at which the passing over of segments within a transaction stops
+     * when acknowledgmentOnly is set.
+     */
+    private static final String[] TRANSACTION_BODY_END = {"SE", "BIN", "ST", "GS", "GE", "ISA", "IEA", "TA1"};
+
     /**
      * Group-level function code (for example: PO)
      */
@@ -74,6 +89,18 @@ public class AnsiReader extends StandardReader {
      */
     protected String groupDate;
 
+    /**
+     * Type and control number of the transaction most recently parsed by parseDocument()
+     */
+    private String transactionDocumentType;
+    private String transactionControl;
+
+    /**
+     * Threads created for parsing transactions in parallel when no executor is designated,
+     * shared by the functional groups of an interchange.
+     */
+    private ExecutorService pipelineExecutor;
+
 
     @Override
     protected Token recognizeBeginning() throws IOException, EDISyntaxException {
@@ -202,7 +229,7 @@ public class AnsiReader extends StandardReader {
                 logger.warn(se.getMessage());
                 throw se;
             }
-            String sType = token.getValue();
+            String sType = token.getSegmentType();
             switch (sType) {
                 case "GS":
                     setGroupCount(1 + getGroupCount());
@@ -346,27 +373,50 @@ public class AnsiReader extends StandardReader {
                 groupSender, groupReceiver, groupDate.length(), groupVersion,
                 groupFunctionCode, getGroupControlNumber());
 
-        label:
-        while (true) {
-            token = getTokenizer().nextToken();
-            if (token.getType() != SEGMENT_START) {
-                EDISyntaxException se = new EDISyntaxException(INVALID_BEGINNING_OF_SEGMENT, getTokenizer().getSegmentCount());
-                logger.warn(se.getMessage());
-                throw se;
-            }
-            String sType = token.getValue();
-            switch (sType) {
-                case "ST":
-                    docCount++;
-                    parseDocument(token);
-                    break;
-                case "GE":
-                    break label;
-                default:
-                    EDISyntaxException se = new EDISyntaxException(UNEXPECTED_SEGMENT_IN_CONTEXT, "GE or ST", sType, getTokenizer());
+        AnsiTransactionPipeline pipeline = createTransactionPipeline();
+        try {
+            label:
+            while (true) {
+                token = getTokenizer().nextToken();
+                if (token.getType() != SEGMENT_START) {
+                    EDISyntaxException se = new EDISyntaxException(INVALID_BEGINNING_OF_SEGMENT, getTokenizer().getSegmentCount());
                     logger.warn(se.getMessage());
                     throw se;
+                }
+                String sType = token.getSegmentType();
+                switch (sType) {
+                    case "ST":
+                        docCount++;
+                        if (pipeline == null)
+                            parseDocument(token);
+                        else
+                            pipeline.submit(token);
+                        break;
+                    case "GE":
+                        break label;
+                    default:
+                        EDISyntaxException se = new EDISyntaxException(UNEXPECTED_SEGMENT_IN_CONTEXT, "GE or ST", sType, getTokenizer());
+                        logger.warn(se.getMessage());
+                        throw se;
+                }
+            }
+            if (pipeline != null)
+                pipeline.drain();
+        } catch (SAXException | IOException | RuntimeException e) {
+            // Deliver the transactions parsed in parallel ahead of the failure. A failure among them
+            // occurred earlier in the input, and is the one parsing in turn would have encountered.
+            if (pipeline != null) {
+                try {
+                    pipeline.drain();
+                } catch (SAXException | IOException | RuntimeException drainFailure) {
+                    drainFailure.addSuppressed(e);
+                    throw drainFailure;
+                }
             }
+            throw e;
+        } finally {
+            if (pipeline != null)
+                pipeline.close();
         }
 
         checkTransactionCount(docCount, getTokenizer().nextIntValue(), COUNT_GE);
@@ -380,6 +430,80 @@ public class AnsiReader extends StandardReader {
     protected void process(String ediElement, String value) throws SAXException {
     }
 
+    /**
+     * Returns a pipeline for parsing the transactions of a functional group on multiple threads,
+     * or null if the transactions are to be parsed in turn by parseDocument().
+     *
+     * @return AnsiTransactionPipeline, or null
+     */
+    private AnsiTransactionPipeline createTransactionPipeline() {
+        if (getTransactionParallelism() < 2 || isAcknowledgmentOnly() || !(getTokenizer() instanceof AbstractTokenizer))
+            return null;
+        // A TransactionCallback or copy writer must observe each transaction as the tokenizer reads it
+        AbstractTokenizer tokenizer = (AbstractTokenizer) getTokenizer();
+        if (getTransactionCallback() != null || tokenizer.getWriter() != null)
+            return null;
+
+        ExecutorService executor = getTransactionExecutor();
+        if (executor == null) {
+            if (pipelineExecutor == null)
+                pipelineExecutor = Executors.newFixedThreadPool(getTransactionParallelism(), runnable -> {
+                    Thread thread = new Thread(runnable, "AnsiTransactionPipeline");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            executor = pipelineExecutor;
+        }
+        return new AnsiTransactionPipeline(this, tokenizer, executor);
+    }
+
+    /**
+     * Parses the interchange, releasing upon return any threads created for parsing its transactions in parallel.
+     */
+    @Override
+    public void parse(InputSource source) throws SAXException, IOException {
+        try {
+            super.parse(source);
+        } finally {
+            if (pipelineExecutor != null) {
+                pipelineExecutor.shutdownNow();
+                pipelineExecutor = null;
+            }
+        }
+    }
+
+    /**
+     * Creates the AnsiReader used to parse a single transaction when transactions are parsed on
+     * multiple threads. A subclass that customizes the parsing of transactions should override
+     * this method to return an instance of itself.
+     *
+     * @return AnsiReader
+     * @see #setTransactionParallelism(int)
+     */
+    protected AnsiReader createTransactionReader() {
+        return new AnsiReader();
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        groupFunctionCode = null;
+        groupSender = null;
+        groupReceiver = null;
+        groupVersion = null;
+        groupDate = null;
+        transactionDocumentType = null;
+        transactionControl = null;
+    }
+
+    String getTransactionDocumentType() {
+        return transactionDocumentType;
+    }
+
+    String getTransactionControl() {
+        return transactionControl;
+    }
+
     /**
      * Parse ANSI Document/Transaction Set (ST .. SE)
      *
@@ -396,7 +520,7 @@ public class AnsiReader extends StandardReader {
         int segCount = 2;
 
         if (getTransactionCallback() != null)
-            getTransactionCallback().startTransaction(token.getValue());
+            getTransactionCallback().startTransaction(token.getSegmentType());
 
         getDocumentAttributes().clear();
         getDocumentAttributes().addCDATA(getXMLTags().getDocumentType(),
@@ -428,8 +552,16 @@ public class AnsiReader extends StandardReader {
 
         startMessage(getDocumentAttributes());
 
+        AbstractTokenizer skippingTokenizer = isAcknowledgmentOnly() && getTokenizer() instanceof AbstractTokenizer
+                ? (AbstractTokenizer) getTokenizer() : null;
+
         String segmentType;
-        while (!(segmentType = getTokenizer().nextSegment()).equals("SE")) {
+        while (true) {
+            if (skippingTokenizer != null)
+                // Pass over segments of no interest for acknowledgments, counting them for the SE check
+                segCount += skippingTokenizer.skipSegmentsUntil(TRANSACTION_BODY_END);
+            if ((segmentType = getTokenizer().nextSegment()).equals("SE"))
+                break;
             if (isEnvelopeSegment(segmentType)) {
                 EDISyntaxException se = new EDISyntaxException(SE_MISSING, getTokenizer());
                 logger.warn(se.getMessage());
@@ -453,6 +585,8 @@ public class AnsiReader extends StandardReader {
 
         checkSegmentCount(segCount, getTokenizer().nextIntValue(), COUNT_SE);
         checkTransactionControlNumber(control, getTokenizer().nextSimpleValue(), CONTROL_NUMBER_SE);
+        transactionDocumentType = documentType;
+        transactionControl = control;
         getAckGenerator().generateTransactionAcknowledgment(documentType, control);
         getAlternateAckGenerator().generateTransactionAcknowledgment(documentType, control);
         endElement(getXMLTags().getDocumentTag());
@@ -474,7 +608,8 @@ public class AnsiReader extends StandardReader {
             // If it is already queued, then no need to wrap it
         } else {
             if (pluginController.isQueuedContentHandlerRequired()) {
-                setContentHandler(new QueuedContentHandler(contentHandler, 10, getTokenizer()));
+                setContentHandler(new QueuedContentHandler(contentHandler,
+                        pluginController.getQueuedContentHandlerCapacity(), getTokenizer()));
                 result = true;
             }
         }
@@ -515,12 +650,23 @@ public class AnsiReader extends StandardReader {
             throw se;
         }
 
-        char[] dataObject = getTokenizer().getChars(length);
-        getTokenizer().nextToken();
-
         getDocumentAttributes().clear();
         startElement(getXMLTags().getPackageTag(), getDocumentAttributes());
-        new ContentHandlerBase64Encoder().encode(dataObject, getContentHandler());
+
+        // Stream the data object through the encoder a portion at a time
+        // rather than reading all of it into memory first.
+        ContentHandlerBase64Encoder encoder = new ContentHandlerBase64Encoder();
+        encoder.start(getContentHandler());
+        char[] portion = new char[Math.min(length, BIN_PORTION_SIZE)];
+        for (int remaining = length; remaining > 0; ) {
+            int n = Math.min(remaining, portion.length);
+            getTokenizer().getChars(portion, 0, n);
+            encoder.encode(portion, 0, n);
+            remaining -= n;
+        }
+        encoder.finish();
+        getTokenizer().nextToken();
+
         endElement(getXMLTags().getPackageTag());
     }
 
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2005-2019 by BerryWorks Software, LLC. All rights reserved.
+ *
+ * This file is part of EDIReader. You may obtain a license for its use directly from
+ * BerryWorks Software, and you may also choose to use this software under the terms of the
+ * GPL version 3. Other products in the EDIReader software suite are available only by licensing
+ * with BerryWorks. Only those files bearing the GPL statement below are available under the GPL.
+ *
+ * EDIReader is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * EDIReader is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with EDIReader.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.berryworks.edireader;
+
+import com.berryworks.edireader.error.EDISyntaxExceptionHandler;
+import com.berryworks.edireader.error.RecoverableSyntaxException;
+import com.berryworks.edireader.tokenizer.AbstractTokenizer;
+import com.berryworks.edireader.tokenizer.EDITokenizer;
+import com.berryworks.edireader.tokenizer.Token;
+import com.berryworks.edireader.util.sax.SAXEventRecorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.*;
+
+/**
+ * Parses the transactions of an ANSI X12 functional group on multiple threads on behalf of an AnsiReader.
+ * <p>
+ * As each ST segment is encountered, the AnsiReader's tokenizer copies the raw text of the transaction
+ * through its SE segment without forming tokens, and the transaction is parsed on a worker thread by a
+ * separate AnsiReader with its own tokenizer and PluginController. The SAX calls of each transaction are
+ * recorded, and are passed to the ContentHandler of the AnsiReader in the original order of the
+ * transactions, on the thread calling parse(). The acknowledgment of each transaction is generated
+ * at that point as well, so that acknowledgments are generated in order by the AnsiReader's own
+ * acknowledgment generators. The SE segment count and control number are checked by the worker
+ * just as parseDocument() does; the GE and IEA counts and control numbers continue to be checked
+ * by the AnsiReader itself.
+ * <p>
+ * If the parsing of a transaction fails, the SAX calls it made before failing are passed along and
+ * the exception is thrown, as if the transaction had been parsed in turn. Transactions that follow
+ * it are discarded.
+ * <p>
+ * The workers parse without the AnsiReader's EDISyntaxExceptionHandler. A transaction whose parsing
+ * fails with a recoverable syntax exception is parsed again when its turn comes, on the thread calling
+ * parse(), this time with the handler, so that the handler is called in the order of the input and
+ * only for transactions that parsing in turn would have reached.
+ */
+class AnsiTransactionPipeline {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
+
+    private static final String[] TRANSACTION_END = {"SE", "ST", "GS", "GE", "ISA", "IEA", "TA1"};
+
+    private final AnsiReader reader;
+    private final AbstractTokenizer tokenizer;
+    private final ExecutorService executor;
+    private final int window;
+    private final Deque<Future<TransactionResult>> pending = new ArrayDeque<>();
+    private boolean failed;
+
+    AnsiTransactionPipeline(AnsiReader reader, AbstractTokenizer tokenizer, ExecutorService executor) {
+        this.reader = reader;
+        this.tokenizer = tokenizer;
+        this.executor = executor;
+        window = 2 * reader.getTransactionParallelism();
+    }
+
+    /**
+     * Arranges for a transaction to be parsed. This is called in lieu of parseDocument(), when the tokenizer
+     * has just returned the SEGMENT_START token of the ST segment. Upon return, the tokenizer is positioned
+     * after the SE segment, and the SAX calls of an earlier transaction may have been delivered.
+     *
+     * @param token the SEGMENT_START token of the ST segment
+     * @throws SAXException for problem emitting SAX events, or from the parsing of an earlier transaction
+     * @throws IOException  for problem reading EDI data
+     */
+    void submit(Token token) throws SAXException, IOException {
+        int precedingSegments = tokenizer.getSegmentCount() - 1;
+        StringBuilder text = new StringBuilder(1024).append(token.getValue());
+        tokenizer.copySegmentsThrough(text, TRANSACTION_END);
+        int precedingChars = tokenizer.getCharCount() - text.length();
+
+        TransactionTask task = new TransactionTask(text.toString(), precedingSegments, precedingChars);
+        pending.add(executor.submit(task));
+        if (pending.size() >= window)
+            deliver(pending.removeFirst());
+    }
+
+    /**
+     * Delivers the SAX calls of all transactions submitted so far, waiting for their parsing to complete.
+     *
+     * @throws SAXException for problem emitting SAX events, or from the parsing of a transaction
+     * @throws IOException  for problem reading EDI data
+     */
+    void drain() throws SAXException, IOException {
+        while (!failed && !pending.isEmpty())
+            deliver(pending.removeFirst());
+    }
+
+    /**
+     * Discards any transactions not yet delivered. The executor is left running for use by later pipelines.
+     */
+    void close() {
+        for (Future<TransactionResult> future : pending)
+            future.cancel(true);
+        pending.clear();
+    }
+
+    private void deliver(Future<TransactionResult> future) throws SAXException, IOException {
+        TransactionResult result;
+        try {
+            result = future.get();
+        } catch (InterruptedException e) {
+            failed = true;
+            Thread.currentThread().interrupt();
+            throw new SAXException("Interrupted while parsing transactions in parallel", e);
+        } catch (ExecutionException e) {
+            failed = true;
+            throw new SAXException(e.getCause().getMessage(), (Exception) e.getCause());
+        }
+
+        EDISyntaxExceptionHandler syntaxExceptionHandler = reader.getSyntaxExceptionHandler();
+        if (result.failure instanceof RecoverableSyntaxException && syntaxExceptionHandler != null)
+            // Parse the transaction again, giving the handler the chance to recover
+            result = result.task.parse(syntaxExceptionHandler);
+
+        TransactionCallback transactionCallback = reader.getTransactionCallback();
+        if (transactionCallback != null)
+            transactionCallback.startTransaction("ST");
+
+        result.recorder.replay(reader.getContentHandler());
+        if (result.syntaxException != null)
+            reader.setSyntaxException(result.syntaxException);
+
+        if (result.failure != null) {
+            failed = true;
+            if (result.failure instanceof SAXException) throw (SAXException) result.failure;
+            if (result.failure instanceof IOException) throw (IOException) result.failure;
+            if (result.failure instanceof RuntimeException) throw (RuntimeException) result.failure;
+            throw (Error) result.failure;
+        }
+
+        reader.getAckGenerator().generateTransactionAcknowledgment(result.documentType, result.control);
+        reader.getAlternateAckGenerator().generateTransactionAcknowledgment(result.documentType, result.control);
+
+        if (transactionCallback != null)
+            transactionCallback.endTransaction();
+    }
+
+    private static class TransactionResult {
+        private final SAXEventRecorder recorder = new SAXEventRecorder();
+        private final TransactionTask task;
+        private String documentType;
+        private String control;
+        private RecoverableSyntaxException syntaxException;
+        private Throwable failure;
+
+        TransactionResult(TransactionTask task) {
+            this.task = task;
+        }
+    }
+
+    /**
+     * Parses the text of a single transaction, from its ST segment through its SE segment.
+     */
+    private class TransactionTask implements Callable<TransactionResult> {
+        private final String text;
+        private final int precedingSegments;
+        private final int precedingChars;
+        private final String groupVersion;
+        private final String standardCode;
+
+        TransactionTask(String text, int precedingSegments, int precedingChars) {
+            this.text = text;
+            this.precedingSegments = precedingSegments;
+            this.precedingChars = precedingChars;
+            // Capture the context of the functional group, which may change before the task runs
+            groupVersion = reader.groupVersion;
+            standardCode = reader.getGroupAttributes().getValue(reader.getXMLTags().getStandardCode());
+        }
+
+        @Override
+        public TransactionResult call() {
+            return parse(null);
+        }
+
+        /**
+         * Parses the transaction, calling a syntax exception handler if one is given.
+         */
+        TransactionResult parse(EDISyntaxExceptionHandler syntaxExceptionHandler) {
+            TransactionResult result = new TransactionResult(this);
+
+            EDITokenizer transactionTokenizer = new EDITokenizer(new StringReader(text));
+            transactionTokenizer.setPrecedingCounts(precedingSegments, precedingChars);
+            transactionTokenizer.setDelimiter(reader.getDelimiter());
+            transactionTokenizer.setSubDelimiter(reader.getSubDelimiter());
+            transactionTokenizer.setRelease(reader.getRelease());
+            transactionTokenizer.setRepetitionSeparator(reader.getRepetitionSeparator());
+            transactionTokenizer.setTerminator(reader.getTerminator());
+
+            AnsiReader transactionReader = reader.createTransactionReader();
+            transactionReader.setTokenizer(transactionTokenizer);
+            transactionReader.setContentHandler(result.recorder);
+            transactionReader.setXMLTags(reader.getXMLTags());
+            transactionReader.setNamespaceEnabled(reader.isNamespaceEnabled());
+            transactionReader.setIncludeSyntaxCharacters(reader.isIncludeSyntaxCharacters());
+            transactionReader.setSyntaxExceptionHandler(syntaxExceptionHandler);
+            transactionReader.setPluginControllerFactory(reader.getPluginControllerFactory());
+            transactionReader.setDelimiter(reader.getDelimiter());
+            transactionReader.setSubDelimiter(reader.getSubDelimiter());
+            transactionReader.setRelease(reader.getRelease());
+            transactionReader.setRepetitionSeparator(reader.getRepetitionSeparator());
+            transactionReader.setTerminator(reader.getTerminator());
+            transactionReader.groupVersion = groupVersion;
+            if (standardCode != null)
+                transactionReader.getGroupAttributes().addCDATA(reader.getXMLTags().getStandardCode(), standardCode);
+
+            try {
+                Token token = transactionTokenizer.nextToken();
+                transactionReader.parseDocument(token);
+                result.documentType = transactionReader.getTransactionDocumentType();
+                result.control = transactionReader.getTransactionControl();
+            } catch (Exception | Error e) {
+                logger.debug("Transaction parsed in parallel failed: {}", e.getMessage());
+                result.failure = e;
+            }
+            result.syntaxException = transactionReader.getSyntaxException();
+            return result;
+        }
+    }
+}
@@ -24,10 +24,12 @@ import com.berryworks.edireader.error.EDISyntaxExceptionHandler;
 import com.berryworks.edireader.tokenizer.EDITokenizer;
 import com.berryworks.edireader.tokenizer.Tokenizer;
 import com.berryworks.edireader.util.BranchingWriter;
+import com.berryworks.edireader.util.SpillingBranchingWriter;
 import org.xml.sax.*;
 
 import java.io.*;
 import java.util.Locale;
+import java.util.concurrent.ExecutorService;
 
 
 /**
@@ -104,6 +106,18 @@ public abstract class EDIAbstractReader implements XMLReader {
      */
     private BranchingWriter alternateAckStream;
 
+    /**
+     * Number of chars of acknowledgment output held in memory before it is moved to a temporary file,
+     * or 0 if it is always held in memory.
+     */
+    private int acknowledgmentSpillThreshold;
+
+    /**
+     * Should the segments within each transaction be passed over without being parsed,
+     * when only acknowledgments are of interest?
+     */
+    private boolean acknowledgmentOnly;
+
     /**
      * If acknowledgements are being written, should an interchange acknowledgment be included?
      * For ANSI X12, this would be a TA1 segment after the ISA.
@@ -168,6 +182,26 @@ public abstract class EDIAbstractReader implements XMLReader {
 
     private TransactionCallback transactionCallback;
 
+    /**
+     * Initial capacity, in chars, of the buffer used by a tokenizer reading the EDI input
+     */
+    private int tokenizerBufferSize = EDITokenizer.BUFFER_SIZE;
+
+    /**
+     * If true, the tokenizer's buffer may grow as the EDI input is read
+     */
+    private boolean adaptiveBuffer;
+
+    /**
+     * Number of transactions within a functional group that may be parsed at the same time
+     */
+    private int transactionParallelism = 1;
+
+    /**
+     * Executor on which transactions are parsed when transactionParallelism is greater than 1
+     */
+    private ExecutorService transactionExecutor;
+
     /**
      * Gets the character marking the boundary between segments
      *
@@ -349,10 +383,13 @@ public abstract class EDIAbstractReader implements XMLReader {
      */
     protected void parseSetup(InputSource source) throws EDISyntaxException,
             IOException {
-        Reader inputReader = createReader(source);
-
-        if (tokenizer == null)
-            setTokenizer(new EDITokenizer(inputReader));
+        // A tokenizer already in place, as arranged by EDIReaderFactory, has its own
+        // source of input and the InputSource is not consulted.
+        if (tokenizer == null) {
+            EDITokenizer ediTokenizer = new EDITokenizer(createReader(source), tokenizerBufferSize);
+            ediTokenizer.setAdaptive(adaptiveBuffer);
+            setTokenizer(ediTokenizer);
+        }
 
         if (!previewed) {
             preview();
@@ -372,6 +409,72 @@ public abstract class EDIAbstractReader implements XMLReader {
      */
     public abstract void preview() throws EDISyntaxException, IOException;
 
+    /**
+     * Returns this parser to the state in which it can parse another interchange, as if it had
+     * been newly constructed except that its configuration is retained. Everything learned from
+     * an earlier interchange is forgotten, including its syntax characters, its tokenizer, and
+     * the acknowledgment streams, which must therefore be set again if acknowledgments are wanted.
+     * Configuration such as the ContentHandler, the syntax exception handler, and buffering
+     * options remain in effect. Subclasses that hold state of their own should override this
+     * method, calling super.reset().
+     */
+    public void reset() {
+        tokenizer = null;
+        delimiter = 0;
+        subDelimiter = 0;
+        subSubDelimiter = 0;
+        decimalMark = 0;
+        repetitionSeparator = 0;
+        terminator = 0;
+        release = 0;
+        terminatorSuffix = null;
+        ackStream = null;
+        alternateAckStream = null;
+        firstSegment = null;
+        interchangeAttributes.clear();
+        groupAttributes.clear();
+        documentAttributes.clear();
+        previewed = false;
+    }
+
+    /**
+     * Equivalent to reset(source, null).
+     *
+     * @param source EDI input for the next parse
+     * @throws IOException if problem establishing a Reader from the source
+     */
+    public void reset(InputSource source) throws IOException {
+        reset(source, null);
+    }
+
+    /**
+     * Resets this parser as reset() does, and arranges for the next call to parse() to read the
+     * given source. If the parser was reading with an EDITokenizer, that tokenizer and its buffer
+     * are kept and reset to read the new source instead of constructing another. The preRead
+     * chars are treated as data appearing before the first char of the source, as with
+     * EDIReaderFactory.createEDIReader(source, preRead).
+     *
+     * @param source  EDI input for the next parse
+     * @param preRead chars of EDI input data to be used before reading from the source, or null
+     * @throws IOException if problem establishing a Reader from the source
+     */
+    public void reset(InputSource source, char[] preRead) throws IOException {
+        Tokenizer previous = tokenizer;
+        reset();
+        if (previous instanceof EDITokenizer) {
+            Reader inputReader = createReader(source);
+            ((EDITokenizer) previous).reset(inputReader, preRead);
+            source.setCharacterStream(inputReader);
+            setTokenizer(previous);
+        } else if (preRead != null && preRead.length > 0) {
+            Reader inputReader = createReader(source);
+            EDITokenizer ediTokenizer = new EDITokenizer(inputReader, preRead, tokenizerBufferSize);
+            ediTokenizer.setAdaptive(adaptiveBuffer);
+            source.setCharacterStream(inputReader);
+            setTokenizer(ediTokenizer);
+        }
+    }
+
     /**
      * Indicate that functional acknowledgments are to be generated by
      * designating a Writer. This method should be called before calling parse()
@@ -382,7 +485,7 @@ public abstract class EDIAbstractReader implements XMLReader {
      * @param writer The new acknowledgment value
      */
     public void setAcknowledgment(Writer writer) {
-        ackStream = (writer == null) ? null : new BranchingWriter(writer);
+        ackStream = (writer == null) ? null : createAckStream(writer);
     }
 
     /**
@@ -395,7 +498,52 @@ public abstract class EDIAbstractReader implements XMLReader {
      * @param writer The new acknowledgment value
      */
     public void setAlternateAcknowledgment(Writer writer) {
-        alternateAckStream = (writer == null) ? null : new BranchingWriter(writer);
+        alternateAckStream = (writer == null) ? null : createAckStream(writer);
+    }
+
+    private BranchingWriter createAckStream(Writer writer) {
+        return acknowledgmentSpillThreshold > 0
+                ? new SpillingBranchingWriter(writer, acknowledgmentSpillThreshold)
+                : new BranchingWriter(writer);
+    }
+
+    public int getAcknowledgmentSpillThreshold() {
+        return acknowledgmentSpillThreshold;
+    }
+
+    /**
+     * Limits the memory used in generating acknowledgments. An acknowledgment is normally held in memory
+     * until the end of each functional group, since its content depends on whether errors are detected.
+     * With a positive threshold, the acknowledgment output beyond that number of chars is instead held in
+     * a temporary file. This must be called before setAcknowledgment() or setAlternateAcknowledgment()
+     * to have any effect.
+     *
+     * @param acknowledgmentSpillThreshold number of chars held in memory, or 0 for no limit
+     * @see SpillingBranchingWriter
+     */
+    public void setAcknowledgmentSpillThreshold(int acknowledgmentSpillThreshold) {
+        this.acknowledgmentSpillThreshold = acknowledgmentSpillThreshold;
+    }
+
+    public boolean isAcknowledgmentOnly() {
+        return acknowledgmentOnly;
+    }
+
+    /**
+     * Parses only as much of the EDI input as is needed to generate acknowledgments. The envelope
+     * segments are parsed as usual, but the segments within each transaction or message are passed
+     * over by the tokenizer without forming tokens or generating SAX events, except that they are
+     * counted in order to check the segment count in the SE or UNT segment. The transaction element
+     * is still started and ended so that a ContentHandler sees the envelope structure. Since the
+     * elements of the passed over segments are not examined, errors within them, such as an element
+     * that is too long, are not detected. This is supported by parsers for which it is meaningful,
+     * such as AnsiReader and EdifactReader, and must be called
+     * before parsing begins to have any effect.
+     *
+     * @param acknowledgmentOnly true to pass over the content of transactions
+     */
+    public void setAcknowledgmentOnly(boolean acknowledgmentOnly) {
+        this.acknowledgmentOnly = acknowledgmentOnly;
     }
 
     public void setAcknowledgment(Writer writer, SyntaxDescriptor syntaxDescriptor) {
@@ -459,6 +607,69 @@ public abstract class EDIAbstractReader implements XMLReader {
         this.includeSyntaxCharacters = includeSyntaxCharacters;
     }
 
+    public int getTokenizerBufferSize() {
+        return tokenizerBufferSize;
+    }
+
+    /**
+     * Sets the initial capacity of the buffer used by the tokenizer reading the EDI input.
+     * This must be called before parsing begins to have any effect.
+     *
+     * @param tokenizerBufferSize capacity in chars
+     */
+    public void setTokenizerBufferSize(int tokenizerBufferSize) {
+        this.tokenizerBufferSize = tokenizerBufferSize;
+    }
+
+    public boolean isAdaptiveBuffer() {
+        return adaptiveBuffer;
+    }
+
+    /**
+     * Allows the buffer used by the tokenizer to grow according to the observed sizes of reads
+     * and segments. This must be called before parsing begins to have any effect.
+     *
+     * @param adaptiveBuffer true to enable adaptive buffering
+     * @see EDITokenizer#setAdaptive(boolean)
+     */
+    public void setAdaptiveBuffer(boolean adaptiveBuffer) {
+        this.adaptiveBuffer = adaptiveBuffer;
+    }
+
+    public int getTransactionParallelism() {
+        return transactionParallelism;
+    }
+
+    /**
+     * Sets the number of transactions within a functional group that may be parsed at the same time,
+     * on separate threads. The default of 1 parses each transaction in turn as it is encountered.
+     * This is supported by parsers for which it is meaningful, such as AnsiReader, and must be
+     * called before parsing begins to have any effect. Transactions are parsed in turn regardless
+     * when a TransactionCallback or copy writer is in effect, or when acknowledgmentOnly is set.
+     * An EDISyntaxExceptionHandler is called only on the thread calling parse(), in the order of the input.
+     *
+     * @param transactionParallelism number of transactions parsed at the same time
+     */
+    public void setTransactionParallelism(int transactionParallelism) {
+        if (transactionParallelism < 1)
+            throw new IllegalArgumentException("transactionParallelism must be at least 1");
+        this.transactionParallelism = transactionParallelism;
+    }
+
+    public ExecutorService getTransactionExecutor() {
+        return transactionExecutor;
+    }
+
+    /**
+     * Designates the ExecutorService on which transactions are parsed when the transaction parallelism
+     * is greater than 1. If none is designated, a pool of threads is created for each interchange.
+     *
+     * @param transactionExecutor ExecutorService, or null
+     */
+    public void setTransactionExecutor(ExecutorService transactionExecutor) {
+        this.transactionExecutor = transactionExecutor;
+    }
+
     public boolean isExternalXmlDocumentStart() {
         return externalXmlDocumentStart;
     }
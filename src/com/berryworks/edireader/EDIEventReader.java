@@ -0,0 +1,728 @@
+/*
+ * Copyright 2005-2019 by BerryWorks Software, LLC. All rights reserved.
+ *
+ * This file is part of EDIReader. You may obtain a license for its use directly from
+ * BerryWorks Software, and you may also choose to use this software under the terms of the
+ * GPL version 3. Other products in the EDIReader software suite are available only by licensing
+ * with BerryWorks. Only those files bearing the GPL statement below are available under the GPL.
+ *
+ * EDIReader is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * EDIReader is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with EDIReader.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.berryworks.edireader;
+
+import com.berryworks.edireader.error.*;
+import com.berryworks.edireader.tokenizer.AbstractTokenizer;
+import com.berryworks.edireader.tokenizer.ByteBufferTokenizer;
+import com.berryworks.edireader.tokenizer.EDITokenizer;
+import com.berryworks.edireader.tokenizer.Token;
+import com.berryworks.edireader.tokenizer.Tokenizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Provides pull-style access to EDI input, one segment at a time, as an alternative to
+ * receiving SAX calls from an EDIReader.
+ * <p>
+ * Each call to next() advances to the next segment and returns an Event indicating its role:
+ * the beginning or end of an interchange, functional group, or transaction, or a segment
+ * within a transaction. The elements of the current segment are then available through
+ * getElement() and getSubElements(). Nothing is read from the input until next() is called,
+ * so a caller may stop at any point, and no additional threads or queues are involved.
+ * <p>
+ * The standard and syntax characters of each interchange are determined in the same way
+ * as EDIReader, and a series of ANSI X12 and EDIFACT interchanges may be read in turn.
+ * The envelope is checked as the input is read: segment counts and control numbers in
+ * SE, GE, IEA, UNT, UNE, and UNZ segments, and the nesting of groups and transactions.
+ * skipSegment() and skipTransaction() advance without forming the elements of body
+ * segments, which continue to be counted. The data of an X12 BIN segment is read according to
+ * its length, as with EDIReader, and is the second element of the segment. Loops are not
+ * recognized, and UNO/UNP segments carrying binary data are not supported.
+ * <p>
+ * A typical use is
+ * <br><code>
+ * EDIEventReader events = new EDIEventReader(new InputSource(reader));
+ * <br>
+ * while (events.next() != EDIEventReader.Event.END_OF_DATA) { ... }
+ * </code>
+ */
+public class EDIEventReader implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
+
+    public enum Event {
+        START_INTERCHANGE, START_GROUP, START_TRANSACTION, SEGMENT, END_TRANSACTION, END_GROUP, END_INTERCHANGE, END_OF_DATA
+    }
+
+    private static final String[] ANSI_ENVELOPE = {"ISA", "GS", "ST", "SE", "GE", "IEA"};
+    private static final String[] EDIFACT_ENVELOPE = {"UNB", "UNG", "UNH", "UNT", "UNE", "UNZ"};
+    // Segments at which skipTransaction() stops passing over segments by their terminators
+    private static final String[] ANSI_SKIP_STOPS = {"ISA", "GS", "ST", "SE", "GE", "IEA", "BIN"};
+    private static final int BIN_PORTION_SIZE = 4096;
+    private static final int INTERCHANGE_HEADER = 0;
+    private static final int GROUP_HEADER = 1;
+    private static final int TRANSACTION_HEADER = 2;
+    private static final int TRANSACTION_TRAILER = 3;
+    private static final int GROUP_TRAILER = 4;
+    private static final int INTERCHANGE_TRAILER = 5;
+
+    private final InputSource source;
+    private ByteBuffer remaining;
+    private char[] leftOver;
+    private Tokenizer tokenizer;
+    private StandardReader standardReader;
+    private int tokenizerBufferSize = EDITokenizer.BUFFER_SIZE;
+    private boolean adaptiveBuffer;
+    private EDIStandard standard;
+    private String[] envelope;
+    private String[] skipStops;
+    private Event event;
+    private long interchangeOffset;
+    private int release = -1;
+
+    private boolean inGroup;
+    private boolean inTransaction;
+    private int groupCount;
+    private int transactionCount;
+    private int segmentCount;
+    private String interchangeControlNumber;
+    private String groupControlNumber;
+    private String transactionControlNumber;
+    private String documentType;
+
+    // The current segment
+    private String segmentType;
+    private final List<String> elements = new ArrayList<>();
+    private final List<List<String>> subElements = new ArrayList<>();
+    private final StringBuilder elementValue = new StringBuilder();
+    private boolean repeating;
+
+    /**
+     * Reads EDI input from an InputSource, in the same manner as EDIReader.parse(InputSource).
+     *
+     * @param source EDI input
+     */
+    public EDIEventReader(InputSource source) {
+        this.source = source;
+    }
+
+    /**
+     * Reads EDI input held in a ByteBuffer, from its position to its limit, with each byte taken as a
+     * single ISO-8859-1 character, in the same manner as EDIReader.parse(ByteBuffer).
+     *
+     * @param buffer EDI input
+     */
+    public EDIEventReader(ByteBuffer buffer) {
+        this.source = null;
+        this.remaining = buffer;
+    }
+
+    /**
+     * Advances to the next segment, forming its elements.
+     *
+     * @return Event indicating the role of the segment, or END_OF_DATA if there is no more input
+     * @throws SAXException for invalid EDI, including errors in the envelope
+     * @throws IOException  for problem reading EDI data
+     */
+    public Event next() throws SAXException, IOException {
+        return advance(true);
+    }
+
+    /**
+     * Advances to the next segment, as next() does, but without forming its elements if it is a
+     * segment within a transaction. The segment type remains available.
+     *
+     * @return Event indicating the role of the segment, or END_OF_DATA if there is no more input
+     * @throws SAXException for invalid EDI, including errors in the envelope
+     * @throws IOException  for problem reading EDI data
+     */
+    public Event skipSegment() throws SAXException, IOException {
+        return advance(false);
+    }
+
+    /**
+     * Advances to the segment ending the current transaction, without forming the elements of
+     * the segments before it. With a tokenizer derived from AbstractTokenizer, as is normally the case,
+     * the segments are passed over by looking only for their terminators, except that the data of
+     * a BIN segment is passed over according to its length. The segment count in the trailer is
+     * checked as with next().
+     * This may be called when the current event is START_TRANSACTION or SEGMENT.
+     *
+     * @return END_TRANSACTION
+     * @throws SAXException for invalid EDI, including errors in the envelope
+     * @throws IOException  for problem reading EDI data
+     */
+    public Event skipTransaction() throws SAXException, IOException {
+        if (!inTransaction)
+            throw new IllegalStateException("skipTransaction() called outside of a transaction");
+        Event e;
+        do {
+            if (tokenizer instanceof AbstractTokenizer)
+                // Pass over the body segments by looking only for segment terminators
+                segmentCount += ((AbstractTokenizer) tokenizer).skipSegmentsUntil(skipStops);
+            e = advance(false);
+        } while (e == Event.SEGMENT);
+        return e;
+    }
+
+    public int getTokenizerBufferSize() {
+        return tokenizerBufferSize;
+    }
+
+    /**
+     * Sets the initial capacity of the buffer used by the tokenizer reading the EDI input from an
+     * InputSource, as with EDIReader.setTokenizerBufferSize(). A larger buffer lets skipTransaction()
+     * pass over more segments at a time.
+     *
+     * @param tokenizerBufferSize capacity in chars
+     */
+    public void setTokenizerBufferSize(int tokenizerBufferSize) {
+        this.tokenizerBufferSize = tokenizerBufferSize;
+    }
+
+    public boolean isAdaptiveBuffer() {
+        return adaptiveBuffer;
+    }
+
+    /**
+     * Allows the buffer used by the tokenizer to grow, as with EDIReader.setAdaptiveBuffer().
+     *
+     * @param adaptiveBuffer true to enable adaptive buffering
+     */
+    public void setAdaptiveBuffer(boolean adaptiveBuffer) {
+        this.adaptiveBuffer = adaptiveBuffer;
+    }
+
+    public Event getEvent() {
+        return event;
+    }
+
+    /**
+     * Returns the standard of the current interchange.
+     *
+     * @return EDIStandard, or null if no interchange has been encountered
+     */
+    public EDIStandard getStandard() {
+        return standard;
+    }
+
+    /**
+     * Returns the type of the current segment, such as "ST" or "NM1".
+     *
+     * @return segment type, or null at END_OF_DATA
+     */
+    public String getSegmentType() {
+        return segmentType;
+    }
+
+    /**
+     * Returns the number of element positions in the current segment, through the last element present.
+     * This is 0 for a segment passed over by skipSegment() or skipTransaction().
+     *
+     * @return number of elements
+     */
+    public int getElementCount() {
+        return elements.size();
+    }
+
+    /**
+     * Returns the value of an element of the current segment. For a composite element, the values
+     * of its sub-elements are separated by the sub-element delimiter, and for a repeated element,
+     * the values of its repetitions are separated by the repetition separator.
+     * Release characters are not included.
+     *
+     * @param position 1-origin position of the element within the segment, as in NM103
+     * @return value of the element, "" if it is empty, or null if the position is beyond the last element
+     */
+    public String getElement(int position) {
+        return position < 1 || position > elements.size() ? null : elements.get(position - 1);
+    }
+
+    /**
+     * Returns the sub-element values of a composite element of the current segment. A simple element
+     * is treated as a composite with one sub-element. For a repeated element, the sub-elements of
+     * its first occurrence are returned.
+     *
+     * @param position 1-origin position of the element within the segment
+     * @return sub-element values, empty if the position is beyond the last element
+     */
+    public List<String> getSubElements(int position) {
+        if (position < 1 || position > elements.size())
+            return Collections.emptyList();
+        List<String> result = subElements.get(position - 1);
+        return result == null ? Collections.singletonList(elements.get(position - 1)) : result;
+    }
+
+    /**
+     * Returns the number of the current segment within the current interchange, counting from 1.
+     *
+     * @return segment number
+     */
+    public int getSegmentNumber() {
+        return tokenizer == null ? 0 : tokenizer.getSegmentCount();
+    }
+
+    /**
+     * Returns the position of the current segment within the input, counting the chars
+     * from the beginning of the input. For input held in a ByteBuffer, this is also the
+     * number of bytes from the position of the buffer when this EDIEventReader was created.
+     *
+     * @return offset of the first char of the segment type
+     */
+    public long getSegmentOffset() {
+        return tokenizer == null ? 0 : interchangeOffset + tokenizer.getCharCount() - tokenizer.getSegmentCharCount();
+    }
+
+    /**
+     * Returns the position within the input immediately following the current segment,
+     * including its segment terminator and any whitespace that follows it.
+     *
+     * @return offset of the char following the segment
+     */
+    public long getSegmentEndOffset() {
+        return tokenizer == null ? 0 : interchangeOffset + tokenizer.getCharCount();
+    }
+
+    /**
+     * Returns the position within the input at which the current interchange begins. This includes
+     * any whitespace following the previous interchange, and a UNA segment if there is one.
+     *
+     * @return offset of the interchange
+     */
+    public long getInterchangeOffset() {
+        return interchangeOffset;
+    }
+
+    public char getDelimiter() {
+        return tokenizer == null ? 0 : tokenizer.getDelimiter();
+    }
+
+    public char getSubDelimiter() {
+        return tokenizer == null ? 0 : tokenizer.getSubDelimiter();
+    }
+
+    /**
+     * Returns the release character of the current interchange.
+     *
+     * @return release character, or -1 if there is none
+     */
+    public int getRelease() {
+        return release;
+    }
+
+    /**
+     * Returns the repetition separator of the current interchange.
+     *
+     * @return repetition separator, or -1 if there is none
+     */
+    public int getRepetitionSeparator() {
+        return tokenizer == null ? -1 : tokenizer.getRepetitionSeparator();
+    }
+
+    public char getTerminator() {
+        return tokenizer == null ? 0 : tokenizer.getTerminator();
+    }
+
+    public String getInterchangeControlNumber() {
+        return interchangeControlNumber;
+    }
+
+    public String getGroupControlNumber() {
+        return groupControlNumber;
+    }
+
+    public String getTransactionControlNumber() {
+        return transactionControlNumber;
+    }
+
+    /**
+     * Returns the type of the current transaction, such as 837 or ORDERS.
+     *
+     * @return document type, or null if no transaction has been encountered
+     */
+    public String getDocumentType() {
+        return documentType;
+    }
+
+    @Override
+    public void close() throws IOException {
+        Reader reader = source == null ? null : source.getCharacterStream();
+        if (reader != null)
+            reader.close();
+    }
+
+    private Event advance(boolean formElements) throws SAXException, IOException {
+        if (event == Event.END_OF_DATA)
+            return event;
+
+        Token token;
+        if (event == null || event == Event.END_INTERCHANGE) {
+            token = beginInterchange();
+            if (token == null) {
+                segmentType = null;
+                elements.clear();
+                subElements.clear();
+                return event = Event.END_OF_DATA;
+            }
+        } else {
+            token = tokenizer.nextToken();
+            if (token.getType() == Token.TokenType.END_OF_DATA) {
+                EDISyntaxException se = new EDISyntaxException(ErrorMessages.UNEXPECTED_EOF, tokenizer);
+                logger.warn(se.getMessage());
+                throw se;
+            }
+            if (token.getType() != Token.TokenType.SEGMENT_START) {
+                EDISyntaxException se = new EDISyntaxException(ErrorMessages.INVALID_BEGINNING_OF_SEGMENT, tokenizer.getSegmentCount());
+                logger.warn(se.getMessage());
+                throw se;
+            }
+        }
+
+        segmentType = token.getSegmentType();
+        elements.clear();
+        subElements.clear();
+        int role = envelopeRole(segmentType);
+        event = checkContext(role);
+
+        if (role < 0) {
+            // A segment within a transaction, or a TA1
+            if (inTransaction)
+                segmentCount++;
+            if (standard == EDIStandard.ANSI && "BIN".equals(segmentType))
+                passBinarySegment(formElements);
+            else if (formElements)
+                formElements(0);
+            else
+                skipElements();
+            return event;
+        }
+
+        switch (role) {
+            case INTERCHANGE_HEADER:
+                // The repetition separator and sub-element delimiter appear as data in the ISA
+                int separator = tokenizer.getRepetitionSeparator();
+                char subDelimiter = tokenizer.getSubDelimiter();
+                if (standard == EDIStandard.ANSI) {
+                    tokenizer.setRepetitionSeparator(-1);
+                    tokenizer.setSubDelimiter(tokenizer.getDelimiter());
+                }
+                int controlPosition = standard == EDIStandard.ANSI ? 13 : 5;
+                formElements(controlPosition);
+                tokenizer.setRepetitionSeparator(separator);
+                tokenizer.setSubDelimiter(subDelimiter);
+                interchangeControlNumber = getElement(controlPosition);
+                groupCount = 0;
+                break;
+            case GROUP_HEADER:
+                controlPosition = standard == EDIStandard.ANSI ? 6 : 5;
+                formElements(controlPosition);
+                groupControlNumber = getElement(controlPosition);
+                inGroup = true;
+                groupCount++;
+                transactionCount = 0;
+                break;
+            case TRANSACTION_HEADER:
+                if (standard == EDIStandard.ANSI) {
+                    formElements(2);
+                    documentType = getElement(1);
+                    transactionControlNumber = getElement(2);
+                } else {
+                    formElements(1);
+                    List<String> messageIdentifier = getSubElements(2);
+                    documentType = messageIdentifier.isEmpty() ? "" : messageIdentifier.get(0);
+                    transactionControlNumber = getElement(1);
+                }
+                inTransaction = true;
+                segmentCount = 1;
+                if (inGroup)
+                    transactionCount++;
+                else
+                    // An EDIFACT message not within a UNG .. UNE group is counted in the UNZ
+                    groupCount++;
+                break;
+            case TRANSACTION_TRAILER:
+                segmentCount++;
+                standardReader.checkSegmentCount(segmentCount, nextCountElement(),
+                        standard == EDIStandard.ANSI ? ErrorMessages.COUNT_SE : ErrorMessages.COUNT_UNT);
+                standardReader.checkTransactionControlNumber(transactionControlNumber, nextControlElement(),
+                        standard == EDIStandard.ANSI ? ErrorMessages.CONTROL_NUMBER_SE : ErrorMessages.CONTROL_NUMBER_UNT);
+                formElements(0);
+                inTransaction = false;
+                break;
+            case GROUP_TRAILER:
+                standardReader.checkTransactionCount(transactionCount, nextCountElement(),
+                        standard == EDIStandard.ANSI ? ErrorMessages.COUNT_GE : ErrorMessages.COUNT_UNE);
+                standardReader.checkGroupControlNumber(groupControlNumber, nextControlElement(),
+                        standard == EDIStandard.ANSI ? ErrorMessages.CONTROL_NUMBER_GE : ErrorMessages.CONTROL_NUMBER_UNE);
+                formElements(0);
+                inGroup = false;
+                break;
+            case INTERCHANGE_TRAILER:
+                standardReader.checkGroupCount(groupCount, nextCountElement(),
+                        standard == EDIStandard.ANSI ? ErrorMessages.COUNT_IEA : ErrorMessages.COUNT_UNZ);
+                standardReader.checkInterchangeControlNumber(interchangeControlNumber, nextControlElement(),
+                        standard == EDIStandard.ANSI ? ErrorMessages.CONTROL_NUMBER_IEA : ErrorMessages.CONTROL_NUMBER_UNZ);
+                formElements(0);
+                break;
+        }
+        return event;
+    }
+
+    /**
+     * Establishes a reader for the next interchange, in the manner of EDIReader, returning the
+     * SEGMENT_START token of its ISA or UNB segment, or null if there is no more input.
+     */
+    private Token beginInterchange() throws SAXException, IOException {
+        EDIReader reader;
+        if (source == null) {
+            if (tokenizer != null) {
+                remaining = ((ByteBufferTokenizer) tokenizer).getUnconsumed();
+                interchangeOffset += tokenizer.getCharCount();
+            }
+            reader = EDIReaderFactory.createEDIReader(remaining);
+        } else {
+            if (tokenizer != null) {
+                leftOver = tokenizer.getBuffered();
+                interchangeOffset += tokenizer.getCharCount();
+            }
+            reader = EDIReaderFactory.createEDIReader(source, leftOver, tokenizerBufferSize, adaptiveBuffer);
+        }
+        if (reader == null)
+            return null;
+
+        if (reader instanceof AnsiReader) {
+            standard = EDIStandard.ANSI;
+            envelope = ANSI_ENVELOPE;
+            skipStops = ANSI_SKIP_STOPS;
+        } else if (reader instanceof EdifactReader && !(reader instanceof UNHReader)) {
+            standard = EDIStandard.EDIFACT;
+            envelope = EDIFACT_ENVELOPE;
+            skipStops = EDIFACT_ENVELOPE;
+        } else {
+            EDISyntaxException se = new EDISyntaxException("EDIEventReader does not support " + reader.getClass().getName());
+            logger.warn(se.getMessage());
+            throw se;
+        }
+
+        standardReader = (StandardReader) reader;
+        tokenizer = standardReader.getTokenizer();
+        tokenizer.setDelimiter(standardReader.getDelimiter());
+        tokenizer.setSubDelimiter(standardReader.getSubDelimiter());
+        tokenizer.setRelease(standardReader.getRelease());
+        tokenizer.setRepetitionSeparator(standardReader.getRepetitionSeparator());
+        tokenizer.setTerminator(standardReader.getTerminator());
+        release = standardReader.getRelease();
+
+        inGroup = false;
+        inTransaction = false;
+        groupControlNumber = null;
+        transactionControlNumber = null;
+        documentType = null;
+        return standardReader.recognizeBeginning();
+    }
+
+    private int envelopeRole(String type) {
+        for (int i = 0; i < envelope.length; i++) {
+            if (envelope[i].equals(type))
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Determines the Event for a segment with a given envelope role, verifying that the segment
+     * may appear at this point.
+     */
+    private Event checkContext(int role) throws EDISyntaxException {
+        String expected;
+        if (inTransaction) {
+            if (role < 0) return Event.SEGMENT;
+            if (role == TRANSACTION_TRAILER) return Event.END_TRANSACTION;
+            if (standard == EDIStandard.ANSI) {
+                EDISyntaxException se = new EDISyntaxException(ErrorMessages.SE_MISSING, tokenizer);
+                logger.warn(se.getMessage());
+                throw se;
+            }
+            expected = "UNT";
+        } else if (inGroup) {
+            if (role == TRANSACTION_HEADER) return Event.START_TRANSACTION;
+            if (role == GROUP_TRAILER) return Event.END_GROUP;
+            expected = standard == EDIStandard.ANSI ? "GE or ST" : "UNE or UNH";
+        } else if (event == null || event == Event.END_INTERCHANGE) {
+            if (role == INTERCHANGE_HEADER) return Event.START_INTERCHANGE;
+            expected = envelope[INTERCHANGE_HEADER];
+        } else {
+            if (role == GROUP_HEADER) return Event.START_GROUP;
+            if (role == INTERCHANGE_TRAILER) return Event.END_INTERCHANGE;
+            if (standard == EDIStandard.ANSI) {
+                if ("TA1".equals(segmentType)) return Event.SEGMENT;
+                expected = "IEA or GS";
+            } else {
+                if (role == TRANSACTION_HEADER) return Event.START_TRANSACTION;
+                expected = "UNH, UNZ, or UNG";
+            }
+        }
+        EDISyntaxException se = new EDISyntaxException(ErrorMessages.UNEXPECTED_SEGMENT_IN_CONTEXT, expected, segmentType, tokenizer);
+        logger.warn(se.getMessage());
+        throw se;
+    }
+
+    /**
+     * Consumes the tokens of the remainder of the current segment, forming the value of each element.
+     * As in the StandardReader, a segment that ends before its required element, or leaves it empty,
+     * is a syntax error.
+     *
+     * @param required 1-origin position of an element that must be present, or 0 if none
+     */
+    private void formElements(int required) throws SAXException, IOException {
+        int lastIndex = elements.size();
+        while (true) {
+            Token t = tokenizer.nextToken();
+            Token.TokenType type = t.getType();
+            if (type == Token.TokenType.SEGMENT_END || type == Token.TokenType.END_OF_DATA) {
+                if (lastIndex < required)
+                    throw mandatoryElementMissing(t);
+                break;
+            }
+            int index = t.getIndex();
+            String value = (type == Token.TokenType.SIMPLE || type == Token.TokenType.SUB_ELEMENT) ? t.getValue() : "";
+            boolean sub = type == Token.TokenType.SUB_ELEMENT || type == Token.TokenType.SUB_EMPTY;
+
+            if (index == lastIndex && index > 0) {
+                if (sub && !t.isFirst()) {
+                    // Another sub-element of a composite
+                    elementValue.append(tokenizer.getSubDelimiter());
+                    if (!repeating)
+                        subElements.get(index - 1).add(value);
+                } else {
+                    // Another occurrence of a repeated element
+                    elementValue.append((char) tokenizer.getRepetitionSeparator());
+                    repeating = true;
+                }
+                elementValue.append(value);
+                elements.set(index - 1, elementValue.toString());
+                continue;
+            }
+
+            if (index == required && type == Token.TokenType.EMPTY)
+                throw mandatoryElementMissing(t);
+
+            while (elements.size() < index - 1) {
+                elements.add("");
+                subElements.add(null);
+            }
+            elementValue.setLength(0);
+            elementValue.append(value);
+            elements.add(value);
+            if (sub) {
+                List<String> list = new ArrayList<>();
+                list.add(value);
+                subElements.add(list);
+            } else {
+                subElements.add(null);
+            }
+            repeating = false;
+            lastIndex = index;
+        }
+    }
+
+    /**
+     * Consumes the tokens of the remainder of the current segment without forming element values.
+     */
+    private void skipElements() throws SAXException, IOException {
+        Token.TokenType type;
+        do {
+            type = tokenizer.nextToken().getType();
+        } while (type != Token.TokenType.SEGMENT_END && type != Token.TokenType.END_OF_DATA);
+    }
+
+    /**
+     * Consumes the next element of a trailer segment, which must be a count, in the manner of
+     * the StandardReader.
+     */
+    private int nextCountElement() throws SAXException, IOException {
+        String value = nextControlElement();
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            EDISyntaxException se = new EDISyntaxException(ErrorMessages.DIGITS_ONLY, tokenizer);
+            logger.warn(se.getMessage());
+            throw se;
+        }
+    }
+
+    /**
+     * Consumes the next element of a trailer segment, which must be a non-empty simple value,
+     * in the manner of the StandardReader.
+     */
+    private String nextControlElement() throws SAXException, IOException {
+        String value = tokenizer.nextSimpleValue();
+        elements.add(value);
+        subElements.add(null);
+        return value;
+    }
+
+    /**
+     * Consumes the remainder of a BIN segment, reading its data according to its length element
+     * in the manner of AnsiReader, and forming the length and the data as its two elements if
+     * requested.
+     */
+    private void passBinarySegment(boolean formElements) throws SAXException, IOException {
+        List<String> v = tokenizer.nextCompositeElement();
+        String lengthField = v == null || v.isEmpty() ? null : v.get(0);
+        if (lengthField == null || lengthField.isEmpty()) {
+            EDISyntaxException se = new EDISyntaxException(ErrorMessages.MISSING_BIN_LENGTH, tokenizer);
+            logger.warn(se.getMessage());
+            throw se;
+        }
+        int length;
+        try {
+            length = Integer.parseInt(lengthField);
+        } catch (NumberFormatException e) {
+            EDISyntaxException se = new EDISyntaxException("BIN object length must be numeric instead of " + lengthField, tokenizer);
+            logger.warn(se.getMessage());
+            throw se;
+        }
+
+        if (formElements) {
+            elements.add(lengthField);
+            subElements.add(null);
+            elements.add(new String(tokenizer.getChars(length)));
+            subElements.add(null);
+        } else {
+            char[] portion = new char[Math.min(length, BIN_PORTION_SIZE)];
+            for (int remaining = length; remaining > 0; ) {
+                int n = Math.min(remaining, portion.length);
+                tokenizer.getChars(portion, 0, n);
+                remaining -= n;
+            }
+        }
+        tokenizer.nextToken();
+    }
+
+    private EDISyntaxException mandatoryElementMissing(Token t) {
+        EDISyntaxException se = new EDISyntaxException("Mandatory element missing in "
+                + t.getSegmentType() + " segment", tokenizer);
+        logger.warn(se.getMessage());
+        return se;
+    }
+}
@@ -22,6 +22,7 @@ package com.berryworks.edireader;
 
 import com.berryworks.edireader.error.ErrorMessages;
 import com.berryworks.edireader.plugin.PluginControllerFactoryInterface;
+import com.berryworks.edireader.tokenizer.ByteBufferTokenizer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.Attributes;
@@ -32,6 +33,8 @@ import org.xml.sax.helpers.AttributesImpl;
 
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 /**
  * Reads and parses an EDI interchange in any of the supported EDI standards.
@@ -61,6 +64,12 @@ public class EDIReader extends EDIAbstractReader implements ErrorMessages {
         throw new EDISyntaxException("EDIReader.preview() called unexpectedly");
     }
 
+    @Override
+    public void reset() {
+        super.reset();
+        theReader = null;
+    }
+
     /**
      * Parse an EDI interchange from the input source.
      */
@@ -71,33 +80,15 @@ public class EDIReader extends EDIAbstractReader implements ErrorMessages {
         char[] leftOver = null;
         while (true) {
             if (theReader == null) {
-                theReader = EDIReaderFactory.createEDIReader(source, leftOver);
+                theReader = EDIReaderFactory.createEDIReader(source, leftOver, getTokenizerBufferSize(), isAdaptiveBuffer());
                 if (theReader == null) {
                     logger.debug("EDIReader.parse(InputSource) hit end of input");
                     break;
                 }
                 logger.info("Created an EDIReader of type {}", theReader.getClass().getName());
-                theReader.setExternalXmlDocumentStart(true);
-                theReader.setAcknowledgment(getAckStream());
-                theReader.setAlternateAcknowledgment(getAlternateAckStream());
-                theReader.setContentHandler(getContentHandler());
-                theReader.setSyntaxExceptionHandler(getSyntaxExceptionHandler());
-                theReader.setNamespaceEnabled(isNamespaceEnabled());
-                theReader.setIncludeSyntaxCharacters(isIncludeSyntaxCharacters());
-            }
-            theReader.setXMLTags(xmlTags);
-            if (pluginControllerFactory != null) {
-                theReader.setPluginControllerFactory(pluginControllerFactory);
+                configureDelegate();
             }
-            theReader.parse(source);
-            setDelimiter(theReader.getDelimiter());
-            setSubDelimiter(theReader.getSubDelimiter());
-            setSubSubDelimiter(theReader.getSubSubDelimiter());
-            setRepetitionSeparator(theReader.getRepetitionSeparator());
-            setRelease(theReader.getRelease());
-            setDecimalMark(theReader.getDecimalMark());
-            setTerminator(theReader.getTerminator());
-            setTerminatorSuffix(theReader.getTerminatorSuffix());
+            parseWithDelegate(source);
 
             leftOver = theReader.getTokenizer().getBuffered();
             theReader = null;
@@ -107,6 +98,83 @@ public class EDIReader extends EDIAbstractReader implements ErrorMessages {
 
     }
 
+    /**
+     * Parse the EDI interchanges held in a ByteBuffer, from its position to its limit.
+     * The bytes are tokenized directly, each byte being taken as a single ISO-8859-1
+     * character, without an intermediate Reader. The position of the argument is not disturbed.
+     *
+     * @param buffer EDI input
+     * @throws SAXException for problem emitting SAX events
+     * @throws IOException  for problem reading EDI data
+     */
+    public void parse(ByteBuffer buffer) throws SAXException, IOException {
+
+        startXMLDocument();
+
+        ByteBuffer remaining = buffer;
+        while (true) {
+            theReader = EDIReaderFactory.createEDIReader(remaining);
+            if (theReader == null) {
+                logger.debug("EDIReader.parse(ByteBuffer) hit end of input");
+                break;
+            }
+            logger.info("Created an EDIReader of type {}", theReader.getClass().getName());
+            configureDelegate();
+            // The delegate already has a tokenizer over the buffer, so the InputSource is not consulted.
+            parseWithDelegate(new InputSource());
+
+            remaining = ((ByteBufferTokenizer) theReader.getTokenizer()).getUnconsumed();
+            theReader = null;
+        }
+
+        endXMLDocument();
+
+    }
+
+    /**
+     * Parse the EDI interchanges in a file by mapping its entire content into memory.
+     * The file must be no larger than Integer.MAX_VALUE bytes.
+     *
+     * @param channel FileChannel open for reading
+     * @throws SAXException for problem emitting SAX events
+     * @throws IOException  for problem reading EDI data
+     */
+    public void parse(FileChannel channel) throws SAXException, IOException {
+        parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+
+    private void configureDelegate() {
+        theReader.setExternalXmlDocumentStart(true);
+        theReader.setAcknowledgmentSpillThreshold(getAcknowledgmentSpillThreshold());
+        theReader.setAcknowledgment(getAckStream());
+        theReader.setAlternateAcknowledgment(getAlternateAckStream());
+        theReader.setContentHandler(getContentHandler());
+        theReader.setSyntaxExceptionHandler(getSyntaxExceptionHandler());
+        theReader.setNamespaceEnabled(isNamespaceEnabled());
+        theReader.setIncludeSyntaxCharacters(isIncludeSyntaxCharacters());
+        theReader.setTokenizerBufferSize(getTokenizerBufferSize());
+        theReader.setAdaptiveBuffer(isAdaptiveBuffer());
+        theReader.setTransactionParallelism(getTransactionParallelism());
+        theReader.setAcknowledgmentOnly(isAcknowledgmentOnly());
+        theReader.setTransactionExecutor(getTransactionExecutor());
+    }
+
+    private void parseWithDelegate(InputSource source) throws SAXException, IOException {
+        theReader.setXMLTags(xmlTags);
+        if (pluginControllerFactory != null) {
+            theReader.setPluginControllerFactory(pluginControllerFactory);
+        }
+        theReader.parse(source);
+        setDelimiter(theReader.getDelimiter());
+        setSubDelimiter(theReader.getSubDelimiter());
+        setSubSubDelimiter(theReader.getSubSubDelimiter());
+        setRepetitionSeparator(theReader.getRepetitionSeparator());
+        setRelease(theReader.getRelease());
+        setDecimalMark(theReader.getDecimalMark());
+        setTerminator(theReader.getTerminator());
+        setTerminatorSuffix(theReader.getTerminatorSuffix());
+    }
+
     public void setXMLTags(XMLTags tags) {
         xmlTags = tags;
     }
@@ -21,12 +21,16 @@
 package com.berryworks.edireader;
 
 import com.berryworks.edireader.error.ErrorMessages;
+import com.berryworks.edireader.tokenizer.ByteBufferTokenizer;
 import com.berryworks.edireader.tokenizer.EDITokenizer;
 import com.berryworks.edireader.tokenizer.Tokenizer;
 import org.xml.sax.InputSource;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.function.Function;
 
 /**
  * Creates a subclass of EDIReader appropriate for parsing a particular EDI
@@ -98,11 +102,80 @@ public abstract class EDIReaderFactory {
      */
     public static EDIReader createEDIReader(InputSource source, char[] preRead, boolean debug)
             throws EDISyntaxException, IOException {
+        return createEDIReader(source, preRead, EDITokenizer.BUFFER_SIZE, false);
+    }
+
+    /**
+     * Factory method to create an instance of a subclass of EDIReader based on
+     * examination of the first few characters of data, with control over the buffering
+     * of the tokenizer that reads the source.
+     *
+     * @param source     EDI source
+     * @param preRead    chars of EDI input data to be used before reading from the source
+     * @param bufferSize initial capacity of the tokenizer's buffer, in chars
+     * @param adaptive   true to let the tokenizer's buffer grow as the data is read
+     * @return created EDIReader instance
+     * @throws IOException        for problem reading EDI data
+     * @throws EDISyntaxException if invalid EDI is detected
+     */
+    public static EDIReader createEDIReader(InputSource source, char[] preRead, int bufferSize, boolean adaptive)
+            throws EDISyntaxException, IOException {
         Reader inputReader = EDIAbstractReader.createReader(source);
-        Tokenizer tokenizer =
-                (preRead == null || preRead.length == 0) ?
-                        new EDITokenizer(inputReader) :
-                        new EDITokenizer(inputReader, preRead);
+        EDITokenizer tokenizer = new EDITokenizer(inputReader, preRead, bufferSize);
+        tokenizer.setAdaptive(adaptive);
+
+        source.setCharacterStream(inputReader);
+        return createEDIReader(tokenizer);
+    }
+
+    /**
+     * Factory method to create an instance of a subclass of EDIReader based on
+     * examination of the first few characters of data held in a ByteBuffer.
+     * The EDIReader is equipped with a ByteBufferTokenizer, which treats each
+     * byte as a single ISO-8859-1 character. The position of the argument is not
+     * disturbed.
+     *
+     * @param buffer EDI input
+     * @return created EDIReader instance, or null if there is no EDI data in the buffer
+     * @throws IOException        for problem reading EDI data
+     * @throws EDISyntaxException if invalid EDI is detected
+     */
+    public static EDIReader createEDIReader(ByteBuffer buffer)
+            throws EDISyntaxException, IOException {
+        return createEDIReader(new ByteBufferTokenizer(buffer));
+    }
+
+    /**
+     * Equivalent to createEDIReader(buffer) with the entire content of a file
+     * mapped into memory. The file must be no larger than Integer.MAX_VALUE bytes.
+     *
+     * @param channel FileChannel open for reading
+     * @return created EDIReader instance, or null if there is no EDI data in the file
+     * @throws IOException        for problem reading EDI data
+     * @throws EDISyntaxException if invalid EDI is detected
+     */
+    public static EDIReader createEDIReader(FileChannel channel)
+            throws EDISyntaxException, IOException {
+        return createEDIReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+
+    private static EDIReader createEDIReader(Tokenizer tokenizer)
+            throws EDISyntaxException, IOException {
+        return createEDIReader(tokenizer, ParserRegistry::get);
+    }
+
+    /**
+     * Selects a parser for the EDI data to be read by a tokenizer, equips it with the tokenizer,
+     * and previews the interchange.
+     *
+     * @param tokenizer positioned at the beginning of an interchange, or at whitespace preceding it
+     * @param parsers   provides a parser given the first few characters of data, or null if none is suitable
+     * @return EDIReader, or null if there is no more EDI data
+     * @throws IOException        for problem reading EDI data
+     * @throws EDISyntaxException if invalid EDI is detected
+     */
+    static EDIReader createEDIReader(Tokenizer tokenizer, Function<String, EDIReader> parsers)
+            throws EDISyntaxException, IOException {
 
         // Skip past any leading whitespace
         tokenizer.scanTerminatorSuffix();
@@ -117,12 +190,11 @@ public abstract class EDIReaderFactory {
 
         // Get an appropriate parser, based on the first few characters
         String asString = new String(buf);
-        EDIReader parser = ParserRegistry.get(asString);
+        EDIReader parser = parsers.apply(asString);
         if (parser == null) throw new EDISyntaxException("<?xml ".startsWith(asString) ?
                 ErrorMessages.XML_INSTEAD_OF_EDI :
                 ErrorMessages.NO_STANDARD_BEGINS_WITH + asString);
 
-        source.setCharacterStream(inputReader);
         parser.setTokenizer(tokenizer);
         parser.preview();
 
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2005-2019 by BerryWorks Software, LLC. All rights reserved.
+ *
+ * This file is part of EDIReader. You may obtain a license for its use directly from
+ * BerryWorks Software, and you may also choose to use this software under the terms of the
+ * GPL version 3. Other products in the EDIReader software suite are available only by licensing
+ * with BerryWorks. Only those files bearing the GPL statement below are available under the GPL.
+ *
+ * EDIReader is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * EDIReader is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with EDIReader.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+package com.berryworks.edireader;
+
+import com.berryworks.edireader.tokenizer.EDITokenizer;
+import com.berryworks.edireader.tokenizer.Tokenizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.InputSource;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds EDIReader instances and their tokenizers for reuse, as an alternative to EDIReaderFactory
+ * when many small interchanges are parsed one after another, perhaps on several threads. Constructing
+ * a parser and a tokenizer with its buffer for each interchange can cost more than parsing it; a pool
+ * avoids this by resetting and reusing parsers that have been released after an earlier parse.
+ * <p>
+ * A parser is acquired for an interchange in the same way that EDIReaderFactory creates one, by
+ * examining the first few characters of data. Idle parsers are kept separately for each kind of
+ * parser, so that an X12 interchange is parsed by an AnsiReader that previously parsed X12, and
+ * so on. The kind of parser chosen for given leading characters is remembered, so a parser
+ * registered with ParserRegistry should be registered before the pool is used. Tokenizers are kept
+ * separately from the parsers, since a tokenizer is needed to examine the data before a parser
+ * can be chosen.
+ * <p>
+ * A parser is acquired, configured as a newly created one would be, used to parse one interchange,
+ * and then released. No settings survive the release of a parser: the ContentHandler, syntax exception
+ * handler, TransactionCallback, copy writer, acknowledgment streams and options, parallelism, and the
+ * other settings of EDIAbstractReader are returned to their defaults, so a parser acquired from the
+ * pool is configured in the same way whoever used it last. After release, neither the parser nor its tokenizer may be used by the caller,
+ * so any chars to be carried over to the next interchange with getBuffered() must be obtained first.
+ * All methods of this class may be called concurrently.
+ */
+public class EDIReaderPool {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
+
+    public static final int DEFAULT_MAX_IDLE = 16;
+
+    private final int maxIdle;
+    private final int bufferSize;
+    private final boolean adaptive;
+    private final Map<String, Class<? extends EDIReader>> parserClasses = new ConcurrentHashMap<>();
+    private final Map<Class<? extends EDIReader>, Deque<EDIReader>> idleParsers = new ConcurrentHashMap<>();
+    private final Deque<EDITokenizer> idleTokenizers = new ArrayDeque<>();
+
+    public EDIReaderPool() {
+        this(DEFAULT_MAX_IDLE, EDITokenizer.BUFFER_SIZE, false);
+    }
+
+    /**
+     * Constructs a pool that holds up to maxIdle released parsers of each kind, and up to maxIdle
+     * released tokenizers. Tokenizers are created with the given buffering, as with
+     * EDIReaderFactory.createEDIReader(source, preRead, bufferSize, adaptive).
+     *
+     * @param maxIdle    number of released parsers of each kind, and of tokenizers, held for reuse
+     * @param bufferSize initial capacity of a new tokenizer's buffer, in chars
+     * @param adaptive   true to let a tokenizer's buffer grow as the data is read
+     */
+    public EDIReaderPool(int maxIdle, int bufferSize, boolean adaptive) {
+        if (maxIdle < 0)
+            throw new IllegalArgumentException("maxIdle must not be negative");
+        this.maxIdle = maxIdle;
+        this.bufferSize = bufferSize;
+        this.adaptive = adaptive;
+    }
+
+    /**
+     * Equivalent to acquire(source, null)
+     *
+     * @param source EDI input
+     * @return EDIReader, or null if there is no more EDI data in the source
+     * @throws IOException        for problem reading EDI data
+     * @throws EDISyntaxException if invalid EDI is detected
+     */
+    public EDIReader acquire(InputSource source) throws EDISyntaxException, IOException {
+        return acquire(source, null);
+    }
+
+    /**
+     * Provides a parser appropriate for the next interchange in the source, equipped with a tokenizer
+     * and ready for its parse method to be called, just as EDIReaderFactory.createEDIReader(source, preRead)
+     * does. The parser and tokenizer are taken from those previously released, if possible.
+     *
+     * @param source  EDI input
+     * @param preRead chars of EDI input data to be used before reading from the source, or null
+     * @return EDIReader, or null if there is no more EDI data in the source
+     * @throws IOException        for problem reading EDI data
+     * @throws EDISyntaxException if invalid EDI is detected
+     */
+    public EDIReader acquire(InputSource source, char[] preRead) throws EDISyntaxException, IOException {
+        Reader inputReader = EDIAbstractReader.createReader(source);
+        EDITokenizer tokenizer = takeTokenizer(inputReader, preRead);
+        source.setCharacterStream(inputReader);
+
+        EDIReader parser = null;
+        try {
+            parser = EDIReaderFactory.createEDIReader(tokenizer, this::takeParser);
+        } finally {
+            if (parser == null)
+                giveTokenizer(tokenizer);
+        }
+        return parser;
+    }
+
+    /**
+     * Returns a parser to the pool after it has been used to parse an interchange. The parser is reset,
+     * all of its settings are returned to those of a newly constructed parser, and it and its tokenizer
+     * become available for use with later interchanges. If as many parsers of the same kind are already
+     * idle, the parser is discarded.
+     *
+     * @param parser obtained from acquire()
+     */
+    public void release(EDIReader parser) {
+        if (parser == null)
+            return;
+
+        Tokenizer tokenizer = parser.getTokenizer();
+        parser.reset();
+        restoreDefaultSettings(parser);
+        if (tokenizer instanceof EDITokenizer)
+            giveTokenizer((EDITokenizer) tokenizer);
+
+        Deque<EDIReader> idle = idleParsers.computeIfAbsent(parser.getClass(), k -> new ArrayDeque<>());
+        synchronized (idle) {
+            if (idle.size() < maxIdle)
+                idle.push(parser);
+        }
+    }
+
+    /**
+     * Returns the settings made by the previous user of a parser to those of a newly constructed one,
+     * so that nothing set for one parse, such as a ContentHandler or acknowledgmentOnly, carries over
+     * to the next user of the pool.
+     */
+    private static void restoreDefaultSettings(EDIReader parser) {
+        parser.setContentHandler(null);
+        parser.setErrorHandler(null);
+        parser.setEntityResolver(null);
+        parser.setSyntaxExceptionHandler(null);
+        parser.setTransactionCallback(null);
+        parser.setPluginControllerFactory(null);
+        parser.setXMLTags(null);
+        parser.setAcknowledgmentSpillThreshold(0);
+        parser.setAcknowledgmentOnly(false);
+        parser.setInterchangeAcknowledgment(false);
+        parser.setGroupAcknowledgment(false);
+        parser.setAcknowledgmentSyntaxDescriptor(null);
+        parser.setNamespaceEnabled(false);
+        parser.setIncludeSyntaxCharacters(false);
+        parser.setExternalXmlDocumentStart(false);
+        parser.setTokenizerBufferSize(EDITokenizer.BUFFER_SIZE);
+        parser.setAdaptiveBuffer(false);
+        parser.setTransactionParallelism(1);
+        parser.setTransactionExecutor(null);
+    }
+
+    private EDIReader takeParser(String firstChars) {
+        Class<? extends EDIReader> parserClass = parserClasses.get(firstChars);
+        if (parserClass != null) {
+            Deque<EDIReader> idle = idleParsers.get(parserClass);
+            if (idle != null) {
+                synchronized (idle) {
+                    if (!idle.isEmpty())
+                        return idle.pop();
+                }
+            }
+        }
+
+        EDIReader parser = ParserRegistry.get(firstChars);
+        if (parser != null) {
+            logger.debug("Created an EDIReader of type {} for the pool", parser.getClass().getName());
+            parserClasses.putIfAbsent(firstChars, parser.getClass());
+        }
+        return parser;
+    }
+
+    private EDITokenizer takeTokenizer(Reader inputReader, char[] preRead) {
+        EDITokenizer tokenizer;
+        synchronized (idleTokenizers) {
+            tokenizer = idleTokenizers.poll();
+        }
+        if (tokenizer == null) {
+            tokenizer = new EDITokenizer(inputReader, preRead, bufferSize);
+            tokenizer.setAdaptive(adaptive);
+        } else {
+            tokenizer.reset(inputReader, preRead);
+        }
+        return tokenizer;
+    }
+
+    private void giveTokenizer(EDITokenizer tokenizer) {
+        synchronized (idleTokenizers) {
+            if (idleTokenizers.size() < maxIdle)
+                idleTokenizers.push(tokenizer);
+        }
+    }
+
+    /**
+     * Gets the number of released parsers currently held for reuse.
+     *
+     * @return number of idle parsers, of all kinds
+     */
+    public int getIdleCount() {
+        int count = 0;
+        for (Deque<EDIReader> idle : idleParsers.values()) {
+            synchronized (idle) {
+                count += idle.size();
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2005-2019 by BerryWorks Software, LLC. All rights reserved.
+ *
+ * This file is part of EDIReader. You may obtain a license for its use directly from
+ * BerryWorks Software, and you may also choose to use this software under the terms of the
+ * GPL version 3. Other products in the EDIReader software suite are available only by licensing
+ * with BerryWorks. Only those files bearing the GPL statement below are available under the GPL.
+ *
+ * EDIReader is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * EDIReader is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with EDIReader.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+package com.berryworks.edireader;
+
+import java.util.Collection;
+
+/**
+ * Provides a parser for an EDI or EDI-like data format, for registration with ParserRegistry by way
+ * of java.util.ServiceLoader. To make a parser available in this way, an implementation of this
+ * interface is named in a file META-INF/services/com.berryworks.edireader.EDIReaderProvider within
+ * a jar on the classpath. A parser provided in this way is considered in the same way as one
+ * registered with ParserRegistry.register(), and takes precedence over the optional parsers
+ * listed in the registry by default.
+ */
+public interface EDIReaderProvider {
+
+    /**
+     * Gets the leading data characters that signal an interchange to be parsed by this provider's parser.
+     *
+     * @return leading chars, one or more sequences
+     */
+    Collection<String> getFirstChars();
+
+    /**
+     * Creates a new instance of the parser.
+     *
+     * @return EDIReader
+     */
+    EDIReader createReader();
+}
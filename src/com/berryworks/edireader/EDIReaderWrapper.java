@@ -55,6 +55,17 @@ public class EDIReaderWrapper extends EDIReader {
         wrappedEDIReader.preview();
     }
 
+    @Override
+    public void reset() {
+        super.reset();
+        wrappedEDIReader.reset();
+    }
+
+    @Override
+    public void reset(InputSource source, char[] preRead) throws IOException {
+        wrappedEDIReader.reset(source, preRead);
+    }
+
     @Override
     public void parse(InputSource source) throws SAXException, IOException {
         wrappedEDIReader.parse(source);
@@ -21,6 +21,7 @@
 package com.berryworks.edireader;
 
 import com.berryworks.edireader.error.ErrorMessages;
+import com.berryworks.edireader.tokenizer.AbstractTokenizer;
 import com.berryworks.edireader.tokenizer.Token;
 import com.berryworks.edireader.util.ContentHandlerBase64Encoder;
 import org.slf4j.Logger;
@@ -45,6 +46,12 @@ import static com.berryworks.edireader.util.FixedLength.isPresent;
  */
 public class EdifactReader extends StandardReader {
     private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
+
+    /**
+     * Segment types at which the passing over of segments within a message stops
+     * when acknowledgmentOnly is set.
+     */
+    private static final String[] MESSAGE_BODY_END = {"UNT", "UNO"};
     protected static final int ELEMENTS_IN_SEGMENT_MAXIMUM = 50;
     protected static final int ELEMENTS_IN_UNB_MAXIMUM = 30;
 
@@ -55,14 +62,14 @@ public class EdifactReader extends StandardReader {
     protected Token recognizeBeginning() throws IOException, SAXException {
         Token t = getTokenizer().nextToken();
         if (t.getType() == Token.TokenType.SEGMENT_START) {
-            String segType = t.getValue();
+            String segType = t.getSegmentType();
             if ("UNA".equals(segType)) {
                 witnessedUNA = true;
                 // We've already examined this UNA in the preview
                 getTokenizer().skipSegment();
                 t = getTokenizer().nextToken();
                 if (t.getType() == Token.TokenType.SEGMENT_START) {
-                    segType = t.getValue();
+                    segType = t.getSegmentType();
                 } else {
                     EDISyntaxException se = new EDISyntaxException(INVALID_UNA, getTokenizer());
                     logger.warn(se.getMessage());
@@ -86,6 +93,13 @@ public class EdifactReader extends StandardReader {
         return t;
     }
 
+    @Override
+    public void reset() {
+        super.reset();
+        ungExplicit = false;
+        witnessedUNA = false;
+    }
+
     /**
      * Parse Edifact interchange ( UNB to UNZ )
      *
@@ -175,7 +189,7 @@ public class EdifactReader extends StandardReader {
                 logger.warn(se.getMessage());
                 throw se;
             }
-            String sType = token.getValue();
+            String sType = token.getSegmentType();
             switch (sType) {
                 case "UNG":
                     setGroupCount(1 + getGroupCount());
@@ -292,7 +306,7 @@ public class EdifactReader extends StandardReader {
                 logger.warn(se.getMessage());
                 throw se;
             }
-            String sType = token.getValue();
+            String sType = token.getSegmentType();
             switch (sType) {
                 case "UNH":
                     docCount++;
@@ -333,7 +347,7 @@ public class EdifactReader extends StandardReader {
                 logger.warn(se.getMessage());
                 throw se;
             }
-            String sType = token.getValue();
+            String sType = token.getSegmentType();
             switch (sType) {
                 case "UNH":
                     setGroupCount(1 + getGroupCount());
@@ -424,8 +438,16 @@ public class EdifactReader extends StandardReader {
 
         startMessage(getDocumentAttributes());
 
+        AbstractTokenizer skippingTokenizer = isAcknowledgmentOnly() && getTokenizer() instanceof AbstractTokenizer
+                ? (AbstractTokenizer) getTokenizer() : null;
+
         String segmentType;
-        while (!(segmentType = getTokenizer().nextSegment()).equals("UNT")) {
+        while (true) {
+            if (skippingTokenizer != null)
+                // Pass over segments of no interest for acknowledgments, counting them for the UNT check
+                segCount += skippingTokenizer.skipSegmentsUntil(MESSAGE_BODY_END);
+            if ((segmentType = getTokenizer().nextSegment()).equals("UNT"))
+                break;
             segCount++;
 
             if ("UNO".equals(segmentType)) {
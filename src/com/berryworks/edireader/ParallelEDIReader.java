@@ -0,0 +1,378 @@
+/*
+ * Copyright 2005-2019 by BerryWorks Software, LLC. All rights reserved.
+ *
+ * This file is part of EDIReader. You may obtain a license for its use directly from
+ * BerryWorks Software, and you may also choose to use this software under the terms of the
+ * GPL version 3. Other products in the EDIReader software suite are available only by licensing
+ * with BerryWorks. Only those files bearing the GPL statement below are available under the GPL.
+ *
+ * EDIReader is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * EDIReader is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with EDIReader.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.berryworks.edireader;
+
+import com.berryworks.edireader.plugin.PluginControllerFactoryInterface;
+import com.berryworks.edireader.tokenizer.ByteBufferTokenizer;
+import com.berryworks.edireader.util.InterchangeBoundaryScanner;
+import com.berryworks.edireader.util.sax.SAXEventRecorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * An EDIReader that parses the interchanges of multi-interchange input concurrently.
+ * <p>
+ * The input is first scanned to locate the beginning of each interchange
+ * (see InterchangeBoundaryScanner), and the interchanges are then parsed
+ * on the threads of an ExecutorService, each by its own EDIReader. The SAX calls
+ * from each interchange are recorded in memory and passed to the ContentHandler
+ * in the original order of the interchanges, so that the ContentHandler sees the
+ * same sequence of calls, on the calling thread, as it would from EDIReader.
+ * Acknowledgments are likewise generated in memory and written in order.
+ * <p>
+ * Since the entire input is held in memory, as well as the SAX calls of the
+ * interchanges in progress, this is suited to input consisting of many interchanges
+ * of moderate size. The number of interchanges parsed ahead of the one whose
+ * SAX calls are being delivered is limited to twice the parallelism.
+ * <p>
+ * The EDISyntaxExceptionHandler and PluginControllerFactory, if set, are shared
+ * by the threads and must therefore be thread-safe.
+ */
+public class ParallelEDIReader extends EDIReader {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
+    private ExecutorService executor;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private PluginControllerFactoryInterface sharedPluginControllerFactory;
+
+    /**
+     * Parse the EDI interchanges from the input source, reading the entire input into memory.
+     */
+    @Override
+    public void parse(InputSource source) throws SAXException, IOException {
+        char[] chars = readFully(createReader(source));
+        int[] starts = InterchangeBoundaryScanner.scan(CharBuffer.wrap(chars));
+        logger.debug("Found {} interchange boundaries in {} chars", starts.length, chars.length);
+
+        parseInterchanges(starts.length, i -> {
+            int end = (i + 1 < starts.length) ? starts[i + 1] : chars.length;
+            return new CharInterchangeTask(chars, starts[i], end - starts[i]);
+        });
+    }
+
+    /**
+     * Parse the EDI interchanges held in a ByteBuffer, from its position to its limit.
+     * The position of the argument is not disturbed.
+     */
+    @Override
+    public void parse(ByteBuffer buffer) throws SAXException, IOException {
+        ByteBuffer input = buffer.slice();
+        int[] starts = InterchangeBoundaryScanner.scan(input);
+        logger.debug("Found {} interchange boundaries in {} bytes", starts.length, input.remaining());
+
+        parseInterchanges(starts.length, i -> {
+            ByteBuffer slice = input.duplicate();
+            slice.limit((i + 1 < starts.length) ? starts[i + 1] : input.limit());
+            slice.position(starts[i]);
+            return new ByteBufferInterchangeTask(slice.slice());
+        });
+    }
+
+    private void parseInterchanges(int count, TaskFactory taskFactory) throws SAXException, IOException {
+
+        startXMLDocument();
+
+        ExecutorService executorService = executor;
+        boolean ownExecutor = false;
+        if (executorService == null && count > 1) {
+            executorService = Executors.newFixedThreadPool(Math.min(parallelism, count), runnable -> {
+                Thread thread = new Thread(runnable, "ParallelEDIReader");
+                thread.setDaemon(true);
+                return thread;
+            });
+            ownExecutor = true;
+        }
+
+        Deque<Future<InterchangeResult>> pending = new ArrayDeque<>();
+        int window = 2 * Math.max(1, parallelism);
+        int next = 0;
+        try {
+            while (next < count || !pending.isEmpty()) {
+                while (next < count && pending.size() < window) {
+                    InterchangeTask task = taskFactory.create(next++);
+                    if (executorService == null) {
+                        FutureTask<InterchangeResult> futureTask = new FutureTask<>(task);
+                        futureTask.run();
+                        pending.add(futureTask);
+                    } else {
+                        pending.add(executorService.submit(task));
+                    }
+                }
+                deliver(pending.removeFirst());
+            }
+        } finally {
+            for (Future<InterchangeResult> future : pending)
+                future.cancel(true);
+            if (ownExecutor)
+                executorService.shutdownNow();
+        }
+
+        endXMLDocument();
+
+    }
+
+    private void deliver(Future<InterchangeResult> future) throws SAXException, IOException {
+        InterchangeResult result;
+        try {
+            result = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SAXException("Interrupted while parsing interchanges in parallel", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SAXException) throw (SAXException) cause;
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new SAXException(cause.getMessage(), (Exception) cause);
+        }
+
+        // The SAX calls and acknowledgment output produced before any failure are passed along,
+        // as they would have been had the interchange been parsed on this thread
+        result.recorder.replay(getContentHandler());
+        if (result.ack != null)
+            result.ack.replay(getAckStream());
+        if (result.alternateAck != null)
+            result.alternateAck.replay(getAlternateAckStream());
+
+        Throwable failure = result.failure;
+        if (failure != null) {
+            if (failure instanceof SAXException) throw (SAXException) failure;
+            if (failure instanceof IOException) throw (IOException) failure;
+            if (failure instanceof RuntimeException) throw (RuntimeException) failure;
+            if (failure instanceof Error) throw (Error) failure;
+            throw new SAXException(failure.getMessage(), (Exception) failure);
+        }
+
+        EDIReader reader = result.lastReader;
+        if (reader != null) {
+            setDelimiter(reader.getDelimiter());
+            setSubDelimiter(reader.getSubDelimiter());
+            setSubSubDelimiter(reader.getSubSubDelimiter());
+            setRepetitionSeparator(reader.getRepetitionSeparator());
+            setRelease(reader.getRelease());
+            setDecimalMark(reader.getDecimalMark());
+            setTerminator(reader.getTerminator());
+            setTerminatorSuffix(reader.getTerminatorSuffix());
+        }
+    }
+
+    private static char[] readFully(Reader reader) throws IOException {
+        char[] chars = new char[64 * 1024];
+        int length = 0;
+        int n;
+        while ((n = reader.read(chars, length, chars.length - length)) != -1) {
+            length += n;
+            if (length == chars.length)
+                chars = Arrays.copyOf(chars, 2 * chars.length);
+        }
+        return length == chars.length ? chars : Arrays.copyOf(chars, length);
+    }
+
+    @Override
+    public void setPluginControllerFactory(PluginControllerFactoryInterface pluginControllerFactory) {
+        super.setPluginControllerFactory(pluginControllerFactory);
+        sharedPluginControllerFactory = pluginControllerFactory;
+    }
+
+    /**
+     * Designates the ExecutorService on which interchanges are parsed. If none is designated,
+     * a pool of threads is created for each call to parse() and shut down upon its return.
+     *
+     * @param executor ExecutorService, or null
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Sets the number of interchanges to be parsed at the same time. This is the number of threads
+     * created if no ExecutorService is designated. The default is the number of available processors.
+     *
+     * @param parallelism number of interchanges to be parsed at the same time
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        this.parallelism = parallelism;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    private interface TaskFactory {
+        InterchangeTask create(int index);
+    }
+
+    private static class InterchangeResult {
+        private final SAXEventRecorder recorder = new SAXEventRecorder();
+        private DeferredWriter ack;
+        private DeferredWriter alternateAck;
+        private EDIReader lastReader;
+        private Throwable failure;
+    }
+
+    /**
+     * Parses the interchanges in one portion of the input, normally a single interchange.
+     */
+    private abstract class InterchangeTask implements Callable<InterchangeResult> {
+
+        @Override
+        public InterchangeResult call() {
+            InterchangeResult result = new InterchangeResult();
+            if (getAckStream() != null)
+                result.ack = new DeferredWriter();
+            if (getAlternateAckStream() != null)
+                result.alternateAck = new DeferredWriter();
+
+            EDIReader reader;
+            try {
+                while ((reader = nextReader()) != null) {
+                    configure(reader, result);
+                    parseWith(reader);
+                    result.lastReader = reader;
+                }
+            } catch (Exception | Error e) {
+                logger.debug("Interchange parsed in parallel failed: {}", e.getMessage());
+                result.failure = e;
+            }
+            return result;
+        }
+
+        private void configure(EDIReader reader, InterchangeResult result) {
+            reader.setExternalXmlDocumentStart(true);
+            reader.setAcknowledgmentSpillThreshold(getAcknowledgmentSpillThreshold());
+            reader.setAcknowledgment(result.ack);
+            reader.setAlternateAcknowledgment(result.alternateAck);
+            reader.setContentHandler(result.recorder);
+            reader.setSyntaxExceptionHandler(getSyntaxExceptionHandler());
+            reader.setNamespaceEnabled(isNamespaceEnabled());
+            reader.setIncludeSyntaxCharacters(isIncludeSyntaxCharacters());
+            reader.setTokenizerBufferSize(getTokenizerBufferSize());
+            reader.setAdaptiveBuffer(isAdaptiveBuffer());
+            reader.setTransactionParallelism(getTransactionParallelism());
+            reader.setAcknowledgmentOnly(isAcknowledgmentOnly());
+            reader.setTransactionExecutor(getTransactionExecutor());
+            reader.setXMLTags(getXMLTags());
+            if (sharedPluginControllerFactory != null)
+                reader.setPluginControllerFactory(sharedPluginControllerFactory);
+        }
+
+        protected abstract EDIReader nextReader() throws IOException, SAXException;
+
+        protected abstract void parseWith(EDIReader reader) throws IOException, SAXException;
+    }
+
+    private class CharInterchangeTask extends InterchangeTask {
+        private final InputSource source;
+        private char[] leftOver;
+
+        CharInterchangeTask(char[] chars, int offset, int length) {
+            source = new InputSource(new CharArrayReader(chars, offset, length));
+        }
+
+        @Override
+        protected EDIReader nextReader() throws IOException, SAXException {
+            return EDIReaderFactory.createEDIReader(source, leftOver, getTokenizerBufferSize(), isAdaptiveBuffer());
+        }
+
+        @Override
+        protected void parseWith(EDIReader reader) throws IOException, SAXException {
+            reader.parse(source);
+            leftOver = reader.getTokenizer().getBuffered();
+        }
+    }
+
+    private class ByteBufferInterchangeTask extends InterchangeTask {
+        private ByteBuffer remaining;
+
+        ByteBufferInterchangeTask(ByteBuffer buffer) {
+            remaining = buffer;
+        }
+
+        @Override
+        protected EDIReader nextReader() throws IOException, SAXException {
+            return EDIReaderFactory.createEDIReader(remaining);
+        }
+
+        @Override
+        protected void parseWith(EDIReader reader) throws IOException, SAXException {
+            // The reader already has a tokenizer over the buffer, so the InputSource is not consulted.
+            reader.parse(new InputSource());
+            remaining = ((ByteBufferTokenizer) reader.getTokenizer()).getUnconsumed();
+        }
+    }
+
+    /**
+     * Holds acknowledgment output in memory, noting where the acknowledgment generator
+     * closed the Writer so that the output can later be written in the same way.
+     */
+    private static class DeferredWriter extends Writer {
+        private final List<String> closedParts = new ArrayList<>();
+        private StringBuilder current = new StringBuilder();
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            current.append(cbuf, off, len);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+            closedParts.add(current.toString());
+            current = new StringBuilder();
+        }
+
+        void replay(Writer writer) throws IOException {
+            for (String part : closedParts) {
+                writer.write(part);
+                writer.close();
+            }
+            if (current.length() > 0) {
+                writer.write(current.toString());
+                writer.flush();
+            }
+        }
+    }
+}
@@ -20,8 +20,18 @@
 
 package com.berryworks.edireader;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.function.Supplier;
 
 /**
  * Data structure that associates leading character sequences with specific parser implementations.
@@ -36,37 +46,52 @@ import java.util.Map;
  * The classes that implement these formats are optional modules not included in the core EDIReader framework.
  * If an optional parser module is present in the classpath, the registry is therefore able to
  * select and load the appropriate parser in response to the leading character sequences in the data.
+ * A parser listed by class name is loaded the first time it is needed; if it cannot be loaded, that
+ * fact is remembered and the class is not sought again.
  * <p>
  * It is also possible for a developer to implement a parser for an EDI-like data format and register that
  * parser along with the leading data characters which signal the instance of an interchange of that format.
  * In this way, the EDIReader framework can be extended to parse previously unsupported data formats in the same
- * way that it supports X12 and EDIFACT.
+ * way that it supports X12 and EDIFACT. A parser may be registered by calling register(), or by providing an
+ * implementation of EDIReaderProvider that is found by java.util.ServiceLoader when this class is loaded.
  */
 public class ParserRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
+
+    private static final Map<String, ParserEntry> builtinEntries = new HashMap<>();
+    private static final Map<String, ParserEntry> registeredEntries = new HashMap<>();
 
-    private static final Map<String, Class> builtinClass = new HashMap<>();
-    private static final Map<String, String>
-            registeredClassNames = new HashMap<>();
+    private static volatile PrefixNode builtinTrie;
+    private static volatile PrefixNode registeredTrie;
+    private static volatile ParserEntry catchAll;
 
     static {
         new ParserRegistry();
     }
 
     private ParserRegistry() {
-        builtinClass.put("ISA", AnsiReader.class);
-        builtinClass.put("UNA", EdifactReaderWithCONTRL.class);
-        builtinClass.put("UNB", EdifactReaderWithCONTRL.class);
-        builtinClass.put("UNH", UNHReader.class);
-        registeredClassNames.put("UNH",
-                "com.berryworks.edireader.amadeus.AmadeusReader");
-        registeredClassNames.put("MSH",
-                "com.berryworks.edireader.hl7.HL7Reader");
-        registeredClassNames.put("STX",
-                "com.berryworks.edireader.tradacoms.TradacomsReader");
-        registeredClassNames.put("1",
-                "com.berryworks.edireader.ach.ACHReader");
-        registeredClassNames.put("AA0",
-                "com.berryworks.edireader.nsf.NSFReader");
+        builtinEntries.put("ISA", new ParserEntry(AnsiReader::new));
+        builtinEntries.put("UNA", new ParserEntry(EdifactReaderWithCONTRL::new));
+        builtinEntries.put("UNB", new ParserEntry(EdifactReaderWithCONTRL::new));
+        builtinEntries.put("UNH", new ParserEntry(UNHReader::new));
+        builtinTrie = PrefixNode.of(builtinEntries);
+
+        registeredEntries.put("UNH", new ParserEntry("com.berryworks.edireader.amadeus.AmadeusReader"));
+        registeredEntries.put("MSH", new ParserEntry("com.berryworks.edireader.hl7.HL7Reader"));
+        registeredEntries.put("STX", new ParserEntry("com.berryworks.edireader.tradacoms.TradacomsReader"));
+        registeredEntries.put("1", new ParserEntry("com.berryworks.edireader.ach.ACHReader"));
+        registeredEntries.put("AA0", new ParserEntry("com.berryworks.edireader.nsf.NSFReader"));
+
+        try {
+            for (EDIReaderProvider provider : ServiceLoader.load(EDIReaderProvider.class)) {
+                logger.debug("Registering parser provider {}", provider.getClass().getName());
+                for (String firstChars : provider.getFirstChars())
+                    registeredEntries.put(firstChars, new ParserEntry(provider::createReader));
+            }
+        } catch (ServiceConfigurationError e) {
+            logger.warn("Unable to load parser providers: {}", e.getMessage());
+        }
+        registeredChanged();
     }
 
     /**
@@ -76,48 +101,33 @@ public class ParserRegistry {
      * Parsers for ANSI X12 and UN/EDIFACT are built-in. Other parsers can be registered, including
      * custom parsers developed by users. Parsers registered via register() are considered first for
      * a match with the incoming data before the built-in parsers are considered, allowing users to
-     * provide custom implementations of X12 and EDIFACT parsers if needed.
+     * provide custom implementations of X12 and EDIFACT parsers if needed. Among the parsers
+     * registered for leading chars that match the data, the one with the longest leading chars
+     * is chosen.
      *
      * @param firstChars of data to be parsed
      * @return subclass of EDIReader that knows how to parse the data, or null if no parser is available
      */
-
     public static EDIReader get(String firstChars) {
         EDIReader result = null;
-        Class parserClass;
 
-        // See if a suitable registered class name is recognized by these
-        // firstChars
-        String name = (String) getMatch(firstChars, registeredClassNames);
-        if (name != null) {
-            try {
-                parserClass = Class.forName(name);
-                result = (EDIReader) parserClass.newInstance();
-            } catch (Exception ignore) {
-            }
-        }
+        // See if a suitable registered parser is recognized by these firstChars
+        ParserEntry entry = registeredTrie.longestMatch(firstChars);
+        if (entry != null)
+            result = entry.create();
 
-        // If not, see if there is a builtin class that matches
+        // If not, see if there is a builtin parser that matches
         if (result == null) {
-            parserClass = (Class) getMatch(firstChars, builtinClass);
-            if (parserClass != null) {
-                try {
-                    result = (EDIReader) parserClass.newInstance();
-                } catch (Exception ignore) {
-                }
-            }
+            entry = builtinTrie.longestMatch(firstChars);
+            if (entry != null)
+                result = entry.create();
         }
 
         // If still nothing, return the "catch all" parser if there is one
         if (result == null) {
-            name = registeredClassNames.get("");
-            if (name != null) {
-                try {
-                    parserClass = Class.forName(name);
-                    result = (EDIReader) parserClass.newInstance();
-                } catch (Exception ignore) {
-                }
-            }
+            entry = catchAll;
+            if (entry != null)
+                result = entry.create();
         }
 
         return result;
@@ -131,16 +141,151 @@ public class ParserRegistry {
      * @param className  fully qualified classname of an EDIReader subclass
      */
     public static void register(String firstChars, String className) {
-        registeredClassNames.put(firstChars, className);
+        register(firstChars, new ParserEntry(className));
     }
 
-    private static Object getMatch(String firstChars, Map map) {
-        Object result = null;
-        for (int n = firstChars.length(); result == null && n > 0; firstChars = firstChars.substring(0, --n)) {
-            result = map.get(firstChars);
+    /**
+     * Registers a parser and associates it with the leading data characters that signal an instance of an interchange
+     * supported by the parser. The supplier is called each time a parser is needed for data beginning
+     * with those characters, and should return a new instance, or null if it is unable to provide one.
+     *
+     * @param firstChars of data to be parsed
+     * @param supplier   provides instances of an EDIReader subclass, such as MyReader::new
+     */
+    public static void register(String firstChars, Supplier<? extends EDIReader> supplier) {
+        register(firstChars, new ParserEntry(supplier));
+    }
+
+    private static void register(String firstChars, ParserEntry entry) {
+        synchronized (registeredEntries) {
+            registeredEntries.put(firstChars, entry);
+            registeredChanged();
         }
+    }
 
-        return result;
+    private static void registeredChanged() {
+        registeredTrie = PrefixNode.of(registeredEntries);
+        catchAll = registeredEntries.get("");
+    }
+
+    /**
+     * A way of creating instances of a particular parser, either from a Supplier or from the name of
+     * a class that is loaded when first needed.
+     */
+    private static class ParserEntry {
+        private final String className;
+        private volatile Supplier<? extends EDIReader> supplier;
+        private volatile boolean unavailable;
+
+        ParserEntry(Supplier<? extends EDIReader> supplier) {
+            this.className = null;
+            this.supplier = supplier;
+        }
+
+        ParserEntry(String className) {
+            this.className = className;
+        }
+
+        EDIReader create() {
+            Supplier<? extends EDIReader> s = supplier;
+            if (s == null) {
+                if (unavailable)
+                    return null;
+                s = resolve();
+                if (s == null)
+                    return null;
+            }
+            try {
+                return s.get();
+            } catch (RuntimeException e) {
+                logger.warn("Unable to create parser: {}", e.getMessage());
+                return null;
+            }
+        }
+
+        private synchronized Supplier<? extends EDIReader> resolve() {
+            if (supplier != null || unavailable)
+                return supplier;
+            try {
+                Class<?> parserClass = Class.forName(className);
+                MethodHandle constructor = MethodHandles.lookup()
+                        .findConstructor(parserClass, MethodType.methodType(void.class))
+                        .asType(MethodType.methodType(EDIReader.class));
+                supplier = () -> {
+                    try {
+                        return (EDIReader) constructor.invokeExact();
+                    } catch (RuntimeException | Error e) {
+                        throw e;
+                    } catch (Throwable t) {
+                        throw new RuntimeException(t);
+                    }
+                };
+            } catch (ClassNotFoundException | LinkageError e) {
+                logger.debug("Parser class {} is not available", className);
+                unavailable = true;
+            } catch (ReflectiveOperationException | ClassCastException | IllegalArgumentException e) {
+                logger.warn("Parser class {} cannot be used: {}", className, e.getMessage());
+                unavailable = true;
+            }
+            return supplier;
+        }
+    }
+
+    /**
+     * A node in a trie of leading chars, allowing the entry registered for the longest leading chars
+     * matching the data to be found in a single pass over the data without forming substrings.
+     */
+    private static class PrefixNode {
+        private char[] keys = new char[0];
+        private PrefixNode[] children = new PrefixNode[0];
+        private ParserEntry entry;
+
+        static PrefixNode of(Map<String, ParserEntry> entries) {
+            PrefixNode root = new PrefixNode();
+            for (Map.Entry<String, ParserEntry> e : entries.entrySet()) {
+                String firstChars = e.getKey();
+                // Leading chars of zero length designate the catch-all parser, which is handled separately
+                if (firstChars.isEmpty())
+                    continue;
+                PrefixNode node = root;
+                for (int i = 0; i < firstChars.length(); i++)
+                    node = node.addChild(firstChars.charAt(i));
+                node.entry = e.getValue();
+            }
+            return root;
+        }
+
+        ParserEntry longestMatch(String firstChars) {
+            ParserEntry result = null;
+            PrefixNode node = this;
+            for (int i = 0; i < firstChars.length(); i++) {
+                node = node.child(firstChars.charAt(i));
+                if (node == null)
+                    break;
+                if (node.entry != null)
+                    result = node.entry;
+            }
+            return result;
+        }
+
+        private PrefixNode child(char c) {
+            for (int i = 0; i < keys.length; i++)
+                if (keys[i] == c)
+                    return children[i];
+            return null;
+        }
+
+        private PrefixNode addChild(char c) {
+            PrefixNode node = child(c);
+            if (node == null) {
+                int n = keys.length;
+                keys = Arrays.copyOf(keys, n + 1);
+                children = Arrays.copyOf(children, n + 1);
+                keys[n] = c;
+                children[n] = node = new PrefixNode();
+            }
+            return node;
+        }
     }
 
 }
@@ -21,6 +21,7 @@
 package com.berryworks.edireader;
 
 import com.berryworks.edireader.plugin.LoopDescriptor;
+import com.berryworks.edireader.plugin.PluginAutomaton;
 import com.berryworks.edireader.plugin.PluginControllerImpl;
 import com.berryworks.edireader.plugin.PluginPreparation;
 import com.berryworks.edireader.tokenizer.Tokenizer;
@@ -114,6 +115,7 @@ public abstract class Plugin {
     protected final String documentType;
     protected final String documentName;
     protected PluginPreparation optimizedForm;
+    protected PluginAutomaton automaton;
     private boolean validating;
 
     public Plugin(String documentType, String documentName) {
@@ -197,22 +199,10 @@ public abstract class Plugin {
 
         for (LoopDescriptor descriptor : descriptorList) {
             boolean candidate = matchesWithoutRegardToFlagConditionals(descriptor, segment, currentLoopStack, currentLevel);
-            if (candidate) {
-
-                // Now check to see if has any flag-related conditions.
-                Set<String> conditions = descriptor.getConditionFlags();
-                boolean satisfied = true;
-                for (String condition : conditions) {
-                    if (!resultFlags.contains(condition)) {
-                        satisfied = false;
-                        break;
-                    }
-                }
-
-                if (satisfied) {
-                    result = descriptor;
-                    break;
-                }
+            // Now check to see if has any flag-related conditions.
+            if (candidate && descriptor.areConditionsSatisfied(resultFlags)) {
+                result = descriptor;
+                break;
             }
         }
 
@@ -235,25 +225,41 @@ public abstract class Plugin {
             return levelContext == currentLevel;
         }
 
-        String candidateContext = descriptor.getLoopContext();
-
-        if (currentLoopStack == null)
-            currentLoopStack = "*";
         if (debug)
-            logger.debug("checking loop context {} with current loop stack {}", candidateContext, currentLoopStack);
+            logger.debug("checking loop context {} with current loop stack {}", descriptor.getLoopContext(), currentLoopStack);
 
-        if (ANY_CONTEXT.equals(candidateContext)) {
-            return true;
-        } else if (candidateContext.startsWith("/")
-                && candidateContext.length() > 1
-                && currentLoopStack.startsWith(candidateContext)) {
-            logger.debug("startsWith satisfied");
-            return true;
-        } else if (currentLoopStack.endsWith(candidateContext)) {
-            return true;
-        }
+        return descriptor.matchesLoopContext(currentLoopStack);
+    }
 
-        return false;
+    /**
+     * Query the plugin about a loop that starts with a designated segment type,
+     * given a State of the plugin's automaton instead of a String representation
+     * of the LoopStack. The result is the same as that of the corresponding call
+     * to <code>query(segment, state.getPath(), currentLevel, resultFlags)</code>.
+     *
+     * @param state        State of the automaton corresponding to the current LoopStack
+     * @param segment      type of segment encountered
+     * @param currentLevel nesting level of current state
+     * @param resultFlags  flags set by previously applied LoopDescriptors
+     * @return descriptor matching query parameters, or null if none
+     */
+    public LoopDescriptor query(PluginAutomaton.State state, String segment, int currentLevel, Set<String> resultFlags) {
+        if (automaton == null)
+            return query(segment, state.getPath(), currentLevel, resultFlags);
+        return automaton.query(state, segment, currentLevel, resultFlags);
+    }
+
+    /**
+     * Returns the compiled form of this plugin's LoopDescriptors, or null if the plugin
+     * has not been prepared or has no LoopDescriptors.
+     * <p>
+     * A subclass that overrides <code>query(String, String, int, Set)</code> to apply its own
+     * logic has no automaton, so that its query method continues to be called for each segment.
+     *
+     * @return PluginAutomaton
+     */
+    public PluginAutomaton getAutomaton() {
+        return automaton;
     }
 
     public static int getCount() {
@@ -273,6 +279,16 @@ public abstract class Plugin {
 
     public void prepare() {
         optimizedForm = new PluginPreparation(loops);
+        automaton = (loops == null || overridesQuery()) ? null : new PluginAutomaton(loops);
+    }
+
+    private boolean overridesQuery() {
+        try {
+            return getClass().getMethod("query", String.class, String.class, int.class, Set.class)
+                    .getDeclaringClass() != Plugin.class;
+        } catch (NoSuchMethodException e) {
+            return true;
+        }
     }
 
     public boolean isValidating() {
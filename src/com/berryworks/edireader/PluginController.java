@@ -20,6 +20,7 @@
 
 package com.berryworks.edireader;
 
+import com.berryworks.edireader.util.sax.QueuedContentHandler;
 import org.xml.sax.ContentHandler;
 
 /**
@@ -131,6 +132,17 @@ public class PluginController {
         return false;
     }
 
+    /**
+     * Returns the number of SAX events to be held by the QueuedContentHandler
+     * if isQueuedContentHandlerRequired() is true. This must be enough for the
+     * queued elements to still include any whose attributes are to be modified.
+     *
+     * @return number of SAX events
+     */
+    public int getQueuedContentHandlerCapacity() {
+        return QueuedContentHandler.DEFAULT_CAPACITY;
+    }
+
     /**
      * Notifies a plugin controller of an EDI element and it value
      * so that a subclass of PluginController could make decisions based
@@ -36,6 +36,14 @@ public abstract class ReplyGenerator {
 
     protected DateFormat hhmm;
 
+    private Date controlDate;
+
+    private String cachedDateAndTime;
+
+    private int cachedDateLength;
+
+    private char cachedDelimiter;
+
     public abstract void generateAcknowledgementWrapup() throws IOException;
 
     public abstract void generateTransactionAcknowledgment(String documentType,
@@ -73,6 +81,11 @@ public abstract class ReplyGenerator {
         if (controlDateAndTimeOverride != null)
             return controlDateAndTimeOverride;
 
+        // The same date and time are used throughout the acknowledgment of an interchange,
+        // so they are formatted only once for each combination of date length and delimiter.
+        if (cachedDateAndTime != null && dateLength == cachedDateLength && delimiter == cachedDelimiter)
+            return cachedDateAndTime;
+
         // Do lazy initializations if needed
         if (yymmdd == null)
             yymmdd = new SimpleDateFormat("yyMMdd");
@@ -81,9 +94,13 @@ public abstract class ReplyGenerator {
         if (hhmm == null)
             hhmm = new SimpleDateFormat("HHmm");
 
-        Date now = new Date();
+        if (controlDate == null)
+            controlDate = new Date();
         DateFormat sixOrEight = (dateLength == 6) ? yymmdd : yyyymmdd;
-        return sixOrEight.format(now) + delimiter + hhmm.format(now);
+        cachedDateAndTime = sixOrEight.format(controlDate) + delimiter + hhmm.format(controlDate);
+        cachedDateLength = dateLength;
+        cachedDelimiter = delimiter;
+        return cachedDateAndTime;
     }
 
 }
\ No newline at end of file
@@ -61,6 +61,16 @@ public abstract class StandardReader extends EDIReader {
     private PluginControllerFactoryInterface pluginControllerFactory;
     protected PluginController segmentPluginController;
 
+    /**
+     * String forms of sub-element sequence numbers, indexed by value
+     */
+    private static final String[] SUB_ELEMENT_SEQUENCE = new String[32];
+
+    static {
+        for (int i = 0; i < SUB_ELEMENT_SEQUENCE.length; i++)
+            SUB_ELEMENT_SEQUENCE[i] = String.valueOf(i);
+    }
+
     protected abstract Token recognizeBeginning() throws IOException, SAXException;
 
     protected abstract Token parseInterchange(Token t) throws SAXException,
@@ -144,7 +154,7 @@ public abstract class StandardReader extends EDIReader {
                         "",
                         getXMLTags().getSubElementSequence(),
                         getXMLTags().getSubElementSequence(),
-                        "CDATA", String.valueOf(1 + t.getSubIndex()));
+                        "CDATA", subElementSequence(1 + t.getSubIndex()));
                 startElement(getXMLTags().getSubElementTag(), attributes);
                 getContentHandler().characters(t.getValueChars(), 0, t.getValueLength());
                 endElement(getXMLTags().getSubElementTag());
@@ -170,6 +180,10 @@ public abstract class StandardReader extends EDIReader {
         }
     }
 
+    private static String subElementSequence(int n) {
+        return n < SUB_ELEMENT_SEQUENCE.length ? SUB_ELEMENT_SEQUENCE[n] : String.valueOf(n);
+    }
+
     /**
      * Set an override value to be used whenever generating a control date and
      * time. This method is used for automated testing.
@@ -189,6 +203,19 @@ public abstract class StandardReader extends EDIReader {
         }
     }
 
+    @Override
+    public void reset() {
+        super.reset();
+        interchangeControlNumber = null;
+        groupControlNumber = null;
+        groupCount = 0;
+        documentCount = 0;
+        ackGenerator = null;
+        alternateAckGenerator = null;
+        syntaxException = null;
+        segmentPluginController = null;
+    }
+
     protected boolean recover(RecoverableSyntaxException e) {
         return getSyntaxExceptionHandler() != null && getSyntaxExceptionHandler().process(e);
     }
@@ -59,7 +59,7 @@ public class UNHReader extends EdifactReader {
                 throw new EDISyntaxException(
                         "Invalid beginning of UNH segment", getTokenizer());
             }
-            String sType = token.getValue();
+            String sType = token.getSegmentType();
             if (sType.equals("UNH")) {
                 impliedFunctionalGroup(token);
             } else {
@@ -95,7 +95,7 @@ public class UNHReader extends EdifactReader {
                         getTokenizer().getSegmentCount());
             }
 
-            String sType = token.getValue();
+            String sType = token.getSegmentType();
             if (sType.equals("UNH")) {
                 setGroupCount(1 + getGroupCount());
                 parseDocument(token);
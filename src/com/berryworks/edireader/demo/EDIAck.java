@@ -21,7 +21,7 @@
 package com.berryworks.edireader.demo;
 
 import com.berryworks.edireader.EDIReader;
-import com.berryworks.edireader.EDIReaderFactory;
+import com.berryworks.edireader.EDIReaderPool;
 import org.xml.sax.ContentHandler;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
@@ -72,19 +72,28 @@ public class EDIAck {
         char[] leftOver = null;
         Writer ackWriter = new PrintWriter(ackOutput);
 
+        // Parsers are reused from one interchange to the next instead of creating a new one for each
+        EDIReaderPool pool = new EDIReaderPool();
+
         try {
             while (true) {
-                // The following line creates an EDIReader explicitly
+                // The following line obtains an EDIReader explicitly
                 // as an alternative to the JAXP-based technique.
-                parser = EDIReaderFactory.createEDIReader(inputSource, leftOver);
+                parser = pool.acquire(inputSource, leftOver);
                 if (parser == null) {
                     // end of input
                     break;
                 }
-                parser.setContentHandler(handler);
-                parser.setAcknowledgment(ackWriter);
-                parser.parse(inputSource);
-                leftOver = parser.getTokenizer().getBuffered();
+                try {
+                    parser.setContentHandler(handler);
+                    // Only the acknowledgment is of interest, so the content of each transaction can be passed over
+                    parser.setAcknowledgmentOnly(true);
+                    parser.setAcknowledgment(ackWriter);
+                    parser.parse(inputSource);
+                    leftOver = parser.getTokenizer().getBuffered();
+                } finally {
+                    pool.release(parser);
+                }
             }
 
         } catch (IOException e) {
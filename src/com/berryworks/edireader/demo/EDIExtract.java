@@ -0,0 +1,139 @@
+/*
+ * Copyright 2005-2019 by BerryWorks Software, LLC. All rights reserved.
+ *
+ * This file is part of EDIReader. You may obtain a license for its use directly from
+ * BerryWorks Software, and you may also choose to use this software under the terms of the
+ * GPL version 3. Other products in the EDIReader software suite are available only by licensing
+ * with BerryWorks. Only those files bearing the GPL statement below are available under the GPL.
+ *
+ * EDIReader is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * EDIReader is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with EDIReader.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.berryworks.edireader.demo;
+
+import com.berryworks.edireader.index.TransactionExtractor;
+import com.berryworks.edireader.util.CommandLine;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Extracts selected transactions from an EDI file, each as a complete interchange, without
+ * parsing the file from the beginning. An index of the file is kept in a sidecar file
+ * next to it, and is built on first use.
+ * <p>
+ * Assuming your CLASSPATH contains edireader-n.n.n.jar, you may run this program with
+ * the command line <br>
+ * <br><code>
+ * java com.berryworks.edireader.demo.EDIExtract input-file [-c control-number] [-n position] [-o output-file]
+ * </code><br><br>
+ * If an output-file is not specified, System.out is used.
+ */
+public class EDIExtract {
+    public final static String NEW_LINE = System.getProperty("line.separator");
+
+    private Path inputFile;
+    private Path outputFile;
+    private String controlNumber;
+    private int position = -1;
+
+    public static void main(String[] args) {
+        EDIExtract theObject = new EDIExtract();
+        if (!configure(args, theObject)) return;
+        theObject.run();
+    }
+
+    /**
+     * Main processing method for the EDIExtract object
+     */
+    public void run() {
+        try (TransactionExtractor extractor = new TransactionExtractor(inputFile)) {
+            List<Integer> selected;
+            if (controlNumber != null)
+                selected = extractor.find(controlNumber);
+            else if (position >= 0 && position < extractor.getIndex().getTransactionCount())
+                selected = Collections.singletonList(position);
+            else
+                selected = Collections.emptyList();
+
+            if (selected.isEmpty()) {
+                System.err.println("No such transaction in " + inputFile);
+                return;
+            }
+
+            if (outputFile != null) {
+                extractor.extract(selected.get(0), outputFile);
+                System.out.println("Output file " + outputFile + " written");
+            } else {
+                WritableByteChannel out = Channels.newChannel(System.out);
+                for (int n : selected)
+                    extractor.extract(n, out);
+                System.out.flush();
+            }
+        } catch (SAXException | IOException e) {
+            System.err.println("\nFailure to extract transaction: " + e);
+            System.err.println(e.getMessage());
+        }
+    }
+
+    static boolean configure(final String[] args, EDIExtract theObject) {
+        CommandLine commandLine = new CommandLine(args) {
+            @Override
+            public String usage() {
+                String text = NEW_LINE + "EDIExtract ediInputFile [-c controlNumber] [-n position] [-o ediOutputFile]";
+                text += NEW_LINE + "options:";
+                text += NEW_LINE + "   -c   Extract the transactions with this ST02 or UNH01 control number.";
+                text += NEW_LINE + "   -n   Extract the transaction at this 0-origin position in the file.";
+                text += NEW_LINE + "   -o   Write the first transaction selected to this file.";
+                return text;
+            }
+        };
+
+        String inputFileName = commandLine.getPosition(0);
+        if (!commandLine.isValid() || inputFileName == null) {
+            System.out.println(commandLine.usage());
+            return false;
+        }
+
+        theObject.setInputFile(Paths.get(inputFileName));
+        String outputFileName = commandLine.getOption("o");
+        if (outputFileName != null)
+            theObject.setOutputFile(Paths.get(outputFileName));
+        theObject.setControlNumber(commandLine.getOption("c"));
+        String position = commandLine.getOption("n");
+        if (position != null)
+            theObject.setPosition(Integer.parseInt(position));
+        return true;
+    }
+
+    public void setInputFile(Path inputFile) {
+        this.inputFile = inputFile;
+    }
+
+    public void setOutputFile(Path outputFile) {
+        this.outputFile = outputFile;
+    }
+
+    public void setControlNumber(String controlNumber) {
+        this.controlNumber = controlNumber;
+    }
+
+    public void setPosition(int position) {
+        this.position = position;
+    }
+}
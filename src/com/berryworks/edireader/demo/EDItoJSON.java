@@ -0,0 +1,143 @@
+/*
+ * Copyright 2005-2019 by BerryWorks Software, LLC. All rights reserved.
+ *
+ * This file is part of EDIReader. You may obtain a license for its use directly from
+ * BerryWorks Software, and you may also choose to use this software under the terms of the
+ * GPL version 3. Other products in the EDIReader software suite are available only by licensing
+ * with BerryWorks. Only those files bearing the GPL statement below are available under the GPL.
+ *
+ * EDIReader is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * EDIReader is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with EDIReader.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.berryworks.edireader.demo;
+
+import com.berryworks.edireader.EDIReader;
+import com.berryworks.edireader.util.CommandLine;
+import com.berryworks.edireader.util.sax.JsonWriterHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import java.io.*;
+
+/**
+ * Converts EDI input to JSON output, writing the JSON with a JsonWriterHandler as the
+ * EDI is parsed.
+ * <p>
+ * Assuming your CLASSPATH contains edireader-n.n.n.jar, you may run this program with
+ * the command line <br>
+ * <br><code>
+ * java com.berryworks.edireader.demo.EDItoJSON [input-file] [-o output-file] [-c true|false]
+ * </code><br><br>
+ * If an input-file is not specified, System.in is used; if an output-file is
+ * not specified, System.out is used. The JSON is written in UTF-8.
+ */
+public class EDItoJSON {
+    public final static String NEW_LINE = System.getProperty("line.separator");
+
+    private OutputStream generatedOutput;
+    private Reader inputReader;
+    private boolean compact;
+    private boolean recover;
+
+    public static void main(String[] args) {
+        EDItoJSON theObject = new EDItoJSON();
+        if (!configure(args, theObject)) return;
+        theObject.run();
+    }
+
+    /**
+     * Main processing method for the EDItoJSON object
+     */
+    public void run() {
+
+        try {
+            EDIReader ediReader = new EDIReader();
+
+            // Tell the ediReader to handle EDI syntax errors instead of aborting
+            if (recover) {
+                ediReader.setSyntaxExceptionHandler(new EDItoXML.IgnoreSyntaxExceptions());
+            }
+
+            JsonWriterHandler handler = new JsonWriterHandler(generatedOutput);
+            handler.setCompact(compact);
+            ediReader.setContentHandler(handler);
+            ediReader.parse(new InputSource(inputReader));
+        } catch (SAXException | IOException e) {
+            System.err.println("\nFailure to generate JSON: " + e);
+            System.err.println(e.getMessage());
+        }
+
+        try {
+            inputReader.close();
+        } catch (IOException ignored) {
+        }
+        try {
+            generatedOutput.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    static boolean configure(final String[] args, EDItoJSON theObject) {
+        CommandLine commandLine = new CommandLine(args) {
+            @Override
+            public String usage() {
+                String text = NEW_LINE + "EDItoJSON [ediInputFile] [-o jsonOutputFile] [-c true|false] [-r true|false]";
+                text += NEW_LINE + "options:";
+                text += NEW_LINE + "   -c   Write each segment compactly as an array of element values. Defaults to false.";
+                text += NEW_LINE + "   -r   Recover and continue parsing after an error is detected in EDI input. Defaults to false.";
+                return text;
+            }
+        };
+
+        if (!commandLine.isValid()) {
+            return false;
+        }
+
+        String inputFileName = commandLine.getPosition(0);
+        String outputFileName = commandLine.getOption("o");
+
+        OutputStream generatedOutput;
+        if (outputFileName == null) {
+            generatedOutput = System.out;
+        } else {
+            try {
+                generatedOutput = new FileOutputStream(outputFileName);
+                System.out.println("Output file " + outputFileName + " opened");
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+                throw new RuntimeException(e.getMessage());
+            }
+        }
+
+        theObject.setInputReader(EDItoXML.establishInput(inputFileName));
+        theObject.setJsonOutputStream(generatedOutput);
+        theObject.setCompact("true".equals(commandLine.getOption("c")));
+        theObject.setRecover("true".equals(commandLine.getOption("r")));
+        return true;
+    }
+
+    public void setCompact(boolean compact) {
+        this.compact = compact;
+    }
+
+    public void setRecover(boolean recover) {
+        this.recover = recover;
+    }
+
+    public void setInputReader(Reader inputReader) {
+        this.inputReader = inputReader;
+    }
+
+    public void setJsonOutputStream(OutputStream jsonOutputStream) {
+        generatedOutput = jsonOutputStream;
+    }
+}
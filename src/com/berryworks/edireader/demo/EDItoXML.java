@@ -25,18 +25,15 @@ import com.berryworks.edireader.error.EDISyntaxExceptionHandler;
 import com.berryworks.edireader.error.RecoverableSyntaxException;
 import com.berryworks.edireader.util.CommandLine;
 import com.berryworks.edireader.util.XmlFormatter;
+import com.berryworks.edireader.util.sax.XmlWriterHandler;
 import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
 
-import javax.xml.transform.TransformerConfigurationException;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.sax.SAXSource;
-import javax.xml.transform.stream.StreamResult;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 
 /**
- * Converts EDI input to XML output using the default XSLT transformer.
+ * Converts EDI input to XML output, writing the XML directly with an XmlWriterHandler.
  * <p>
  * Assuming your CLASSPATH contains edireader-n.n.n.jar, you may run this program with
  * the command line <br>
@@ -54,6 +51,7 @@ public class EDItoXML {
     private Reader inputReader;
     private boolean namespaceEnabled;
     private boolean recover;
+    private boolean indent;
 
     public static void main(String[] args) {
         EDItoXML theObject = new EDItoXML();
@@ -84,18 +82,13 @@ public class EDItoXML {
                 ediReader.setAcknowledgment(acknowledgmentWriter);
             }
 
-            // Establish the SAXSource
-            SAXSource source = new SAXSource(ediReader, new InputSource(inputReader));
-
-            // Use a StreamResult to capture the generated XML output
-            StreamResult result = new StreamResult(generatedOutput);
-
-            // Use a Transformer to generate XML output from the parsed input
-            TransformerFactory.newInstance().newTransformer().transform(source, result);
-        } catch (TransformerConfigurationException e) {
-            System.err.println("\nUnable to create Transformer: " + e);
-        } catch (TransformerException e) {
-            System.err.println("\nFailure to transform: " + e);
+            // Write the XML directly as the ediReader parses the input
+            XmlWriterHandler handler = new XmlWriterHandler(generatedOutput);
+            handler.setIndent(indent && !(generatedOutput instanceof XmlFormatter));
+            ediReader.setContentHandler(handler);
+            ediReader.parse(new InputSource(inputReader));
+        } catch (SAXException | IOException e) {
+            System.err.println("\nFailure to generate XML: " + e);
             System.err.println(e.getMessage());
         }
 
@@ -194,14 +187,8 @@ public class EDItoXML {
     }
 
     public void setIndent(boolean indent) {
-        if (indent) {
-            if (generatedOutput instanceof XmlFormatter) {
-                // The output Writer is already wrapper in an indenting filter, so do not do it again
-            } else {
-                // Wrap the Writer for the generated output with an indenting filter
-                generatedOutput = new XmlFormatter(generatedOutput);
-            }
-        }
+        // If the output Writer is already wrapped in an indenting filter, it is not indented again
+        this.indent = indent;
     }
 
     public void setInputReader(Reader inputReader) {
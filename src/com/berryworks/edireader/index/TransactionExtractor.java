@@ -0,0 +1,196 @@
+/*
+ * Copyright 2005-2019 by BerryWorks Software, LLC. All rights reserved.
+ *
+ * This file is part of EDIReader. You may obtain a license for its use directly from
+ * BerryWorks Software, and you may also choose to use this software under the terms of the
+ * GPL version 3. Other products in the EDIReader software suite are available only by licensing
+ * with BerryWorks. Only those files bearing the GPL statement below are available under the GPL.
+ *
+ * EDIReader is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * EDIReader is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with EDIReader.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.berryworks.edireader.index;
+
+import org.xml.sax.SAXException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Extracts individual transactions from an EDI file, each as a complete interchange, by seeking
+ * directly to it with the help of a TransactionIndex rather than parsing the file from the beginning.
+ * <p>
+ * The transaction, from its ST or UNH segment through its SE or UNT segment, is copied unchanged
+ * with FileChannel.transferTo(), which allows the operating system to move the bytes without
+ * passing them through the JVM. It is preceded by the interchange and group headers that enclose it
+ * in the file, and followed by trailers counting one transaction and one group, so that the
+ * result can be parsed or forwarded like any other interchange.
+ * <p>
+ * Transactions may be selected by their position in the file or by control number.
+ * The time to extract a transaction therefore depends only on its size, not on its position.
+ */
+public class TransactionExtractor implements Closeable {
+
+    private final FileChannel channel;
+    private final TransactionIndex index;
+    private final boolean ownChannel;
+
+    /**
+     * Extracts transactions from an EDI file, using the index in its sidecar file. If there is
+     * no current sidecar file, the index is built, which requires a single scan of the file.
+     *
+     * @param file EDI file
+     * @throws SAXException for invalid EDI encountered while building the index
+     * @throws IOException  for problem reading the file or its index
+     */
+    public TransactionExtractor(Path file) throws SAXException, IOException {
+        // The index is obtained before the channel is opened, so that a failure leaves nothing open
+        this(TransactionIndex.forFile(file), FileChannel.open(file), true);
+    }
+
+    /**
+     * Extracts transactions from an EDI file that is already open, using an index of that file.
+     * The channel is not closed by close().
+     *
+     * @param channel FileChannel open for reading the EDI file
+     * @param index   TransactionIndex built from the same file
+     */
+    public TransactionExtractor(FileChannel channel, TransactionIndex index) {
+        this(index, channel, false);
+    }
+
+    private TransactionExtractor(TransactionIndex index, FileChannel channel, boolean ownChannel) {
+        this.channel = channel;
+        this.index = index;
+        this.ownChannel = ownChannel;
+    }
+
+    public TransactionIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the positions of the transactions with a given control number, in the order in which
+     * they appear in the file. The same control number may be used in different interchanges or groups.
+     *
+     * @param controlNumber control number from ST02 or UNH01
+     * @return 0-origin numbers of the transactions, empty if there are none
+     */
+    public List<Integer> find(String controlNumber) {
+        return find(null, null, controlNumber);
+    }
+
+    /**
+     * Returns the positions of the transactions matching a combination of control numbers.
+     * A null argument matches any control number.
+     *
+     * @param interchangeControlNumber control number from ISA13 or UNB05, or null
+     * @param groupControlNumber       control number from GS06 or UNG05, or null
+     * @param transactionControlNumber control number from ST02 or UNH01, or null
+     * @return 0-origin numbers of the transactions, empty if there are none
+     */
+    public List<Integer> find(String interchangeControlNumber, String groupControlNumber, String transactionControlNumber) {
+        List<Integer> result = new ArrayList<>();
+        for (int i = 0; i < index.getTransactionCount(); i++) {
+            TransactionIndex.TransactionEntry transaction = index.getTransaction(i);
+            if (transactionControlNumber != null && !transactionControlNumber.equals(transaction.getControlNumber()))
+                continue;
+            if (groupControlNumber != null
+                    && !groupControlNumber.equals(index.getGroup(transaction.getGroup()).getControlNumber()))
+                continue;
+            if (interchangeControlNumber != null
+                    && !interchangeControlNumber.equals(index.getInterchange(transaction.getInterchange()).getControlNumber()))
+                continue;
+            result.add(i);
+        }
+        return result;
+    }
+
+    /**
+     * Writes a transaction, as a complete interchange, to a channel.
+     *
+     * @param n      0-origin number of the transaction within the file
+     * @param target receives the interchange
+     * @return number of bytes written
+     * @throws IOException for problem reading the file or writing to the target
+     */
+    public long extract(int n, WritableByteChannel target) throws IOException {
+        TransactionIndex.TransactionEntry transaction = index.getTransaction(n);
+        long written = write(index.readInterchangeHeader(channel, transaction), target);
+        written += write(index.readGroupHeader(channel, transaction), target);
+        written += transfer(transaction.getOffset(), transaction.getEnd() - transaction.getOffset(), target);
+        written += write(index.trailer(channel, transaction), target);
+        return written;
+    }
+
+    /**
+     * Writes a transaction, as a complete interchange, to a file, replacing any existing content.
+     *
+     * @param n      0-origin number of the transaction within the file
+     * @param output file to be written
+     * @return number of bytes written
+     * @throws IOException for problem reading the EDI file or writing the output file
+     */
+    public long extract(int n, Path output) throws IOException {
+        try (FileChannel target = FileChannel.open(output, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            return extract(n, target);
+        }
+    }
+
+    /**
+     * Writes the first transaction having a given control number, as a complete interchange, to a channel.
+     *
+     * @param controlNumber control number from ST02 or UNH01
+     * @param target        receives the interchange
+     * @return true if a transaction was found and written
+     * @throws IOException for problem reading the file or writing to the target
+     */
+    public boolean extract(String controlNumber, WritableByteChannel target) throws IOException {
+        List<Integer> found = find(controlNumber);
+        if (found.isEmpty())
+            return false;
+        extract(found.get(0), target);
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (ownChannel)
+            channel.close();
+    }
+
+    private static long write(ByteBuffer buffer, WritableByteChannel target) throws IOException {
+        long n = 0;
+        while (buffer.hasRemaining())
+            n += target.write(buffer);
+        return n;
+    }
+
+    private long transfer(long position, long count, WritableByteChannel target) throws IOException {
+        long n = 0;
+        while (n < count) {
+            long transferred = channel.transferTo(position + n, count - n, target);
+            if (transferred <= 0)
+                throw new IOException("Unable to transfer bytes at position " + (position + n));
+            n += transferred;
+        }
+        return n;
+    }
+}
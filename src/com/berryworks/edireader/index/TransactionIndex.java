@@ -0,0 +1,844 @@
+/*
+ * Copyright 2005-2019 by BerryWorks Software, LLC. All rights reserved.
+ *
+ * This file is part of EDIReader. You may obtain a license for its use directly from
+ * BerryWorks Software, and you may also choose to use this software under the terms of the
+ * GPL version 3. Other products in the EDIReader software suite are available only by licensing
+ * with BerryWorks. Only those files bearing the GPL statement below are available under the GPL.
+ *
+ * EDIReader is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * EDIReader is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with EDIReader.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.berryworks.edireader.index;
+
+import com.berryworks.edireader.EDIEventReader;
+import com.berryworks.edireader.EDIReader;
+import com.berryworks.edireader.EDIStandard;
+import com.berryworks.edireader.tokenizer.Tokenizer;
+import com.berryworks.edireader.util.EnvelopeScanner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import java.io.*;
+import java.lang.invoke.MethodHandles;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Records the positions of the interchanges, functional groups, and transactions in EDI input,
+ * and optionally of every segment, so that a transaction can later be located and parsed
+ * without reading the input from the beginning.
+ * <p>
+ * An index is built by reading the input once with an EDIEventReader. Unless segments are to be
+ * indexed, the segments within each transaction are passed over by looking only for their
+ * terminators. Positions are offsets in chars from the beginning of the input, which for a file
+ * are also offsets in bytes, since the file is read with each byte taken as a single ISO-8859-1
+ * character. An index can be written to a compact sidecar file alongside the EDI file and read
+ * back, and forFile() does this automatically, rebuilding the index if the EDI file has changed.
+ * <p>
+ * readTransaction() and parseTransaction() read a single transaction directly from the file,
+ * together with the interchange and group headers that enclose it, and supply trailers for them
+ * so that the transaction can be parsed as a complete interchange with the syntax characters
+ * declared by its own ISA, UNA, or UNB. For example,
+ * <br><code>
+ * TransactionIndex index = TransactionIndex.forFile(path);
+ * <br>
+ * index.parseTransaction(channel, n, ediReader);
+ * </code>
+ */
+public class TransactionIndex {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
+
+    /**
+     * Suffix appended to the name of an EDI file to form the name of its sidecar index file
+     */
+    public static final String SIDECAR_SUFFIX = ".idx";
+
+    private static final int MAGIC = 0x45444958;
+    private static final int FORMAT_VERSION = 1;
+    private static final int MAX_SUFFIX = 16;
+
+    private final List<InterchangeEntry> interchanges = new ArrayList<>();
+    private final List<GroupEntry> groups = new ArrayList<>();
+    private final List<TransactionEntry> transactions = new ArrayList<>();
+    private long[] segmentOffsets;
+    private int segmentCount;
+    private long inputLength = -1;
+    private long inputLastModified = -1;
+
+    private TransactionIndex() {
+    }
+
+    /**
+     * Builds an index of EDI input from an InputSource.
+     *
+     * @param source        EDI input
+     * @param indexSegments true if the position of every segment is to be recorded
+     * @return TransactionIndex
+     * @throws SAXException for invalid EDI, including errors in the envelope
+     * @throws IOException  for problem reading EDI data
+     */
+    public static TransactionIndex build(InputSource source, boolean indexSegments) throws SAXException, IOException {
+        try (EDIEventReader events = new EDIEventReader(source)) {
+            events.setTokenizerBufferSize(EnvelopeScanner.BUFFER_SIZE);
+            return new TransactionIndex().build(events, indexSegments);
+        }
+    }
+
+    /**
+     * Builds an index of EDI input held in a ByteBuffer, from its position to its limit, with each byte
+     * taken as a single ISO-8859-1 character. Positions are relative to the position of the buffer.
+     *
+     * @param buffer        EDI input
+     * @param indexSegments true if the position of every segment is to be recorded
+     * @return TransactionIndex
+     * @throws SAXException for invalid EDI, including errors in the envelope
+     * @throws IOException  for problem reading EDI data
+     */
+    public static TransactionIndex build(ByteBuffer buffer, boolean indexSegments) throws SAXException, IOException {
+        return new TransactionIndex().build(new EDIEventReader(buffer), indexSegments);
+    }
+
+    /**
+     * Builds an index of an EDI file. A file no larger than Integer.MAX_VALUE bytes is mapped into memory;
+     * a larger one is read sequentially. The size and modification time of the file are recorded
+     * so that isCurrent() can later determine whether the index still applies.
+     *
+     * @param file          EDI file
+     * @param indexSegments true if the position of every segment is to be recorded
+     * @return TransactionIndex
+     * @throws SAXException for invalid EDI, including errors in the envelope
+     * @throws IOException  for problem reading EDI data
+     */
+    public static TransactionIndex build(Path file, boolean indexSegments) throws SAXException, IOException {
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        TransactionIndex index;
+        try (FileChannel channel = FileChannel.open(file)) {
+            if (channel.size() <= Integer.MAX_VALUE) {
+                index = build(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), indexSegments);
+            } else {
+                Reader reader = new InputStreamReader(new BufferedInputStream(Files.newInputStream(file)), StandardCharsets.ISO_8859_1);
+                index = build(new InputSource(reader), indexSegments);
+            }
+            index.inputLength = channel.size();
+        }
+        index.inputLastModified = lastModified;
+        return index;
+    }
+
+    /**
+     * Returns an index of an EDI file, reading it from the sidecar file if there is a current one,
+     * and otherwise building it and writing it to the sidecar file. A failure to write the sidecar
+     * file is logged but otherwise ignored.
+     *
+     * @param file          EDI file
+     * @param indexSegments true if the position of every segment is to be recorded
+     * @return TransactionIndex
+     * @throws SAXException for invalid EDI, including errors in the envelope
+     * @throws IOException  for problem reading EDI data
+     */
+    public static TransactionIndex forFile(Path file, boolean indexSegments) throws SAXException, IOException {
+        Path sidecar = getSidecarPath(file);
+        if (Files.exists(sidecar)) {
+            try {
+                TransactionIndex index = read(sidecar);
+                if (index.isCurrent(file) && (index.isSegmentsIndexed() || !indexSegments))
+                    return index;
+            } catch (IOException e) {
+                logger.warn("Ignoring unreadable index {}: {}", sidecar, e.getMessage());
+            }
+        }
+
+        TransactionIndex index = build(file, indexSegments);
+        try {
+            index.write(sidecar);
+        } catch (IOException e) {
+            logger.warn("Unable to write index {}: {}", sidecar, e.getMessage());
+        }
+        return index;
+    }
+
+    /**
+     * Equivalent to forFile(file, false).
+     *
+     * @param file EDI file
+     * @return TransactionIndex
+     * @throws SAXException for invalid EDI, including errors in the envelope
+     * @throws IOException  for problem reading EDI data
+     */
+    public static TransactionIndex forFile(Path file) throws SAXException, IOException {
+        return forFile(file, false);
+    }
+
+    public static Path getSidecarPath(Path file) {
+        return Paths.get(file.toString() + SIDECAR_SUFFIX);
+    }
+
+    /**
+     * Returns true if an EDI file has the size and modification time recorded when this index was built.
+     *
+     * @param file EDI file
+     * @return true if this index applies to the file as it is now
+     * @throws IOException for problem examining the file
+     */
+    public boolean isCurrent(Path file) throws IOException {
+        return inputLength == Files.size(file) && inputLastModified == Files.getLastModifiedTime(file).toMillis();
+    }
+
+    private TransactionIndex build(EDIEventReader events, boolean indexSegments) throws SAXException, IOException {
+        if (indexSegments)
+            segmentOffsets = new long[1024];
+
+        InterchangeEntry interchange = null;
+        GroupEntry group = null;
+        TransactionEntry transaction = null;
+        EDIEventReader.Event event;
+        while ((event = events.skipSegment()) != EDIEventReader.Event.END_OF_DATA) {
+            if (indexSegments)
+                addSegment(events.getSegmentOffset());
+
+            switch (event) {
+                case START_INTERCHANGE:
+                    interchange = new InterchangeEntry();
+                    interchange.standard = events.getStandard();
+                    interchange.offset = events.getInterchangeOffset();
+                    interchange.headerEnd = events.getSegmentEndOffset();
+                    interchange.delimiter = events.getDelimiter();
+                    interchange.subDelimiter = events.getSubDelimiter();
+                    interchange.release = events.getRelease();
+                    interchange.repetitionSeparator = events.getRepetitionSeparator();
+                    interchange.terminator = events.getTerminator();
+                    interchange.controlNumber = events.getInterchangeControlNumber();
+                    interchanges.add(interchange);
+                    break;
+                case START_GROUP:
+                    group = addGroup(events.getSegmentOffset(), events.getSegmentEndOffset());
+                    group.controlNumber = events.getGroupControlNumber();
+                    break;
+                case START_TRANSACTION:
+                    if (group == null)
+                        // An EDIFACT message not within a UNG .. UNE group
+                        group = addGroup(-1, -1);
+                    transaction = new TransactionEntry();
+                    transaction.interchange = interchanges.size() - 1;
+                    transaction.group = groups.size() - 1;
+                    transaction.offset = events.getSegmentOffset();
+                    transaction.documentType = events.getDocumentType();
+                    transaction.controlNumber = events.getTransactionControlNumber();
+                    transaction.firstSegment = indexSegments ? segmentCount - 1 : -1;
+                    transactions.add(transaction);
+                    if (indexSegments)
+                        // The segments of the transaction are indexed as they are passed over,
+                        // and its trailer is seen as END_TRANSACTION
+                        break;
+                    if (events.skipTransaction() != EDIEventReader.Event.END_TRANSACTION)
+                        throw new IllegalStateException("Transaction not ended by " + events.getSegmentType());
+                    endTransaction(transaction, events);
+                    transaction = null;
+                    break;
+                case END_TRANSACTION:
+                    if (transaction != null)
+                        endTransaction(transaction, events);
+                    transaction = null;
+                    break;
+                case END_GROUP:
+                    group = null;
+                    break;
+                case END_INTERCHANGE:
+                    group = null;
+                    break;
+                default:
+            }
+        }
+        if (indexSegments)
+            segmentOffsets = Arrays.copyOf(segmentOffsets, segmentCount);
+        return this;
+    }
+
+    private static void endTransaction(TransactionEntry transaction, EDIEventReader events) {
+        transaction.end = events.getSegmentEndOffset();
+        transaction.segmentCount = Integer.parseInt(events.getElement(1).trim());
+    }
+
+    private GroupEntry addGroup(long offset, long headerEnd) {
+        GroupEntry group = new GroupEntry();
+        group.interchange = interchanges.size() - 1;
+        group.offset = offset;
+        group.headerEnd = headerEnd;
+        groups.add(group);
+        return group;
+    }
+
+    private void addSegment(long offset) {
+        if (segmentCount == segmentOffsets.length)
+            segmentOffsets = Arrays.copyOf(segmentOffsets, 2 * segmentCount);
+        segmentOffsets[segmentCount++] = offset;
+    }
+
+    public int getInterchangeCount() {
+        return interchanges.size();
+    }
+
+    public InterchangeEntry getInterchange(int n) {
+        return interchanges.get(n);
+    }
+
+    public int getGroupCount() {
+        return groups.size();
+    }
+
+    public GroupEntry getGroup(int n) {
+        return groups.get(n);
+    }
+
+    public int getTransactionCount() {
+        return transactions.size();
+    }
+
+    /**
+     * Returns the entry for a transaction, counting the transactions of all interchanges and groups
+     * in the order in which they appear in the input.
+     *
+     * @param n 0-origin number of the transaction
+     * @return TransactionEntry
+     */
+    public TransactionEntry getTransaction(int n) {
+        return transactions.get(n);
+    }
+
+    public boolean isSegmentsIndexed() {
+        return segmentOffsets != null;
+    }
+
+    /**
+     * Returns the number of segments in the input, including those of the envelope,
+     * if segments were indexed.
+     *
+     * @return number of segments, or 0 if segments were not indexed
+     */
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    /**
+     * Returns the position of a segment, if segments were indexed.
+     *
+     * @param n 0-origin number of the segment within the input
+     * @return offset of the segment
+     */
+    public long getSegmentOffset(int n) {
+        if (segmentOffsets == null)
+            throw new IllegalStateException("Segments were not indexed");
+        if (n < 0 || n >= segmentCount)
+            throw new IndexOutOfBoundsException("Segment " + n + " of " + segmentCount);
+        return segmentOffsets[n];
+    }
+
+    /**
+     * Reads a transaction from an EDI file, returning it in a buffer together with the headers of its
+     * interchange and group, as they appear in the file, and trailers for them that count the single
+     * transaction and carry the control numbers of the headers. The channel's position is not used.
+     *
+     * @param channel FileChannel open for reading the file that was indexed
+     * @param n       0-origin number of the transaction
+     * @return buffer, ready to be read, containing a complete interchange
+     * @throws IOException for problem reading the file
+     */
+    public ByteBuffer readTransaction(FileChannel channel, int n) throws IOException {
+        TransactionEntry transaction = transactions.get(n);
+        ByteBuffer interchangeHeader = readInterchangeHeader(channel, transaction);
+        ByteBuffer groupHeader = readGroupHeader(channel, transaction);
+        ByteBuffer body = read(channel, transaction.offset, transaction.end);
+        ByteBuffer trailer = trailer(channel, transaction);
+
+        ByteBuffer result = ByteBuffer.allocate(interchangeHeader.remaining() + groupHeader.remaining()
+                + body.remaining() + trailer.remaining());
+        result.put(interchangeHeader).put(groupHeader).put(body).put(trailer);
+        ((Buffer) result).flip();
+        return result;
+    }
+
+    /**
+     * Parses a single transaction of an EDI file with an EDIReader, as a complete interchange
+     * produced by readTransaction().
+     *
+     * @param channel   FileChannel open for reading the file that was indexed
+     * @param n         0-origin number of the transaction
+     * @param ediReader EDIReader equipped with a ContentHandler and any other options
+     * @throws SAXException for problem emitting SAX events, or for invalid EDI
+     * @throws IOException  for problem reading the file
+     */
+    public void parseTransaction(FileChannel channel, int n, EDIReader ediReader) throws SAXException, IOException {
+        ediReader.parse(readTransaction(channel, n));
+    }
+
+    /**
+     * Reads the ISA or UNB segment of the interchange containing a transaction, preceded by
+     * a UNA segment if there is one, and followed by any whitespace.
+     */
+    ByteBuffer readInterchangeHeader(FileChannel channel, TransactionEntry transaction) throws IOException {
+        InterchangeEntry interchange = interchanges.get(transaction.interchange);
+        ByteBuffer header = read(channel, interchange.offset, interchange.headerEnd);
+        // Skip any whitespace following the previous interchange
+        while (header.hasRemaining()
+                && Tokenizer.WHITESPACE.indexOf((char) (header.get(header.position()) & 0xFF)) != -1)
+            header.get();
+        return header;
+    }
+
+    /**
+     * Reads the GS or UNG segment of the group containing a transaction, if there is one,
+     * followed by any whitespace.
+     */
+    ByteBuffer readGroupHeader(FileChannel channel, TransactionEntry transaction) throws IOException {
+        GroupEntry group = groups.get(transaction.group);
+        return group.offset < 0 ? ByteBuffer.allocate(0) : read(channel, group.offset, group.headerEnd);
+    }
+
+    /**
+     * Returns the trailers closing the group and interchange containing a transaction, each counting
+     * a single transaction or group, with the terminator suffix that follows the transaction itself.
+     */
+    ByteBuffer trailer(FileChannel channel, TransactionEntry transaction) throws IOException {
+        InterchangeEntry interchange = interchanges.get(transaction.interchange);
+        GroupEntry group = groups.get(transaction.group);
+        long tailStart = Math.max(transaction.offset, transaction.end - MAX_SUFFIX);
+        String suffix = terminatorSuffix(read(channel, tailStart, transaction.end), interchange.terminator);
+        return ByteBuffer.wrap(interchange.trailer(group, suffix).getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static ByteBuffer read(FileChannel channel, long from, long to) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (to - from));
+        long position = from;
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0)
+                throw new EOFException("Unexpected end of file at position " + position);
+            position += n;
+        }
+        ((Buffer) buffer).flip();
+        return buffer;
+    }
+
+    /**
+     * Returns the whitespace following the terminator of the last segment in a buffer.
+     */
+    private static String terminatorSuffix(ByteBuffer buffer, char terminator) {
+        int end = buffer.limit();
+        int i = end;
+        while (i > buffer.position()) {
+            char c = (char) (buffer.get(i - 1) & 0xFF);
+            if (c == terminator || Tokenizer.WHITESPACE.indexOf(c) == -1)
+                break;
+            i--;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (; i < end; i++)
+            sb.append((char) (buffer.get(i) & 0xFF));
+        return sb.toString();
+    }
+
+    /**
+     * Writes this index to a sidecar file.
+     *
+     * @param file index file
+     * @throws IOException for problem writing the file
+     */
+    public void write(Path file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+            write(out);
+        }
+    }
+
+    /**
+     * Writes this index to an OutputStream in a compact binary form. Offsets are written as
+     * variable-length differences from the preceding offset.
+     *
+     * @param outputStream receives the index
+     * @throws IOException for problem writing
+     */
+    public void write(OutputStream outputStream) throws IOException {
+        DataOutputStream out = new DataOutputStream(outputStream);
+        out.writeInt(MAGIC);
+        out.writeByte(FORMAT_VERSION);
+        out.writeLong(inputLength);
+        out.writeLong(inputLastModified);
+
+        writeVarLong(out, interchanges.size());
+        long previous = 0;
+        for (InterchangeEntry interchange : interchanges) {
+            out.writeByte(interchange.standard.ordinal());
+            writeVarLong(out, interchange.offset - previous);
+            writeVarLong(out, interchange.headerEnd - interchange.offset);
+            previous = interchange.offset;
+            out.writeChar(interchange.delimiter);
+            out.writeChar(interchange.subDelimiter);
+            out.writeInt(interchange.release);
+            out.writeInt(interchange.repetitionSeparator);
+            out.writeChar(interchange.terminator);
+            writeString(out, interchange.controlNumber);
+        }
+
+        writeVarLong(out, groups.size());
+        previous = 0;
+        for (GroupEntry group : groups) {
+            writeVarLong(out, group.interchange);
+            out.writeBoolean(group.offset >= 0);
+            if (group.offset >= 0) {
+                writeVarLong(out, group.offset - previous);
+                writeVarLong(out, group.headerEnd - group.offset);
+                previous = group.offset;
+            }
+            writeString(out, group.controlNumber);
+        }
+
+        writeVarLong(out, transactions.size());
+        previous = 0;
+        for (TransactionEntry transaction : transactions) {
+            writeVarLong(out, transaction.group);
+            writeVarLong(out, transaction.offset - previous);
+            writeVarLong(out, transaction.end - transaction.offset);
+            previous = transaction.offset;
+            writeString(out, transaction.documentType);
+            writeString(out, transaction.controlNumber);
+            writeVarLong(out, transaction.segmentCount);
+            writeVarLong(out, transaction.firstSegment + 1);
+        }
+
+        out.writeBoolean(segmentOffsets != null);
+        if (segmentOffsets != null) {
+            writeVarLong(out, segmentCount);
+            previous = 0;
+            for (int i = 0; i < segmentCount; i++) {
+                writeVarLong(out, segmentOffsets[i] - previous);
+                previous = segmentOffsets[i];
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads an index from a sidecar file.
+     *
+     * @param file index file
+     * @return TransactionIndex
+     * @throws IOException for problem reading the file, or if it is not an index
+     */
+    public static TransactionIndex read(Path file) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            return read(in);
+        }
+    }
+
+    /**
+     * Reads an index in the form produced by write().
+     *
+     * @param inputStream provides the index
+     * @return TransactionIndex
+     * @throws IOException for problem reading, or if the data is not an index
+     */
+    public static TransactionIndex read(InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(inputStream);
+        if (in.readInt() != MAGIC)
+            throw new IOException("Not a transaction index");
+        int version = in.readByte();
+        if (version != FORMAT_VERSION)
+            throw new IOException("Unsupported transaction index version " + version);
+
+        TransactionIndex index = new TransactionIndex();
+        index.inputLength = in.readLong();
+        index.inputLastModified = in.readLong();
+
+        int n = (int) readVarLong(in);
+        long previous = 0;
+        for (int i = 0; i < n; i++) {
+            InterchangeEntry interchange = new InterchangeEntry();
+            interchange.standard = EDIStandard.values()[in.readByte()];
+            interchange.offset = previous + readVarLong(in);
+            interchange.headerEnd = interchange.offset + readVarLong(in);
+            previous = interchange.offset;
+            interchange.delimiter = in.readChar();
+            interchange.subDelimiter = in.readChar();
+            interchange.release = in.readInt();
+            interchange.repetitionSeparator = in.readInt();
+            interchange.terminator = in.readChar();
+            interchange.controlNumber = readString(in);
+            index.interchanges.add(interchange);
+        }
+
+        n = (int) readVarLong(in);
+        previous = 0;
+        for (int i = 0; i < n; i++) {
+            GroupEntry group = new GroupEntry();
+            group.interchange = (int) readVarLong(in);
+            if (in.readBoolean()) {
+                group.offset = previous + readVarLong(in);
+                group.headerEnd = group.offset + readVarLong(in);
+                previous = group.offset;
+            } else {
+                group.offset = -1;
+                group.headerEnd = -1;
+            }
+            group.controlNumber = readString(in);
+            index.groups.add(group);
+        }
+
+        n = (int) readVarLong(in);
+        previous = 0;
+        for (int i = 0; i < n; i++) {
+            TransactionEntry transaction = new TransactionEntry();
+            transaction.group = (int) readVarLong(in);
+            transaction.interchange = index.groups.get(transaction.group).interchange;
+            transaction.offset = previous + readVarLong(in);
+            transaction.end = transaction.offset + readVarLong(in);
+            previous = transaction.offset;
+            transaction.documentType = readString(in);
+            transaction.controlNumber = readString(in);
+            transaction.segmentCount = (int) readVarLong(in);
+            transaction.firstSegment = (int) readVarLong(in) - 1;
+            index.transactions.add(transaction);
+        }
+
+        if (in.readBoolean()) {
+            index.segmentCount = (int) readVarLong(in);
+            index.segmentOffsets = new long[index.segmentCount];
+            previous = 0;
+            for (int i = 0; i < index.segmentCount; i++)
+                previous = index.segmentOffsets[i] = previous + readVarLong(in);
+        }
+        return index;
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null)
+            out.writeUTF(s);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * Describes an interchange: its position, its header, and the syntax characters that apply to it.
+     */
+    public static class InterchangeEntry {
+        private EDIStandard standard;
+        private long offset;
+        private long headerEnd;
+        private char delimiter;
+        private char subDelimiter;
+        private int release;
+        private int repetitionSeparator;
+        private char terminator;
+        private String controlNumber;
+
+        public EDIStandard getStandard() {
+            return standard;
+        }
+
+        /**
+         * Returns the position at which the interchange begins, which may be preceded by whitespace
+         * following the previous interchange. For EDIFACT, this is the position of the UNA segment
+         * if there is one.
+         *
+         * @return offset of the interchange
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * Returns the position following the ISA or UNB segment, including its terminator and
+         * any whitespace that follows it.
+         *
+         * @return offset following the interchange header
+         */
+        public long getHeaderEnd() {
+            return headerEnd;
+        }
+
+        public char getDelimiter() {
+            return delimiter;
+        }
+
+        public char getSubDelimiter() {
+            return subDelimiter;
+        }
+
+        /**
+         * @return release character, or -1 if there is none
+         */
+        public int getRelease() {
+            return release;
+        }
+
+        /**
+         * @return repetition separator, or -1 if there is none
+         */
+        public int getRepetitionSeparator() {
+            return repetitionSeparator;
+        }
+
+        public char getTerminator() {
+            return terminator;
+        }
+
+        public String getControlNumber() {
+            return controlNumber;
+        }
+
+        /**
+         * Returns the text of the trailers closing a group and this interchange, each counting one
+         * transaction or group.
+         */
+        String trailer(GroupEntry group, String terminatorSuffix) {
+            StringBuilder sb = new StringBuilder();
+            if (standard == EDIStandard.ANSI) {
+                sb.append("GE").append(delimiter).append('1').append(delimiter).append(group.controlNumber)
+                        .append(terminator).append(terminatorSuffix);
+                sb.append("IEA").append(delimiter).append('1').append(delimiter).append(controlNumber);
+            } else {
+                if (group.offset >= 0)
+                    sb.append("UNE").append(delimiter).append('1').append(delimiter).append(group.controlNumber)
+                            .append(terminator).append(terminatorSuffix);
+                sb.append("UNZ").append(delimiter).append('1').append(delimiter).append(controlNumber);
+            }
+            return sb.append(terminator).append(terminatorSuffix).toString();
+        }
+    }
+
+    /**
+     * Describes a functional group. The EDIFACT messages of an interchange that are not within
+     * a UNG .. UNE group are described by a GroupEntry with an offset of -1.
+     */
+    public static class GroupEntry {
+        private int interchange;
+        private long offset;
+        private long headerEnd;
+        private String controlNumber;
+
+        /**
+         * @return 0-origin number of the interchange containing the group
+         */
+        public int getInterchange() {
+            return interchange;
+        }
+
+        /**
+         * @return offset of the GS or UNG segment, or -1 if there is none
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * @return offset following the GS or UNG segment, including its terminator and any whitespace
+         */
+        public long getHeaderEnd() {
+            return headerEnd;
+        }
+
+        public String getControlNumber() {
+            return controlNumber;
+        }
+    }
+
+    /**
+     * Describes a transaction: an ST .. SE transaction set or a UNH .. UNT message.
+     */
+    public static class TransactionEntry {
+        private int interchange;
+        private int group;
+        private long offset;
+        private long end;
+        private String documentType;
+        private String controlNumber;
+        private int segmentCount;
+        private int firstSegment;
+
+        /**
+         * @return 0-origin number of the interchange containing the transaction
+         */
+        public int getInterchange() {
+            return interchange;
+        }
+
+        /**
+         * @return 0-origin number of the group containing the transaction
+         */
+        public int getGroup() {
+            return group;
+        }
+
+        /**
+         * @return offset of the ST or UNH segment
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * @return offset following the SE or UNT segment, including its terminator and any whitespace
+         */
+        public long getEnd() {
+            return end;
+        }
+
+        public String getDocumentType() {
+            return documentType;
+        }
+
+        public String getControlNumber() {
+            return controlNumber;
+        }
+
+        public int getSegmentCount() {
+            return segmentCount;
+        }
+
+        /**
+         * @return 0-origin number of the ST or UNH segment within the input, or -1 if segments were not indexed
+         */
+        public int getFirstSegment() {
+            return firstSegment;
+        }
+    }
+}
@@ -27,19 +27,38 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.invoke.MethodHandles;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static com.berryworks.edireader.util.FixedLength.isPresent;
 
+/**
+ * Base class for factories that create a PluginController for a document, using a plugin
+ * selected by the standard, type, version and release of the document.
+ * <p>
+ * Plugins are loaded at most once and cached in a cache shared by all factories, so that
+ * a plugin instance is shared by all of the PluginControllers created for its type of document,
+ * possibly in different threads. A Plugin must therefore not be modified after it has been
+ * prepared, other than by its init() method, which is called each time a controller is created
+ * and must itself be thread-safe. The absence of a plugin for a given document is cached as well,
+ * so that the class loader is not consulted again for each occurrence of that document.
+ * Changes to the system properties that affect plugin selection, or to the classpath, take effect
+ * only for documents not yet seen unless clearCache() is called.
+ * <p>
+ * A factory instance may be shared by parsers in different threads. In that case,
+ * getLastPluginLoaded() and getLastControllerCreated() reflect the most recent activity
+ * in any of those threads.
+ */
 public abstract class AbstractPluginControllerFactory implements PluginControllerFactoryInterface {
     private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
 
-    protected static final Map<String, Plugin> pluginCache = new HashMap<>();
+    protected static final ConcurrentMap<String, Plugin> pluginCache = new ConcurrentHashMap<>();
+    protected static final Set<String> pluginsNotFound = ConcurrentHashMap.newKeySet();
     protected static boolean debug;
 
-    protected String lastPluginLoaded = null;
-    protected PluginController lastPluginController;
+    protected volatile String lastPluginLoaded = null;
+    protected volatile PluginController lastPluginController;
 
     public String getLastPluginLoaded() {
         return lastPluginLoaded;
@@ -63,7 +82,8 @@ public abstract class AbstractPluginControllerFactory implements PluginControlle
      * Find a plugin for a given standard, document type, version, and release.
      * If no matching plugin is found, return null.
      * Plugins are cached so that once a plugin is loaded it can be quickly found again without using the
-     * class loader.
+     * class loader. The outcome of an unsuccessful search is also cached, so that the search is not repeated.
+     * If several threads look for the same plugin at the same time, only one of them performs the search.
      *
      * @param standard   - name of EDI standard (for example: "EDIFACT" or "ANSI")
      * @param docType    - type of document (for example: "837" or "INVOIC")
@@ -72,38 +92,51 @@ public abstract class AbstractPluginControllerFactory implements PluginControlle
      * @return Plugin that was found, or null if no suitable plugin was found
      */
     protected Plugin loadPlugin(String standard, String docType, String docVersion, String docRelease) {
-        Plugin result = null;
         String key = standard + "_" + docType + "_" + docVersion + "_" + docRelease;
-        if (pluginCache.containsKey(key)) {
+        Plugin result = pluginCache.get(key);
+        if (result != null) {
             if (debug)
                 logger.debug("plugin for {} found in cache", key);
             lastPluginLoaded = key;
-            result = pluginCache.get(key);
-
-        } else {
-            String suffix = System.getProperty("EDIREADER_PLUGIN_SUFFIX");
-            if (isPresent(docVersion) && isPresent(docRelease)) {
-                if (isPresent(suffix))
-                    result = lookForSpecificPlugin(standard, docVersion + "_" + docRelease + "." + standard + "_" + docType + "_" + suffix);
+            return result;
+        }
 
-                if (result == null)
-                    result = lookForSpecificPlugin(standard, docVersion + "_" + docRelease + "." + standard + "_" + docType);
+        if (pluginsNotFound.contains(key)) {
+            if (debug)
+                logger.debug("absence of plugin for {} found in cache", key);
+            return null;
+        }
 
-                if (isPresent(suffix))
-                    result = lookForSpecificPlugin(standard, docType + "_" + docVersion + "_" + docRelease + "_" + suffix);
+        result = pluginCache.computeIfAbsent(key, k -> {
+            Plugin plugin = searchForPlugin(standard, docType, docVersion, docRelease);
+            if (plugin == null)
+                pluginsNotFound.add(k);
+            return plugin;
+        });
+        return result;
+    }
 
-                if (result == null)
-                    result = lookForSpecificPlugin(standard, docType + "_" + docVersion + "_" + docRelease);
-            }
-            if (result == null && isPresent(suffix))
-                result = lookForSpecificPlugin(standard, docType + "_" + suffix);
+    private Plugin searchForPlugin(String standard, String docType, String docVersion, String docRelease) {
+        Plugin result = null;
+        String suffix = System.getProperty("EDIREADER_PLUGIN_SUFFIX");
+        if (isPresent(docVersion) && isPresent(docRelease)) {
+            if (isPresent(suffix))
+                result = lookForSpecificPlugin(standard, docVersion + "_" + docRelease + "." + standard + "_" + docType + "_" + suffix);
 
             if (result == null)
-                result = lookForSpecificPlugin(standard, docType);
+                result = lookForSpecificPlugin(standard, docVersion + "_" + docRelease + "." + standard + "_" + docType);
 
-            if (result != null)
-                pluginCache.put(key, result);
+            if (isPresent(suffix))
+                result = lookForSpecificPlugin(standard, docType + "_" + docVersion + "_" + docRelease + "_" + suffix);
+
+            if (result == null)
+                result = lookForSpecificPlugin(standard, docType + "_" + docVersion + "_" + docRelease);
         }
+        if (result == null && isPresent(suffix))
+            result = lookForSpecificPlugin(standard, docType + "_" + suffix);
+
+        if (result == null)
+            result = lookForSpecificPlugin(standard, docType);
 
         return result;
     }
@@ -113,8 +146,13 @@ public abstract class AbstractPluginControllerFactory implements PluginControlle
         return lastPluginController;
     }
 
+    /**
+     * Discards all cached plugins, and the record of documents for which no plugin was found,
+     * so that plugins are searched for again as documents are encountered.
+     */
     public void clearCache() {
         pluginCache.clear();
+        pluginsNotFound.clear();
     }
 
     /**
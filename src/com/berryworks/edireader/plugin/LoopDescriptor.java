@@ -377,6 +377,42 @@ public class LoopDescriptor {
         return value1 == null && value2 == null || value1 != null && value1.equals(value2);
     }
 
+    /**
+     * Returns true if the loop context of this descriptor is satisfied by a LoopStack,
+     * without regard to level context or flag conditions.
+     *
+     * @param currentLoopStack - LoopStack expressed with toString()
+     * @return true if the loop context is satisfied
+     */
+    public boolean matchesLoopContext(String currentLoopStack) {
+        if (currentLoopStack == null)
+            currentLoopStack = Plugin.ANY_CONTEXT;
+
+        if (Plugin.ANY_CONTEXT.equals(loopContext)) {
+            return true;
+        } else if (loopContext.startsWith("/")
+                && loopContext.length() > 1
+                && currentLoopStack.startsWith(loopContext)) {
+            return true;
+        } else return currentLoopStack.endsWith(loopContext);
+    }
+
+    /**
+     * Returns true if each of the condition flags of this descriptor is among the flags that have been set.
+     *
+     * @param flagsSet - flags that have been set
+     * @return true if there are no condition flags or all of them are set
+     */
+    public boolean areConditionsSatisfied(Set<String> flagsSet) {
+        if (conditionFlags.isEmpty())
+            return true;
+        for (String condition : conditionFlags) {
+            if (!flagsSet.contains(condition))
+                return false;
+        }
+        return true;
+    }
+
     public boolean isAnyContext() {
         return Plugin.ANY_CONTEXT.equals(loopContext);
     }
@@ -104,6 +104,16 @@ public class LoopStack {
         return stack.get(stack.size() - 1);
     }
 
+    /**
+     * Returns the LoopContext at a given position, the bottom of the stack being at position 0.
+     *
+     * @param index - position in the stack
+     * @return the LoopContext
+     */
+    public LoopContext get(int index) {
+        return stack.get(index);
+    }
+
     /**
      * Replace the LoopContext at the bottom of the stack
      * with the one provided.
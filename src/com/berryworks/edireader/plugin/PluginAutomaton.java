@@ -0,0 +1,195 @@
+/*
+ * Copyright 2005-2019 by BerryWorks Software, LLC. All rights reserved.
+ *
+ * This file is part of EDIReader. You may obtain a license for its use directly from
+ * BerryWorks Software, and you may also choose to use this software under the terms of the
+ * GPL version 3. Other products in the EDIReader software suite are available only by licensing
+ * with BerryWorks. Only those files bearing the GPL statement below are available under the GPL.
+ *
+ * EDIReader is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * EDIReader is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with EDIReader.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.berryworks.edireader.plugin;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A compiled form of the LoopDescriptors of a plugin, allowing a PluginController to
+ * determine loop transitions without forming and matching a String representation of
+ * the LoopStack for each segment.
+ * <p>
+ * Each distinct LoopStack that arises while parsing is represented by a State, and a
+ * PluginController tracks the current State as loops are entered and closed. For each
+ * segment type, a State holds the LoopDescriptors for that segment whose loop context
+ * is satisfied by the State, in plugin order. These are determined the first time a
+ * segment type is seen in a given State and reused thereafter, so that the only work
+ * remaining at transition time is to check level contexts and flag conditions.
+ * <p>
+ * An automaton is shared by all of the controllers using a given plugin and may be
+ * used concurrently.
+ *
+ * @see com.berryworks.edireader.Plugin#prepare()
+ */
+public class PluginAutomaton {
+
+    private static final LoopDescriptor[] NO_DESCRIPTORS = new LoopDescriptor[0];
+
+    private final Map<String, Integer> segmentIds = new HashMap<>();
+    private final LoopDescriptor[][] descriptorsBySegment;
+    private final ConcurrentMap<String, State> bottoms = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs an automaton from an array of LoopDescriptors.
+     *
+     * @param loops - array of LoopDescriptors, typically from a plugin
+     */
+    public PluginAutomaton(LoopDescriptor[] loops) {
+        Map<String, List<LoopDescriptor>> bySegment = new LinkedHashMap<>();
+        if (loops != null) {
+            for (LoopDescriptor loop : loops) {
+                bySegment.computeIfAbsent(loop.getFirstSegment(), k -> new ArrayList<>()).add(loop);
+            }
+        }
+        descriptorsBySegment = new LoopDescriptor[bySegment.size()][];
+        int id = 0;
+        for (Map.Entry<String, List<LoopDescriptor>> entry : bySegment.entrySet()) {
+            segmentIds.put(entry.getKey(), id);
+            descriptorsBySegment[id++] = entry.getValue().toArray(NO_DESCRIPTORS);
+        }
+    }
+
+    /**
+     * Returns the State corresponding to a new LoopStack, before any loop is entered.
+     *
+     * @return State
+     */
+    public State getInitialState() {
+        return getBottom("");
+    }
+
+    /**
+     * Returns the State corresponding to the current content of a LoopStack.
+     *
+     * @param loopStack - LoopStack
+     * @return State
+     */
+    public State getState(LoopStack loopStack) {
+        State state = getBottom(loopStack.getBottom().getLoopName());
+        for (int i = 1; i < loopStack.getSize(); i++) {
+            state = state.push(loopStack.get(i).getLoopName());
+        }
+        return state;
+    }
+
+    private State getBottom(String loopName) {
+        return bottoms.computeIfAbsent(loopName, n -> new State(null, n, "".equals(n) ? "/" : "/" + n));
+    }
+
+    /**
+     * Returns the LoopDescriptor that applies to a segment in a given State, with the same
+     * semantics as Plugin.query().
+     *
+     * @param state        - State corresponding to the current LoopStack
+     * @param segment      - type of segment encountered
+     * @param currentLevel - nesting level of current state
+     * @param resultFlags  - flags set by previously applied LoopDescriptors
+     * @return descriptor matching query parameters, or null if none
+     */
+    public LoopDescriptor query(State state, String segment, int currentLevel, Set<String> resultFlags) {
+        Integer segmentId = segmentIds.get(segment);
+        if (segmentId == null)
+            return null;
+
+        for (LoopDescriptor descriptor : state.getCandidates(segmentId)) {
+            int levelContext = descriptor.getLevelContext();
+            if (levelContext > -1 && levelContext != currentLevel)
+                continue;
+            if (!descriptor.areConditionsSatisfied(resultFlags))
+                continue;
+            // A loop descriptor with a null loop name serves as a NOT rule.
+            return descriptor.getName() == null ? null : descriptor;
+        }
+        return null;
+    }
+
+    /**
+     * Represents a particular content of a LoopStack.
+     */
+    public class State {
+        private final State parent;
+        private final String path;
+        private final ConcurrentMap<String, State> children = new ConcurrentHashMap<>();
+        private final AtomicReferenceArray<LoopDescriptor[]> candidates =
+                new AtomicReferenceArray<>(descriptorsBySegment.length);
+
+        private State(State parent, String loopName, String path) {
+            this.parent = parent;
+            this.path = path;
+        }
+
+        /**
+         * Returns the State reached by pushing a loop onto the LoopStack represented by this State.
+         *
+         * @param loopName - name of the loop entered
+         * @return State
+         */
+        public State push(String loopName) {
+            State child = children.get(loopName);
+            if (child == null) {
+                String prefix = (parent == null && "/".equals(path)) ? "" : path;
+                child = children.computeIfAbsent(loopName, n -> new State(this, n, prefix + "/" + n));
+            }
+            return child;
+        }
+
+        /**
+         * Returns the State reached by popping a loop off the LoopStack represented by this State.
+         *
+         * @return State, or null if this State represents only the bottom of the LoopStack
+         */
+        public State pop() {
+            return parent;
+        }
+
+        /**
+         * Returns the String representation of the LoopStack represented by this State,
+         * the same as LoopStack.toString().
+         *
+         * @return String representation
+         */
+        public String getPath() {
+            return path;
+        }
+
+        private LoopDescriptor[] getCandidates(int segmentId) {
+            LoopDescriptor[] result = candidates.get(segmentId);
+            if (result == null) {
+                List<LoopDescriptor> list = new ArrayList<>();
+                for (LoopDescriptor descriptor : descriptorsBySegment[segmentId]) {
+                    if (descriptor.getLevelContext() > -1 || descriptor.matchesLoopContext(path))
+                        list.add(descriptor);
+                }
+                result = list.toArray(NO_DESCRIPTORS);
+                candidates.set(segmentId, result);
+            }
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "State " + path;
+        }
+    }
+}
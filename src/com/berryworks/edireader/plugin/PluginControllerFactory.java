@@ -24,13 +24,31 @@ import com.berryworks.edireader.Plugin;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.lang.invoke.MethodHandles;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
 
 public class PluginControllerFactory extends AbstractPluginControllerFactory {
 
     private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
     public static final String DEFAULT_EDIREADER_PLUGIN_PACKAGE = "com.berryworks.edireader.plugin";
 
+    // Names of plugin classes that the class loader could not find
+    private static final Set<String> classesNotFound = ConcurrentHashMap.newKeySet();
+    // For each package that has been indexed, the names of the classes in that package and its subpackages
+    private static final ConcurrentMap<String, Set<String>> pluginIndex = new ConcurrentHashMap<>();
+
     /**
      * Used only within the internal implementation of this class and its subclasses.
      *
@@ -70,9 +88,24 @@ public class PluginControllerFactory extends AbstractPluginControllerFactory {
     @Override
     protected Plugin getInstance(String standard, String docType) throws Exception {
         Plugin instance;
-        String pluginName = pluginPackage() + "." + standard + "_" + docType;
+        String packageName = pluginPackage();
+        String pluginName = packageName + "." + standard + "_" + docType;
+        if (classesNotFound.contains(pluginName))
+            throw new ClassNotFoundException(pluginName);
+        Set<String> index = pluginIndex.get(packageName);
+        if (index != null && !index.contains(pluginName)) {
+            classesNotFound.add(pluginName);
+            throw new ClassNotFoundException(pluginName);
+        }
+
         logger.debug("attempting to load a plugin named {}", pluginName);
-        Class<Plugin> pluginClass = (Class<Plugin>) Class.forName(pluginName);
+        Class<Plugin> pluginClass;
+        try {
+            pluginClass = (Class<Plugin>) Class.forName(pluginName);
+        } catch (ClassNotFoundException e) {
+            classesNotFound.add(pluginName);
+            throw e;
+        }
 
         logger.debug("plugin loaded");
         instance = pluginClass.newInstance();
@@ -101,5 +134,97 @@ public class PluginControllerFactory extends AbstractPluginControllerFactory {
         return packageName;
     }
 
+    /**
+     * Builds an index of the plugin classes available in the default plugin package,
+     * or the package named by the EDIREADER_PLUGIN_PACKAGE system property.
+     *
+     * @return number of classes indexed, or -1 if the index could not be built
+     * @see #preloadPluginIndex(String)
+     */
+    public static int preloadPluginIndex() {
+        return preloadPluginIndex(pluginPackage());
+    }
+
+    /**
+     * Builds an index of the classes available in a package of plugins and its subpackages,
+     * by scanning the directories and jar files through which the class loader provides them.
+     * Once a package is indexed, a search for a plugin in that package that is not in the index
+     * fails immediately, without consulting the class loader.
+     * This is intended to be called once at startup, and assumes that no plugins are added
+     * to the classpath afterward. If any part of the package is provided through something
+     * other than a directory or a jar file, no index is built and plugins continue to be
+     * searched for individually.
+     *
+     * @param packageName - name of the package containing plugins, for example "com.berryworks.edireader.plugin"
+     * @return number of classes indexed, or -1 if the index could not be built
+     */
+    public static int preloadPluginIndex(String packageName) {
+        String packagePath = packageName.replace('.', '/');
+        Set<String> index = new HashSet<>();
+        try {
+            ClassLoader classLoader = PluginControllerFactory.class.getClassLoader();
+            Enumeration<URL> roots = classLoader.getResources(packagePath);
+            while (roots.hasMoreElements()) {
+                URL root = roots.nextElement();
+                switch (root.getProtocol()) {
+                    case "file":
+                        indexDirectory(Paths.get(root.toURI()), packageName, index);
+                        break;
+                    case "jar":
+                        indexJar(((JarURLConnection) root.openConnection()).getJarFile(), packagePath, index);
+                        break;
+                    default:
+                        logger.warn("Unable to index plugins provided by {}", root);
+                        return -1;
+                }
+            }
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            logger.warn("Unable to index plugins in package {}: {}", packageName, e.getMessage());
+            return -1;
+        }
+
+        pluginIndex.put(packageName, Collections.unmodifiableSet(index));
+        logger.info("Indexed {} plugin classes in package {}", index.size(), packageName);
+        return index.size();
+    }
+
+    private static void indexDirectory(Path directory, String packageName, Set<String> index) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.forEach(path -> {
+                String className = toClassName(directory.relativize(path).toString().replace(path.getFileSystem().getSeparator(), "/"));
+                if (className != null)
+                    index.add(packageName + "." + className);
+            });
+        }
+    }
+
+    private static void indexJar(JarFile jarFile, String packagePath, Set<String> index) {
+        Enumeration<JarEntry> entries = jarFile.entries();
+        while (entries.hasMoreElements()) {
+            String name = entries.nextElement().getName();
+            if (name.startsWith(packagePath + "/")) {
+                String className = toClassName(name);
+                if (className != null)
+                    index.add(className);
+            }
+        }
+    }
+
+    private static String toClassName(String resourceName) {
+        if (!resourceName.endsWith(".class") || resourceName.indexOf('$') >= 0)
+            return null;
+        return resourceName.substring(0, resourceName.length() - ".class".length()).replace('/', '.');
+    }
+
+    /**
+     * Discards all cached plugins, the record of plugin classes that could not be found,
+     * and any index built by preloadPluginIndex().
+     */
+    @Override
+    public void clearCache() {
+        super.clearCache();
+        classesNotFound.clear();
+        pluginIndex.clear();
+    }
 
 }
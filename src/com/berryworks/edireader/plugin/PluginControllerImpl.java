@@ -82,6 +82,12 @@ public class PluginControllerImpl extends PluginController {
     protected int numberOfLoopsClosed;
     private final Set<String> resultFlags = new HashSet<>();
 
+    /**
+     * State of the plugin's automaton corresponding to loopStack,
+     * or null if it is to be determined from loopStack.
+     */
+    private PluginAutomaton.State loopState;
+
     /**
      * Construct a PluginControllerImpl
      *
@@ -102,6 +108,7 @@ public class PluginControllerImpl extends PluginController {
      */
     public void reset() {
         loopStack = new LoopStack();
+        loopState = null;
         currentLoopName = "/";
         loopDescriptor = new LoopDescriptor(currentLoopName, "", 0, "/");
     }
@@ -126,11 +133,23 @@ public class PluginControllerImpl extends PluginController {
 
         boolean result = false;
 
-        LoopDescriptor newDescriptor = plugin.query(
-                segmentName,
-                loopStack.toString(),
-                loopDescriptor.getNestingLevel(),
-                resultFlags);
+        PluginAutomaton automaton = plugin.getAutomaton();
+        LoopDescriptor newDescriptor;
+        if (automaton == null) {
+            newDescriptor = plugin.query(
+                    segmentName,
+                    loopStack.toString(),
+                    loopDescriptor.getNestingLevel(),
+                    resultFlags);
+        } else {
+            if (loopState == null)
+                loopState = automaton.getState(loopStack);
+            newDescriptor = plugin.query(
+                    loopState,
+                    segmentName,
+                    loopDescriptor.getNestingLevel(),
+                    resultFlags);
+        }
 
         if (debug)
             logger.debug("considering segment {} using descriptor {}", segmentName, newDescriptor);
@@ -140,9 +159,11 @@ public class PluginControllerImpl extends PluginController {
 
         // Set flags related to this descriptor.
         Set<String> flags = newDescriptor.getResultFlags();
-        for (String flagName : flags) {
-            logger.debug("setting flag {}", flagName);
-            resultFlags.add(flagName);
+        if (!flags.isEmpty()) {
+            for (String flagName : flags) {
+                logger.debug("setting flag {}", flagName);
+                resultFlags.add(flagName);
+            }
         }
 
         String newLoopName = newDescriptor.getName();
@@ -179,6 +200,8 @@ public class PluginControllerImpl extends PluginController {
                 // Pop that many off the tack
                 for (int i = 0; i < numberOfLoopsClosed; i++) {
                     LoopContext completedLoop = loopStack.pop();
+                    if (loopState != null)
+                        loopState = loopState.pop();
                     validateCompletedLoop(completedLoop);
                     logger.debug("popped {} off the stack", completedLoop);
                 }
@@ -193,9 +216,13 @@ public class PluginControllerImpl extends PluginController {
                         && loopDescriptor.getName().startsWith("/")) {
                     logger.debug("special legacy case: {}", loopDescriptor);
                     loopStack.setBottom(new LoopContext(loopDescriptor.getName().substring(1)));
+                    loopState = null;
                 }
             } else {
-                loopStack.push(createLoopContext(loopDescriptor.getName(), plugin, loopStack.toString()));
+                String stack = loopState == null ? loopStack.toString() : loopState.getPath();
+                loopStack.push(createLoopContext(loopDescriptor.getName(), plugin, stack));
+                if (loopState != null)
+                    loopState = loopState.push(loopDescriptor.getName());
                 logger.debug("pushed {} onto the stack", loopDescriptor.getName());
             }
         }
@@ -342,6 +369,7 @@ public class PluginControllerImpl extends PluginController {
 
     public void setPlugin(Plugin plugin) {
         this.plugin = plugin;
+        loopState = null;
     }
 
     /**
@@ -20,6 +20,8 @@
 
 package com.berryworks.edireader.plugin;
 
+import com.berryworks.edireader.tokenizer.SegmentTags;
+
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -47,6 +49,7 @@ public class PluginPreparation {
             return;
         for (LoopDescriptor loop : loops) {
             String segmentName = loop.getFirstSegment();
+            SegmentTags.register(segmentName);
           List<LoopDescriptor> descriptorList = segmentMap.computeIfAbsent(segmentName, k -> new ArrayList<>());
           descriptorList.add(loop);
         }
@@ -25,6 +25,7 @@ import com.berryworks.edireader.error.EDISyntaxExceptionHandler;
 import com.berryworks.edireader.error.RecoverableSyntaxException;
 import com.berryworks.edireader.filter.EdiReaderFilter;
 import com.berryworks.edireader.plugin.AbstractPluginControllerFactory;
+import com.berryworks.edireader.tokenizer.EDITokenizer;
 import org.xml.sax.Attributes;
 import org.xml.sax.ContentHandler;
 import org.xml.sax.InputSource;
@@ -69,6 +70,9 @@ public class SplittingHandler extends DefaultHandler {
     private int segmentCountLimit;
     private AbstractPluginControllerFactory pluginControllerFactory;
     private EdiReaderFilter filter;
+    private int bufferSize = EDITokenizer.BUFFER_SIZE;
+    private boolean adaptiveBuffer;
+    private EDIReaderPool readerPool;
 
 
     public SplittingHandler(HandlerFactory handlerFactory) {
@@ -78,19 +82,24 @@ public class SplittingHandler extends DefaultHandler {
     public void split(InputSource inputSource) throws IOException, SAXException {
         char[] leftOver = null;
         EDIReader parser;
-        while ((parser = EDIReaderFactory.createEDIReader(inputSource, leftOver)) != null) {
-            parser.setContentHandler(this);
-            parser.setSyntaxExceptionHandler(new MyErrorHandler());
-            if (pluginControllerFactory != null) {
-                parser.setPluginControllerFactory(pluginControllerFactory);
+        EDIReaderPool pool = getReaderPool();
+        while ((parser = pool.acquire(inputSource, leftOver)) != null) {
+            try {
+                parser.setContentHandler(this);
+                parser.setSyntaxExceptionHandler(new MyErrorHandler());
+                if (pluginControllerFactory != null) {
+                    parser.setPluginControllerFactory(pluginControllerFactory);
+                }
+                if (filter != null) {
+                    final EDIReader f = filter.filter(parser);
+                    f.parse(inputSource);
+                } else {
+                    parser.parse(inputSource);
+                }
+                leftOver = parser.getTokenizer().getBuffered();
+            } finally {
+                pool.release(parser);
             }
-            if (filter != null) {
-                final EDIReader f = filter.filter(parser);
-                f.parse(inputSource);
-            } else {
-                parser.parse(inputSource);
-            }
-            leftOver = parser.getTokenizer().getBuffered();
         }
         handlerFactory.markEndOfStream();
     }
@@ -273,6 +282,38 @@ public class SplittingHandler extends DefaultHandler {
         return filter;
     }
 
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+        readerPool = null;
+    }
+
+    public void setAdaptiveBuffer(boolean adaptiveBuffer) {
+        this.adaptiveBuffer = adaptiveBuffer;
+        readerPool = null;
+    }
+
+    /**
+     * Gets the pool from which parsers are acquired for each interchange split by this handler,
+     * creating one with the buffer size and adaptive buffering of this handler if necessary.
+     *
+     * @return EDIReaderPool
+     */
+    public EDIReaderPool getReaderPool() {
+        if (readerPool == null)
+            readerPool = new EDIReaderPool(EDIReaderPool.DEFAULT_MAX_IDLE, bufferSize, adaptiveBuffer);
+        return readerPool;
+    }
+
+    /**
+     * Sets the pool from which parsers are acquired, allowing a pool to be shared by
+     * several SplittingHandlers, perhaps on different threads.
+     *
+     * @param readerPool EDIReaderPool
+     */
+    public void setReaderPool(EDIReaderPool readerPool) {
+        this.readerPool = readerPool;
+    }
+
     public HandlerFactory getHandlerFactory() {
         return handlerFactory;
     }
@@ -31,6 +31,7 @@ import java.io.Reader;
 import java.io.Writer;
 import java.lang.invoke.MethodHandles;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public abstract class AbstractTokenizer implements Tokenizer, ErrorMessages {
@@ -55,7 +56,7 @@ public abstract class AbstractTokenizer implements Tokenizer, ErrorMessages {
     protected int segTokenCount;
     protected int charCount;
     protected int segCharCount;
-    protected final Reader inputReader;
+    protected Reader inputReader;
 
     protected char delimiter = '+';
     protected char subDelimiter = ':';
@@ -79,6 +80,11 @@ public abstract class AbstractTokenizer implements Tokenizer, ErrorMessages {
     protected char cChar;
     protected boolean unGot;
 
+    // Character class of each of the first 256 char values, derived from the current
+    // syntax characters. It is rebuilt lazily after any syntax character changes.
+    private final CharacterClass[] classTable = new CharacterClass[256];
+    private boolean classTableStale = true;
+    private boolean bulkScan = true;
 
     /**
      * Gets the count of segments that have been read or partially read.
@@ -126,6 +132,7 @@ public abstract class AbstractTokenizer implements Tokenizer, ErrorMessages {
      */
     public void setRelease(int e) {
         release = e;
+        classTableStale = true;
     }
 
     /**
@@ -148,10 +155,12 @@ public abstract class AbstractTokenizer implements Tokenizer, ErrorMessages {
         // that no repetition char is in effect, so we set the value to -1 for that
         // case as well.
         repetitionSeparator = e > 0 ? e : -1;
+        classTableStale = true;
     }
 
     public void setTerminator(char d) {
         terminator = d;
+        classTableStale = true;
     }
 
     public char getTerminator() {
@@ -164,6 +173,7 @@ public abstract class AbstractTokenizer implements Tokenizer, ErrorMessages {
 
     public void setDelimiter(char d) {
         delimiter = d;
+        classTableStale = true;
     }
 
     public char getSubDelimiter() {
@@ -172,6 +182,147 @@ public abstract class AbstractTokenizer implements Tokenizer, ErrorMessages {
 
     public void setSubDelimiter(char sd) {
         subDelimiter = sd;
+        classTableStale = true;
+    }
+
+    /**
+     * Enables or disables the scanning of data characters in bulk. With bulk scanning
+     * enabled, which is the default, a run of data characters within an element is
+     * located and appended to the current token in one step instead of one
+     * getChar() call per character.
+     *
+     * @param b true to enable bulk scanning, false to process every character individually
+     */
+    public void setBulkScan(boolean b) {
+        bulkScan = b;
+    }
+
+    public boolean isBulkScan() {
+        return bulkScan;
+    }
+
+    /**
+     * Classifies a character according to the syntax characters currently in effect.
+     * When one character serves more than one syntactic purpose, the precedence is
+     * delimiter, terminator, sub-delimiter, release, and repetition separator.
+     *
+     * @param c character to classify
+     * @return DATA, DELIMITER, TERMINATOR, ...
+     */
+    protected CharacterClass classOf(char c) {
+        if (c < classTable.length) {
+            return getClassTable()[c];
+        }
+        if (c == delimiter)
+            return CharacterClass.DELIMITER;
+        else if (c == terminator)
+            return CharacterClass.TERMINATOR;
+        else if (c == subDelimiter)
+            return CharacterClass.SUB_DELIMITER;
+        else if (c == release)
+            return CharacterClass.RELEASE;
+        else if (c == repetitionSeparator)
+            return CharacterClass.REPEAT_DELIMITER;
+        else
+            return CharacterClass.DATA;
+    }
+
+    /**
+     * Returns the table giving the class of each char value less than 256.
+     *
+     * @return CharacterClass[] indexed by char value
+     */
+    protected CharacterClass[] getClassTable() {
+        if (classTableStale) {
+            // Fill in order of increasing precedence so that a character serving
+            // more than one purpose is left with the class classOf() would give it.
+            Arrays.fill(classTable, CharacterClass.DATA);
+            markClass(repetitionSeparator, CharacterClass.REPEAT_DELIMITER);
+            markClass(release, CharacterClass.RELEASE);
+            markClass(subDelimiter, CharacterClass.SUB_DELIMITER);
+            markClass(terminator, CharacterClass.TERMINATOR);
+            markClass(delimiter, CharacterClass.DELIMITER);
+            classTableStale = false;
+        }
+        return classTable;
+    }
+
+    private void markClass(int c, CharacterClass characterClass) {
+        if (c >= 0 && c < classTable.length)
+            classTable[c] = characterClass;
+    }
+
+    /**
+     * Returns true if a subclass may take data characters directly from its input buffer
+     * instead of one at a time via getChar(). This is not possible while a character has
+     * been put back with ungetChar(), or while characters are being copied to an
+     * outputWriter or the recorder.
+     *
+     * @return true if bulk scanning may be used at this point
+     */
+    protected boolean isBulkScanPossible() {
+        return bulkScan && !unGot && outputWriter == null && !recorderOn;
+    }
+
+    /**
+     * Consumes a run of data characters directly from the input, if possible, on behalf
+     * of scanData(). Upon return, cChar and cClass are left referencing the last data
+     * character consumed, just as if getChar() had been called for each of them.
+     * This default implementation consumes nothing.
+     *
+     * @param limit the remaining limit as maintained by scanData()
+     * @return the limit reduced by the number of data characters consumed
+     * @throws IOException                                 problem reading EDI input
+     * @throws com.berryworks.edireader.EDISyntaxException if the run exceeds the limit
+     */
+    protected int bulkScanData(int limit) throws IOException, EDISyntaxException {
+        return limit;
+    }
+
+    /**
+     * Accounts for a run of data characters taken from the input by bulkScanData(),
+     * appending them to the current token and updating the character counts.
+     * The caller must not present more than <code>limit</code> characters if the limit
+     * is positive.
+     *
+     * @param chars  array containing the data characters
+     * @param offset position of the first data character in the array
+     * @param length number of data characters, at least 1
+     * @param limit  the remaining limit as maintained by scanData()
+     * @return the limit reduced by <code>length</code>
+     * @throws com.berryworks.edireader.EDISyntaxException if the run exceeds the limit
+     */
+    protected int acceptDataRun(char[] chars, int offset, int length, int limit) throws EDISyntaxException {
+        currentToken.append(chars, offset, limit > 0 && length >= limit ? limit - 1 : length);
+        return countDataRun(chars[offset + length - 1], length, limit);
+    }
+
+    /**
+     * Accounts for a run of data characters taken from the input by bulkScanData()
+     * and already appended to the current token, updating the character counts.
+     * If the run reaches a positive <code>limit</code>, only <code>limit - 1</code>
+     * of its characters are expected in the token.
+     *
+     * @param last   the last data character of the run
+     * @param length number of data characters, at least 1
+     * @param limit  the remaining limit as maintained by scanData()
+     * @return the limit reduced by <code>length</code>
+     * @throws com.berryworks.edireader.EDISyntaxException if the run exceeds the limit
+     */
+    protected int countDataRun(char last, int length, int limit) throws EDISyntaxException {
+        charCount += length;
+        segCharCount += length;
+        cChar = last;
+        cClass = CharacterClass.DATA;
+        if (limit > 0) {
+            if (length >= limit) {
+                EDISyntaxException se = new EDISyntaxException(ELEMENT_TOO_LONG, this);
+                logger.warn(se.getMessage());
+                throw se;
+            }
+            limit -= length;
+        }
+        return limit;
     }
 
     public void copy(char c) {
@@ -200,6 +351,22 @@ public abstract class AbstractTokenizer implements Tokenizer, ErrorMessages {
      */
     public String nextSimpleValue(boolean required, boolean returnNullAtSegmentEnd) throws SAXException,
             IOException {
+        Token t = nextSimpleToken(required, returnNullAtSegmentEnd);
+        return t == null ? null : t.getValue();
+    }
+
+    /**
+     * Returns the next token, expected to be of type SIMPLE or EMPTY, subject to the
+     * same rules as <code>nextSimpleValue</code>.
+     *
+     * @param required               an EMPTY token is not allowed
+     * @param returnNullAtSegmentEnd governs behavior at end of segment
+     * @return Token, or null at the end of the segment if so requested
+     * @throws SAXException unexpected tokens
+     * @throws IOException  for problem reading EDI data
+     */
+    protected Token nextSimpleToken(boolean required, boolean returnNullAtSegmentEnd) throws SAXException,
+            IOException {
         Token t = nextToken();
         switch (t.getType()) {
             case EMPTY:
@@ -227,7 +394,7 @@ public abstract class AbstractTokenizer implements Tokenizer, ErrorMessages {
                 logger.warn(se.getMessage());
                 throw se;
         }
-        return t.getValue();
+        return t;
     }
 
     /**
@@ -268,7 +435,7 @@ public abstract class AbstractTokenizer implements Tokenizer, ErrorMessages {
     public int nextIntValue() throws SAXException, IOException {
         int i;
         try {
-            i = Integer.parseInt(nextSimpleValue());
+            i = nextSimpleToken(true, false).getIntValue();
         } catch (NumberFormatException e) {
             EDISyntaxException se = new EDISyntaxException(DIGITS_ONLY, this);
             logger.warn(se.getMessage());
@@ -435,6 +602,245 @@ public abstract class AbstractTokenizer implements Tokenizer, ErrorMessages {
         return t;
     }
 
+    /**
+     * Copies the remainder of the current segment, and the segments that follow it, through the end
+     * of the first segment whose type is one of those given, without forming tokens. This must be called
+     * immediately after nextToken() has returned the SEGMENT_START token of the current segment.
+     * The chars are appended to a StringBuilder exactly as they appear in the input, including release
+     * characters and terminator suffixes, so that the copy together with the type of the current
+     * segment can later be tokenized on its own. The data of a BIN segment is copied according to
+     * its length element, as getChars() would read it, so that it may contain any chars. Upon return,
+     * this Tokenizer is positioned as it would be after skipSegment() for the last segment copied.
+     *
+     * @param copy         receives the chars consumed
+     * @param segmentTypes types of segment at which copying stops
+     * @return type of the last segment copied
+     * @throws IOException                                 for problem reading EDI data
+     * @throws com.berryworks.edireader.EDISyntaxException if the end of data is reached first
+     */
+    public String copySegmentsThrough(StringBuilder copy, String... segmentTypes) throws IOException, EDISyntaxException {
+        if (tokenReady || state != State.IN_SEGMENT)
+            throw new IllegalStateException("copySegmentsThrough() must immediately follow the start of a segment");
+
+        // The char that ended the segment type has already been consumed, unless it was put back
+        if (!unGot)
+            copy.append(cChar);
+
+        StringBuilder segmentType = new StringBuilder();
+        boolean inSegmentType = false;
+        String stoppingType = null;
+        while (true) {
+            getChar();
+            switch (cClass) {
+                case EOF:
+                    EDISyntaxException se = new EDISyntaxException(UNEXPECTED_EOF, this);
+                    logger.warn(se.getMessage());
+                    throw se;
+                case RELEASE:
+                    copy.append(cChar);
+                    getChar();
+                    if (cClass == CharacterClass.EOF)
+                        continue;
+                    // The released character is treated as data
+                    copy.append(cChar);
+                    if (inSegmentType)
+                        segmentType.append(cChar);
+                    break;
+                case DATA:
+                    copy.append(cChar);
+                    if (inSegmentType)
+                        segmentType.append(cChar);
+                    break;
+                case TERMINATOR:
+                    copy.append(cChar);
+                    if (inSegmentType) {
+                        inSegmentType = false;
+                        stoppingType = matchSegmentType(segmentType, segmentTypes);
+                    }
+                    while (true) {
+                        getChar();
+                        if (cClass == CharacterClass.EOF || WHITESPACE.indexOf(cChar) == -1)
+                            break;
+                        copy.append(cChar);
+                    }
+                    ungetChar();
+                    if (stoppingType != null) {
+                        state = State.EXPECTING_SEGMENT;
+                        repetition = false;
+                        return stoppingType;
+                    }
+                    segmentCount++;
+                    segCharCount = 0;
+                    segmentType.setLength(0);
+                    inSegmentType = true;
+                    break;
+                default:
+                    copy.append(cChar);
+                    if (inSegmentType) {
+                        inSegmentType = false;
+                        stoppingType = matchSegmentType(segmentType, segmentTypes);
+                        if (stoppingType == null && cClass == CharacterClass.DELIMITER && "BIN".contentEquals(segmentType))
+                            copyBinaryData(copy);
+                    }
+            }
+        }
+    }
+
+    /**
+     * Copies the length element of a BIN segment and the number of chars it gives, without regard
+     * to the class of those chars, on behalf of copySegmentsThrough(). If the length element is not
+     * a digit sequence followed by a delimiter, the copy continues as for any other segment, and the
+     * problem is left to be reported when the copy is parsed.
+     *
+     * @param copy receives the chars consumed
+     * @throws IOException                                 for problem reading EDI data
+     * @throws com.berryworks.edireader.EDISyntaxException if the end of data is reached first
+     */
+    private void copyBinaryData(StringBuilder copy) throws IOException, EDISyntaxException {
+        int length = 0;
+        int digits = 0;
+        while (true) {
+            getChar();
+            if (cClass != CharacterClass.DATA || cChar < '0' || cChar > '9' || digits == 9)
+                break;
+            copy.append(cChar);
+            length = 10 * length + (cChar - '0');
+            digits++;
+        }
+        if (digits == 0 || cClass != CharacterClass.DELIMITER) {
+            ungetChar();
+            return;
+        }
+        copy.append(cChar);
+        for (int i = 0; i < length; i++) {
+            getChar();
+            if (cClass == CharacterClass.EOF) {
+                EDISyntaxException se = new EDISyntaxException(UNEXPECTED_EOF, this);
+                logger.warn(se.getMessage());
+                throw se;
+            }
+            copy.append(cChar);
+        }
+    }
+
+    /**
+     * Skips the remainder of the current segment, and the segments that follow it, until a segment
+     * whose type is one of those given, without forming tokens for the skipped elements. Within a
+     * skipped segment, only the segment terminator and release characters are of interest, so that
+     * this is much faster than skipSegment() when many segments are to be passed over.
+     * This may be called after nextToken() has returned the SEGMENT_START token of the current
+     * segment, or its SEGMENT_END token. Upon return, the next call to nextToken() returns the
+     * SEGMENT_START token of a segment of one of the given types, or whatever token was found
+     * where a segment was expected to begin.
+     *
+     * @param segmentTypes types of segment at which skipping stops
+     * @return number of segments skipped, not counting the current segment
+     * @throws IOException                                 for problem reading EDI data
+     * @throws com.berryworks.edireader.EDISyntaxException if invalid EDI is detected
+     */
+    public int skipSegmentsUntil(String... segmentTypes) throws IOException, EDISyntaxException {
+        if (tokenReady)
+            throw new IllegalStateException("skipSegmentsUntil() called with a token pending");
+
+        int skipped = 0;
+        if (state != State.EXPECTING_SEGMENT)
+            skipRemainderOfSegment();
+        while (true) {
+            if (bulkScan && outputWriter == null && !recorderOn) {
+                int n = bulkSkipSegments(segmentTypes);
+                segmentCount += n;
+                skipped += n;
+            }
+            advance();
+            if (currentToken.getType() != Token.TokenType.SEGMENT_START ||
+                    matchSegmentType(currentToken.getSegmentType(), segmentTypes) != null)
+                return skipped;
+            tokenReady = false;
+            skipped++;
+            skipRemainderOfSegment();
+        }
+    }
+
+    private void skipRemainderOfSegment() throws IOException {
+        while (true) {
+            getChar();
+            switch (cClass) {
+                case EOF:
+                    state = State.EXPECTING_SEGMENT;
+                    return;
+                case RELEASE:
+                    getChar();
+                    break;
+                case TERMINATOR:
+                    state = State.EXPECTING_SEGMENT;
+                    repetition = false;
+                    scanTerminatorSuffix();
+                    currentToken.resetSubElementIndex();
+                    return;
+                default:
+            }
+        }
+    }
+
+    /**
+     * Consumes whole segments directly from the input on behalf of skipSegmentsUntil(), beginning at
+     * the start of a segment and stopping at the start of a segment whose type is one of those given.
+     * Only segments available without further reading, together with any terminator suffix and the
+     * type of the segment that follows, need be consumed; the rest are skipped via getChar().
+     * If a char has been put back with ungetChar(), it is the first char of the segment.
+     * The char counts are updated, but the segment count is left to the caller.
+     * This default implementation consumes nothing.
+     *
+     * @param segmentTypes types of segment at which skipping stops
+     * @return number of segments consumed
+     */
+    protected int bulkSkipSegments(String[] segmentTypes) {
+        return 0;
+    }
+
+    /**
+     * Returns true if the chars of a segment type, within an array, are those of one of a number of types.
+     *
+     * @param chars        array containing the segment type
+     * @param offset       position of the segment type within the array
+     * @param length       length of the segment type
+     * @param segmentTypes types to be matched
+     * @return true if the segment type is among the types
+     */
+    protected static boolean isSegmentTypeAmong(char[] chars, int offset, int length, String[] segmentTypes) {
+        for (String segmentType : segmentTypes) {
+            if (segmentType.length() != length)
+                continue;
+            int i = 0;
+            while (i < length && segmentType.charAt(i) == chars[offset + i])
+                i++;
+            if (i == length)
+                return true;
+        }
+        return false;
+    }
+
+    private static String matchSegmentType(CharSequence candidate, String[] segmentTypes) {
+        for (String segmentType : segmentTypes) {
+            if (segmentType.contentEquals(candidate))
+                return segmentType;
+        }
+        return null;
+    }
+
+    /**
+     * Establishes the number of segments and chars considered to precede the input of this Tokenizer.
+     * This is useful when the input is a portion of a larger whole, so that the positions reported
+     * in syntax exceptions are those within the whole. It must be called before any input is read.
+     *
+     * @param segments number of segments preceding the input
+     * @param chars    number of chars preceding the input
+     */
+    public void setPrecedingCounts(int segments, int chars) {
+        segmentCount = segments;
+        charCount = chars;
+    }
+
     /**
      * Scans a series of data characters up to the first character other than a
      * data character.
@@ -453,6 +859,7 @@ public abstract class AbstractTokenizer implements Tokenizer, ErrorMessages {
     protected CharacterClass scanData(int limit) throws IOException, EDISyntaxException {
         loop:
         while (true) {
+            limit = bulkScanData(limit);
             getChar();
             switch (cClass) {
                 case RELEASE:
@@ -513,7 +920,24 @@ public abstract class AbstractTokenizer implements Tokenizer, ErrorMessages {
 
     public char[] getChars(int n) throws IOException, EDISyntaxException {
         char[] result = new char[n];
-        for (int i = 0; i < n; i++) {
+        getChars(result, 0, n);
+        return result;
+    }
+
+    public void getChars(char[] buffer, int offset, int n) throws IOException, EDISyntaxException {
+        int i = 0;
+        while (i < n) {
+            if (isBulkScanPossible()) {
+                int taken = bulkGetChars(buffer, offset + i, n - i);
+                if (taken > 0) {
+                    charCount += taken;
+                    segCharCount += taken;
+                    cChar = buffer[offset + i + taken - 1];
+                    cClass = classOf(cChar);
+                    i += taken;
+                    continue;
+                }
+            }
             getChar();
             if (cClass == CharacterClass.EOF) {
                 EDISyntaxException se = new EDISyntaxException("Encountered end of data unexpectedly after reading " +
@@ -521,9 +945,23 @@ public abstract class AbstractTokenizer implements Tokenizer, ErrorMessages {
                 logger.warn(se.getMessage());
                 throw se;
             }
-            result[i] = cChar;
+            buffer[offset + i++] = cChar;
         }
-        return result;
+    }
+
+    /**
+     * Copies chars directly from the input on behalf of getChars(), without regard
+     * to their character class. Only chars already available without further reading
+     * need be copied; getChars() reads the rest one at a time via getChar().
+     * This default implementation copies nothing.
+     *
+     * @param buffer array to receive the chars
+     * @param offset position in the array for the first char
+     * @param n      maximum number of chars to copy
+     * @return number of chars copied
+     */
+    protected int bulkGetChars(char[] buffer, int offset, int n) {
+        return 0;
     }
 
 
@@ -542,6 +980,15 @@ public abstract class AbstractTokenizer implements Tokenizer, ErrorMessages {
         outputWriter = writer;
     }
 
+    /**
+     * Gets the Writer to which EDI data is copied as it is read.
+     *
+     * @return Writer, or null if copying is disabled
+     */
+    public Writer getWriter() {
+        return outputWriter;
+    }
+
     /**
      * Return the recording.
      *
@@ -579,6 +1026,40 @@ public abstract class AbstractTokenizer implements Tokenizer, ErrorMessages {
         currentToken = new TokenImpl(this);
     }
 
+    /**
+     * Returns this tokenizer to the state in which it was constructed, but reading from a
+     * different source, so that the tokenizer and its buffers can be used again for other
+     * EDI input. The syntax characters revert to their defaults, and the counts of segments
+     * and chars start again from zero. Bulk scanning remains as it was set.
+     *
+     * @param source EDI input
+     */
+    protected void reset(Reader source) {
+        inputReader = source;
+        state = State.EXPECTING_SEGMENT;
+        cClass = null;
+        outputWriter = null;
+        writingSuspended = false;
+        recording.setLength(0);
+        recorderOn = false;
+        segmentCount = segTokenCount = charCount = segCharCount = 0;
+        delimiter = '+';
+        subDelimiter = ':';
+        subSubDelimiter = '&';
+        release = -1;
+        repetitionSeparator = -1;
+        terminator = '.';
+        classTableStale = true;
+        tokenReady = false;
+        repetition = false;
+        endOfFile = false;
+        cChar = 0;
+        unGot = false;
+        currentToken.resetValue();
+        currentToken.resetIndexes();
+        currentToken.setType(Token.TokenType.UNKNOWN);
+    }
+
     /**
      * Advances to the next token. Sets tokenReady, currentToken, and state.
      *
@@ -633,7 +1114,7 @@ public abstract class AbstractTokenizer implements Tokenizer, ErrorMessages {
                         currentToken.setValue(cChar);
                         currentToken.resetIndexes();
                         scanData(10);
-                        currentToken.setSegmentType(currentToken.getValue());
+                        currentToken.setSegmentTypeFromValue();
                         state = State.IN_SEGMENT;
                 }
                 break;
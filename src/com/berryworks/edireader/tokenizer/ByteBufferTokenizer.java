@@ -0,0 +1,309 @@
+/*
+ * Copyright 2005-2019 by BerryWorks Software, LLC. All rights reserved.
+ *
+ * This file is part of EDIReader. You may obtain a license for its use directly from
+ * BerryWorks Software, and you may also choose to use this software under the terms of the
+ * GPL version 3. Other products in the EDIReader software suite are available only by licensing
+ * with BerryWorks. Only those files bearing the GPL statement below are available under the GPL.
+ *
+ * EDIReader is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * EDIReader is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with EDIReader.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.berryworks.edireader.tokenizer;
+
+import com.berryworks.edireader.EDISyntaxException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+
+/**
+ * Interprets EDI input held in a ByteBuffer as a sequence of primitive syntactic tokens.
+ * <p>
+ * Unlike EDITokenizer, which reads chars from a Reader into an intermediate CharBuffer,
+ * this implementation works directly on the bytes of a ByteBuffer, typically a
+ * MappedByteBuffer obtained from a FileChannel. Each byte is taken to be a single
+ * ISO-8859-1 character, which is suitable for X12 and for the single-byte EDIFACT
+ * syntax levels. Data containing multi-byte characters should be parsed using a Reader
+ * with the appropriate charset instead.
+ * <p>
+ * Runs of data bytes are located in the buffer and widened directly into the value of
+ * the current token; there is no separate decoding pass over the input.
+ */
+public class ByteBufferTokenizer extends AbstractTokenizer {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
+    private final ByteBuffer byteBuffer;
+    private char[] run = new char[64];
+
+    /**
+     * Constructs a tokenizer over the remaining bytes of a ByteBuffer, from its position to its limit.
+     * The position of the argument is not disturbed.
+     *
+     * @param buffer EDI input
+     */
+    public ByteBufferTokenizer(ByteBuffer buffer) {
+        super(null);
+        byteBuffer = buffer.slice();
+        logger.debug("Constructed a new ByteBufferTokenizer over {} bytes", byteBuffer.remaining());
+    }
+
+    /**
+     * Returns a String representation of the current state of the tokenizer
+     * for testing and debugging purposes.
+     *
+     * @return String representation
+     */
+    @Override
+    public String toString() {
+        String result = "tokenizer state:";
+        result += " segmentCount=" + segmentCount;
+        result += " charCount=" + charCount;
+        result += " segTokenCount=" + segTokenCount;
+        result += " segCharCount=" + segCharCount;
+        result += " currentToken=" + currentToken;
+        result += " buffer.limit=" + byteBuffer.limit();
+        result += " buffer.position=" + byteBuffer.position();
+        return result;
+    }
+
+    /**
+     * Gets the next character of input. Sets cChar and cClass
+     *
+     * @throws IOException for problem writing to the outputWriter
+     */
+    public void getChar() throws IOException {
+        if (unGot) {
+            // The current character has been "put back" with ungetChar()
+            // after having been seen with getChar(). Therefore, this call
+            // to getChar() can simply reget the current character.
+            unGot = false;
+            charCount++;
+            segCharCount++;
+            return;
+        }
+
+        // Copy the current character to an outputWriter or the recorder if necessary
+        // before moving on to the next one.
+        if (outputWriter != null) {
+            if ((!endOfFile) && (!writingSuspended))
+                outputWriter.write(cChar);
+        }
+        if (recorderOn)
+            recording.append(cChar);
+
+        if (!byteBuffer.hasRemaining())
+            endOfFile = true;
+
+        if (endOfFile) {
+            cClass = CharacterClass.EOF;
+            logger.debug("end-of-file encountered");
+        } else {
+            cChar = (char) (byteBuffer.get() & 0xFF);
+            cClass = classOf(cChar);
+        }
+        charCount++;
+        segCharCount++;
+    }
+
+    /**
+     * Consumes the run of data bytes at the current position of the buffer,
+     * stopping at the first byte that is not data.
+     *
+     * @param limit the remaining limit as maintained by scanData()
+     * @return the limit reduced by the number of data characters consumed
+     * @throws EDISyntaxException if the run exceeds the limit
+     */
+    @Override
+    protected int bulkScanData(int limit) throws EDISyntaxException {
+        if (!isBulkScanPossible())
+            return limit;
+
+        final CharacterClass[] table = getClassTable();
+        final int start = byteBuffer.position();
+        final int end = byteBuffer.limit();
+        int i = start;
+        while (i < end && table[byteBuffer.get(i) & 0xFF] == CharacterClass.DATA)
+            i++;
+        int n = i - start;
+        if (n == 0)
+            return limit;
+        if (limit > 0 && n > limit)
+            n = limit;
+
+        // Widen the bytes directly into the token, as acceptDataRun() would append them
+        currentToken.append(byteBuffer, start, limit > 0 && n == limit ? n - 1 : n);
+        char last = (char) (byteBuffer.get(start + n - 1) & 0xFF);
+        byteBuffer.position(start + n);
+        return countDataRun(last, n, limit);
+    }
+
+    /**
+     * Consumes whole segments on behalf of skipSegmentsUntil(), looking only for
+     * segment terminators and release characters.
+     *
+     * @param segmentTypes types of segment at which skipping stops
+     * @return number of segments consumed
+     */
+    @Override
+    protected int bulkSkipSegments(String[] segmentTypes) {
+        final CharacterClass[] table = getClassTable();
+        // Within a segment, only the terminator and release characters are of interest
+        final int term = classOf(terminator) == CharacterClass.TERMINATOR ? terminator : -1;
+        final int rel = release >= 0 && classOf((char) release) == CharacterClass.RELEASE ? release : -1;
+        // A char put back by ungetChar() is still in the buffer just before its position
+        final int start = byteBuffer.position() - (unGot ? 1 : 0);
+        final int end = byteBuffer.limit();
+        int consumed = start;
+        int segments = 0;
+        int i = start;
+        scan:
+        while (true) {
+            // The segment type
+            int typeStart = i;
+            while (i < end && i - typeStart < 10 && table[byteBuffer.get(i) & 0xFF] == CharacterClass.DATA)
+                i++;
+            if (i == end || i == typeStart)
+                break;
+            if (run.length < i - typeStart)
+                run = new char[Math.max(i - typeStart, 2 * run.length)];
+            for (int j = typeStart; j < i; j++)
+                run[j - typeStart] = (char) (byteBuffer.get(j) & 0xFF);
+            if (isSegmentTypeAmong(run, 0, i - typeStart, segmentTypes))
+                break;
+
+            // The remainder of the segment, through its terminator
+            while (true) {
+                if (i >= end)
+                    break scan;
+                int c = byteBuffer.get(i++) & 0xFF;
+                if (c == term)
+                    break;
+                if (c == rel)
+                    i++;
+            }
+
+            // Any terminator suffix, which must be seen to end before the segment is consumed
+            while (i < end && WHITESPACE.indexOf((char) (byteBuffer.get(i) & 0xFF)) != -1)
+                i++;
+            if (i == end)
+                break;
+            consumed = i;
+            segments++;
+        }
+
+        int n = consumed - start;
+        if (n > 0) {
+            byteBuffer.position(consumed);
+            charCount += n;
+            segCharCount = 0;
+            unGot = false;
+            cChar = (char) (byteBuffer.get(consumed - 1) & 0xFF);
+        }
+        return segments;
+    }
+
+    /**
+     * Copies bytes directly from the buffer, as chars, on behalf of getChars().
+     *
+     * @param buffer array to receive the chars
+     * @param offset position in the array for the first char
+     * @param n      maximum number of chars to copy
+     * @return number of chars copied
+     */
+    @Override
+    protected int bulkGetChars(char[] buffer, int offset, int n) {
+        final int start = byteBuffer.position();
+        int taken = Math.min(n, byteBuffer.remaining());
+        for (int j = 0; j < taken; j++)
+            buffer[offset + j] = (char) (byteBuffer.get(start + j) & 0xFF);
+        byteBuffer.position(start + taken);
+        return taken;
+    }
+
+    /**
+     * Gets the chars that have not yet been returned by getChar() or equivalent.
+     * Since the entire input is held in the ByteBuffer, this can be a large array;
+     * getUnconsumed() provides the same information without copying.
+     *
+     * @return chars of unprocessed input data
+     */
+    public char[] getBuffered() {
+        char[] result = new char[0];
+
+        if (!byteBuffer.hasRemaining() && !unGot) {
+            return result;
+        }
+
+        try {
+            int n = byteBuffer.remaining();
+            if (endOfFile && n == 0) {
+                // Special case: if we've hit eof and the buffer is empty
+                // ignore an unGot char if there is one.
+            } else {
+                n += unGot ? 1 : 0;
+            }
+            result = lookahead(n);
+        } catch (Exception ignore) {
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns a ByteBuffer sharing the content of this tokenizer's buffer, beginning
+     * with the first byte not yet consumed by getChar() or equivalent. This is
+     * useful when the buffer contains a series of independent interchanges and a new
+     * tokenizer is to begin where this one left off.
+     *
+     * @return ByteBuffer of unprocessed input data
+     */
+    public ByteBuffer getUnconsumed() {
+        ByteBuffer result = byteBuffer.duplicate();
+        if (unGot && !endOfFile)
+            result.position(result.position() - 1);
+        return result.slice();
+    }
+
+    /**
+     * Look ahead into the buffer and return the next n chars to
+     * be seen, without disturbing the normal operation of getChar().
+     *
+     * @param n number of chars to return
+     * @return char[] containing upcoming input chars
+     * @throws IOException for problem writing to the outputWriter
+     */
+    public char[] lookahead(int n) throws IOException {
+        logger.debug("ByteBufferTokenizer.lookahead({})", n);
+        char[] rval = new char[n];
+
+        // The 1st char is grabbed using the tokenizer's built-in
+        // getChar() / ungetChar() mechanism. This allows things to work
+        // properly whether or not the next char has already been gotten.
+        getChar();
+        rval[0] = cChar;
+        ungetChar();
+
+        int j = 1;
+        for (int i = byteBuffer.position(); i < byteBuffer.limit() && j < n; i++)
+            rval[j++] = (char) (byteBuffer.get(i) & 0xFF);
+
+        // If more lookahead chars were requested than are available,
+        // then fill the return value with '?' to the requested length.
+        for (; j < n; ) {
+            rval[j++] = '?';
+        }
+
+        return rval;
+    }
+}
@@ -20,6 +20,7 @@
 
 package com.berryworks.edireader.tokenizer;
 
+import com.berryworks.edireader.EDISyntaxException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -41,27 +42,97 @@ import java.nio.CharBuffer;
 public class EDITokenizer extends AbstractTokenizer {
     private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
     public static final int BUFFER_SIZE = 1000;
-    private final CharBuffer charBuffer = CharBuffer.wrap(new char[BUFFER_SIZE]);
+    public static final int MAX_ADAPTIVE_BUFFER_SIZE = 64 * 1024;
+    private CharBuffer charBuffer;
+    private boolean adaptive;
 
     public EDITokenizer(Reader source) {
+        this(source, BUFFER_SIZE);
+    }
+
+    /**
+     * Constructs a tokenizer that reads from the source in chunks of up to bufferSize chars.
+     *
+     * @param source     EDI input
+     * @param bufferSize initial capacity of the internal buffer, in chars
+     */
+    public EDITokenizer(Reader source, int bufferSize) {
         super(source);
+        if (bufferSize < 1)
+            throw new IllegalArgumentException("EDITokenizer buffer size must be positive, not " + bufferSize);
+        charBuffer = CharBuffer.wrap(new char[bufferSize]);
         ((Buffer) charBuffer).flip();
-        logger.debug("Constructed a new EDITokenizer");
+        logger.debug("Constructed a new EDITokenizer with a buffer of {} chars", bufferSize);
     }
 
     public EDITokenizer(Reader source, char[] preRead) {
-        this(source);
+        this(source, preRead, BUFFER_SIZE);
+    }
+
+    /**
+     * Constructs a tokenizer that sees the preRead chars before reading from the source.
+     * If there are more preRead chars than bufferSize, the buffer is made large enough
+     * to hold them.
+     *
+     * @param source     EDI input
+     * @param preRead    chars of EDI input data to be used before reading from the source
+     * @param bufferSize initial capacity of the internal buffer, in chars
+     */
+    public EDITokenizer(Reader source, char[] preRead, int bufferSize) {
+        this(source, preRead == null ? bufferSize : Math.max(bufferSize, preRead.length));
         if (preRead == null || preRead.length == 0)
             return;
 
-        if (preRead.length > charBuffer.capacity())
-            throw new RuntimeException("Attempt to create EDITokenizer with " + preRead.length +
-                    " pre-read chars, which is greater than the internal buffer size of " + charBuffer.capacity());
         ((Buffer) charBuffer).clear();
         charBuffer.put(preRead);
         ((Buffer) charBuffer).flip();
     }
 
+    /**
+     * Prepares this tokenizer to read new EDI input, as if it had been newly constructed
+     * with the same buffer size, except that a buffer grown by adaptive buffering keeps its
+     * larger capacity. This allows a tokenizer to be reused for a series of interchanges
+     * without allocating new buffers.
+     *
+     * @param source  EDI input
+     * @param preRead chars of EDI input data to be used before reading from the source
+     */
+    public void reset(Reader source, char[] preRead) {
+        reset(source);
+        if (preRead != null && preRead.length > charBuffer.capacity())
+            charBuffer = CharBuffer.wrap(new char[preRead.length]);
+        ((Buffer) charBuffer).clear();
+        if (preRead != null)
+            charBuffer.put(preRead);
+        ((Buffer) charBuffer).flip();
+    }
+
+    /**
+     * Enables or disables adaptive buffering. In adaptive mode, the internal buffer is
+     * doubled in size, up to MAX_ADAPTIVE_BUFFER_SIZE, whenever a read from the source
+     * fills all of the space available in the buffer or a segment is found to be longer
+     * than the buffer. This reduces the number of read calls on sources that deliver data
+     * in large chunks, such as files on network storage.
+     *
+     * @param adaptive true to enable adaptive buffering
+     */
+    public void setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+    }
+
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    /**
+     * Gets the current capacity of the internal buffer.
+     *
+     * @return capacity in chars
+     */
+    public int getBufferSize() {
+        return charBuffer.capacity();
+    }
+
     /**
      * Returns a String representation of the current state of the tokenizer
      * for testing and debugging purposes.
@@ -119,23 +190,124 @@ public class EDITokenizer extends AbstractTokenizer {
             logger.debug("end-of-file encountered");
         } else {
             cChar = charBuffer.get();
-            if (cChar == delimiter)
-                cClass = CharacterClass.DELIMITER;
-            else if (cChar == terminator)
-                cClass = CharacterClass.TERMINATOR;
-            else if (cChar == subDelimiter)
-                cClass = CharacterClass.SUB_DELIMITER;
-            else if (cChar == release)
-                cClass = CharacterClass.RELEASE;
-            else if (cChar == repetitionSeparator)
-                cClass = CharacterClass.REPEAT_DELIMITER;
-            else
-                cClass = CharacterClass.DATA;
+            cClass = classOf(cChar);
         }
         charCount++;
         segCharCount++;
     }
 
+    /**
+     * Consumes the run of data characters at the current position of the buffer,
+     * stopping at the first character that is not data or at the end of the
+     * buffered chars, whichever comes first. Characters not yet read into the buffer
+     * are left for getChar().
+     *
+     * @param limit the remaining limit as maintained by scanData()
+     * @return the limit reduced by the number of data characters consumed
+     * @throws EDISyntaxException if the run exceeds the limit
+     */
+    @Override
+    protected int bulkScanData(int limit) throws EDISyntaxException {
+        if (!isBulkScanPossible())
+            return limit;
+
+        final char[] chars = charBuffer.array();
+        final int start = charBuffer.position();
+        final int end = ((Buffer) charBuffer).limit();
+        final CharacterClass[] table = getClassTable();
+        int i = start;
+        while (i < end) {
+            char c = chars[i];
+            if ((c < table.length ? table[c] : classOf(c)) != CharacterClass.DATA)
+                break;
+            i++;
+        }
+        int n = i - start;
+        if (n == 0)
+            return limit;
+        if (limit > 0 && n > limit)
+            n = limit;
+
+        ((Buffer) charBuffer).position(start + n);
+        return acceptDataRun(chars, start, n, limit);
+    }
+
+    /**
+     * Consumes the whole segments held in the buffer on behalf of skipSegmentsUntil(),
+     * looking only for segment terminators and release characters.
+     *
+     * @param segmentTypes types of segment at which skipping stops
+     * @return number of segments consumed
+     */
+    @Override
+    protected int bulkSkipSegments(String[] segmentTypes) {
+        final char[] chars = charBuffer.array();
+        // A char put back by ungetChar() is still in the buffer just before its position
+        final int start = charBuffer.position() - (unGot ? 1 : 0);
+        final int end = ((Buffer) charBuffer).limit();
+        final CharacterClass[] table = getClassTable();
+        // Within a segment, only the terminator and release characters are of interest
+        final int term = classOf(terminator) == CharacterClass.TERMINATOR ? terminator : -1;
+        final int rel = release >= 0 && classOf((char) release) == CharacterClass.RELEASE ? release : -1;
+        int consumed = start;
+        int segments = 0;
+        int i = start;
+        scan:
+        while (true) {
+            // The segment type
+            int typeStart = i;
+            while (i < end && i - typeStart < 10 && chars[i] < table.length && table[chars[i]] == CharacterClass.DATA)
+                i++;
+            if (i == end || i == typeStart || isSegmentTypeAmong(chars, typeStart, i - typeStart, segmentTypes))
+                break;
+
+            // The remainder of the segment, through its terminator
+            while (true) {
+                if (i >= end)
+                    break scan;
+                char c = chars[i++];
+                if (c == term)
+                    break;
+                if (c == rel)
+                    i++;
+            }
+
+            // Any terminator suffix, which must be seen to end before the segment is consumed
+            while (i < end && WHITESPACE.indexOf(chars[i]) != -1)
+                i++;
+            if (i == end)
+                break;
+            consumed = i;
+            segments++;
+        }
+
+        int n = consumed - start;
+        if (n > 0) {
+            ((Buffer) charBuffer).position(consumed);
+            charCount += n;
+            segCharCount = 0;
+            unGot = false;
+            cChar = chars[consumed - 1];
+        }
+        return segments;
+    }
+
+    /**
+     * Copies chars directly from the buffer on behalf of getChars(). Chars not yet
+     * read into the buffer are left for getChar(), which refills it.
+     *
+     * @param buffer array to receive the chars
+     * @param offset position in the array for the first char
+     * @param n      maximum number of chars to copy
+     * @return number of chars copied
+     */
+    @Override
+    protected int bulkGetChars(char[] buffer, int offset, int n) {
+        int taken = Math.min(n, charBuffer.remaining());
+        charBuffer.get(buffer, offset, taken);
+        return taken;
+    }
+
     /**
      * Gets the remaining chars that have been read into the buffer
      * and not returned by getChars(n) or equivalant. Chars previewed
@@ -218,11 +390,16 @@ public class EDITokenizer extends AbstractTokenizer {
 
     private void readUntilBufferProvidesAtLeast(int needed) throws IOException {
 
+        // The buffer must be able to hold all of the chars needed at once
+        if (needed > charBuffer.capacity())
+            growBuffer(needed);
+
         int remaining;
         while ((remaining = charBuffer.remaining()) < needed) {
             logger.debug("Reading from input stream because at least {} chars are needed and only {} are available",
                     needed, remaining);
             charBuffer.compact();
+            int space = charBuffer.remaining();
             int n;
             while ((n = inputReader.read(charBuffer)) == 0) {
             }
@@ -234,7 +411,19 @@ public class EDITokenizer extends AbstractTokenizer {
                 break;
             } else {
                 logger.debug("Number of chars read from input stream: {}", n);
+                if (adaptive && (n == space || segCharCount > charBuffer.capacity()))
+                    growBuffer(Math.min(2 * charBuffer.capacity(), MAX_ADAPTIVE_BUFFER_SIZE));
             }
         }
     }
+
+    private void growBuffer(int capacity) {
+        if (capacity <= charBuffer.capacity())
+            return;
+        logger.debug("Growing buffer from {} to {} chars", charBuffer.capacity(), capacity);
+        CharBuffer larger = CharBuffer.wrap(new char[capacity]);
+        larger.put(charBuffer);
+        ((Buffer) larger).flip();
+        charBuffer = larger;
+    }
 }
\ No newline at end of file
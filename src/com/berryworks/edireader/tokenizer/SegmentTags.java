@@ -0,0 +1,182 @@
+/*
+ * Copyright 2005-2019 by BerryWorks Software, LLC. All rights reserved.
+ *
+ * This file is part of EDIReader. You may obtain a license for its use directly from
+ * BerryWorks Software, and you may also choose to use this software under the terms of the
+ * GPL version 3. Other products in the EDIReader software suite are available only by licensing
+ * with BerryWorks. Only those files bearing the GPL statement below are available under the GPL.
+ *
+ * EDIReader is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * EDIReader is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with EDIReader.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.berryworks.edireader.tokenizer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps the chars of a segment tag such as NM1 or REF to a canonical String instance,
+ * so that a tokenizer need not create a new String for the tag at the beginning of
+ * every segment. Each tag also carries a lazily built table of the element ids
+ * (NM101, NM102, ...) formed from it.
+ * <p>
+ * Tags of one to three ASCII chars are packed into an int and looked up in a small
+ * open-addressed table belonging to the instance, which is therefore not thread-safe;
+ * each Token has its own. Longer or non-ASCII tags are not cached.
+ * <p>
+ * The canonical instances are drawn from a registry shared by all instances, seeded
+ * with the envelope tags of the supported standards and with the segment tags
+ * mentioned by plugins as they are loaded. Tags not in the registry become canonical
+ * within an instance the first time they are seen.
+ */
+public class SegmentTags {
+
+    private static final int MAX_CACHED_LENGTH = 3;
+    private static final int MAX_CACHED_ELEMENT_INDEX = 99;
+
+    private static volatile Map<String, String> registry = new HashMap<>();
+
+    static {
+        for (String tag : new String[]{
+                "ISA", "IEA", "GS", "GE", "ST", "SE", "TA1", "BIN",
+                "UNA", "UNB", "UNZ", "UNG", "UNE", "UNH", "UNT", "UNO", "UNP"}) {
+            register(tag);
+        }
+    }
+
+    private Entry[] entries = new Entry[64];
+    private int size;
+
+    /**
+     * Registers a segment tag, making the argument the canonical instance for that tag
+     * unless one is already registered.
+     *
+     * @param tag segment tag
+     */
+    public static synchronized void register(String tag) {
+        if (tag == null || registry.containsKey(tag))
+            return;
+        Map<String, String> copy = new HashMap<>(registry);
+        copy.put(tag, tag);
+        registry = copy;
+    }
+
+    /**
+     * Looks up the tag consisting of the first length chars of an array.
+     *
+     * @param chars  array containing the tag
+     * @param length number of chars in the tag
+     * @return Entry for the tag, or null if the tag is not eligible for caching
+     */
+    public Entry lookup(char[] chars, int length) {
+        if (length < 1 || length > MAX_CACHED_LENGTH)
+            return null;
+        int key = length;
+        for (int i = 0; i < length; i++) {
+            char c = chars[i];
+            if (c > 0x7F)
+                return null;
+            key = (key << 7) | c;
+        }
+
+        int mask = entries.length - 1;
+        int slot = mix(key) & mask;
+        Entry entry;
+        while ((entry = entries[slot]) != null) {
+            if (entry.key == key)
+                return entry;
+            slot = (slot + 1) & mask;
+        }
+
+        String tag = new String(chars, 0, length);
+        String canonical = registry.get(tag);
+        entry = new Entry(key, canonical == null ? tag : canonical);
+        entries[slot] = entry;
+        if (++size * 4 > entries.length * 3)
+            rehash();
+        return entry;
+    }
+
+    private void rehash() {
+        Entry[] old = entries;
+        entries = new Entry[2 * old.length];
+        int mask = entries.length - 1;
+        for (Entry entry : old) {
+            if (entry == null)
+                continue;
+            int slot = mix(entry.key) & mask;
+            while (entries[slot] != null)
+                slot = (slot + 1) & mask;
+            entries[slot] = entry;
+        }
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * A segment tag and the element ids formed from it.
+     */
+    public static class Entry {
+        private final int key;
+        private final String tag;
+        private String[] elementIds;
+
+        private Entry(int key, String tag) {
+            this.key = key;
+            this.tag = tag;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+
+        /**
+         * Returns the element id for the element at a given position in the segment,
+         * in the same form as Token.getElementId().
+         *
+         * @param index ordinal position of the element
+         * @return element id, for example NM103
+         */
+        public String getElementId(int index) {
+            if (index < 0 || index > MAX_CACHED_ELEMENT_INDEX)
+                return formatElementId(tag, index);
+            if (elementIds == null || index >= elementIds.length) {
+                String[] larger = new String[Math.min(Math.max(16, 2 * (index + 1)), MAX_CACHED_ELEMENT_INDEX + 1)];
+                if (elementIds != null)
+                    System.arraycopy(elementIds, 0, larger, 0, elementIds.length);
+                elementIds = larger;
+            }
+            String id = elementIds[index];
+            if (id == null)
+                id = elementIds[index] = formatElementId(tag, index);
+            return id;
+        }
+    }
+
+    /**
+     * Forms an element id from a segment tag and the position of the element within the segment.
+     * Positions less than 10 are expressed with two digits.
+     *
+     * @param tag   segment tag
+     * @param index ordinal position of the element
+     * @return element id
+     */
+    public static String formatElementId(String tag, int index) {
+        if (index >= 0 && index < 10)
+            return tag + '0' + (char) ('0' + index);
+        else
+            return tag + index;
+    }
+}
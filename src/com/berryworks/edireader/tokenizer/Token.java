@@ -22,6 +22,8 @@ package com.berryworks.edireader.tokenizer;
 
 import com.berryworks.edireader.EDISyntaxException;
 
+import java.nio.ByteBuffer;
+
 /**
  * A token noted by EDITokenizer.
  */
@@ -35,6 +37,25 @@ public interface Token {
 
     void append(char c);
 
+    /**
+     * Appends a sequence of chars to the value of the token.
+     *
+     * @param chars  array containing the chars to append
+     * @param offset position in the array of the first char to append
+     * @param length number of chars to append
+     */
+    void append(char[] chars, int offset, int length);
+
+    /**
+     * Appends a sequence of bytes to the value of the token, each byte taken as a single
+     * ISO-8859-1 character. The position of the buffer is not changed.
+     *
+     * @param bytes  buffer containing the bytes to append
+     * @param offset index in the buffer of the first byte to append
+     * @param length number of bytes to append
+     */
+    void append(ByteBuffer bytes, int offset, int length);
+
     void resetValue();
 
     void incrementSubElementIndex();
@@ -53,6 +74,14 @@ public interface Token {
 
     void setSegmentType(String s) throws EDISyntaxException;
 
+    /**
+     * Sets the segment type to the current value of the token, using a
+     * canonical String instance for the segment tag where possible.
+     *
+     * @throws EDISyntaxException if the value is empty
+     */
+    void setSegmentTypeFromValue() throws EDISyntaxException;
+
     boolean containsNonSpace();
 
     /**
@@ -125,6 +154,16 @@ public interface Token {
     boolean valueEquals(String v);
 
 
+    /**
+     * Interprets the value of this token as a decimal integer, in the same manner as
+     * <code>Integer.parseInt(getValue())</code> but without creating a String.
+     *
+     * @return int value
+     * @throws NumberFormatException if the value is not a valid integer
+     */
+    int getIntValue() throws NumberFormatException;
+
+
     /**
      * Gets the value of the first token in the segment.
      *
@@ -8,12 +8,13 @@ import com.berryworks.edireader.EDISyntaxException;
 import com.berryworks.edireader.error.ErrorMessages;
 
 import java.nio.Buffer;
+import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 
 public class TokenImpl implements Token {
 
     private final Tokenizer tokenizer;
-    private final char[] digits = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9'};
+    private final SegmentTags segmentTags = new SegmentTags();
 
     private CharBuffer valueBuffer = CharBuffer.wrap(new char[10]);
     private TokenType type = TokenType.UNKNOWN;
@@ -22,6 +23,7 @@ public class TokenImpl implements Token {
     private boolean lastSubElement;
     private boolean containsNonSpace;
     private String segmentType = "";
+    private SegmentTags.Entry segmentTag;
 
     public TokenImpl(Tokenizer tokenizer) {
         this.tokenizer = tokenizer;
@@ -97,15 +99,48 @@ public class TokenImpl implements Token {
      * Gets the data value of the token as a String.
      */
     public String getValue() {
-        ((Buffer) valueBuffer).flip();
-        String s = valueBuffer.toString();
-        valueBuffer.compact();
-        return s;
+        return new String(valueBuffer.array(), 0, valueBuffer.position());
     }
 
     @Override
     public boolean valueEquals(String v) {
-        return getValue().equals(v);
+        int length = valueBuffer.position();
+        if (v == null || v.length() != length)
+            return false;
+        char[] chars = valueBuffer.array();
+        for (int i = 0; i < length; i++) {
+            if (chars[i] != v.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int getIntValue() throws NumberFormatException {
+        char[] chars = valueBuffer.array();
+        int length = valueBuffer.position();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (chars[0] == '-' || chars[0] == '+')) {
+            negative = chars[0] == '-';
+            i++;
+        }
+        // Anything that might overflow a long is left to Integer.parseInt to diagnose
+        if (i == length || length - i > 18)
+            return Integer.parseInt(getValue());
+
+        long result = 0;
+        for (; i < length; i++) {
+            int digit = Character.digit(chars[i], 10);
+            if (digit < 0)
+                throw new NumberFormatException("For input string: \"" + getValue() + "\"");
+            result = 10 * result + digit;
+        }
+        if (negative)
+            result = -result;
+        if (result < Integer.MIN_VALUE || result > Integer.MAX_VALUE)
+            throw new NumberFormatException("For input string: \"" + getValue() + "\"");
+        return (int) result;
     }
 
     @Override
@@ -116,11 +151,23 @@ public class TokenImpl implements Token {
     @Override
     public void setSegmentType(String s) throws EDISyntaxException {
         segmentType = s;
+        segmentTag = null;
         if ("".equals(segmentType))
             throw new EDISyntaxException(
                     ErrorMessages.INVALID_BEGINNING_OF_SEGMENT, tokenizer);
     }
 
+    @Override
+    public void setSegmentTypeFromValue() throws EDISyntaxException {
+        SegmentTags.Entry entry = segmentTags.lookup(valueBuffer.array(), valueBuffer.position());
+        if (entry == null) {
+            setSegmentType(getValue());
+        } else {
+            segmentType = entry.getTag();
+            segmentTag = entry;
+        }
+    }
+
     @Override
     public boolean containsNonSpace() {
         return containsNonSpace;
@@ -138,12 +185,9 @@ public class TokenImpl implements Token {
      * @return The elementId value
      */
     public String getElementId() {
-        String result = getSegmentType();
-        int n = getIndex();
-        if (n < 10) {
-            return result + '0' + digits[n];
-        } else
-            return result + n;
+        if (segmentTag != null)
+            return segmentTag.getElementId(getIndex());
+        return SegmentTags.formatElementId(getSegmentType(), getIndex());
     }
 
     @Override
@@ -174,16 +218,50 @@ public class TokenImpl implements Token {
     @Override
     public void append(char c) {
         if (!valueBuffer.hasRemaining())
-            enlarge();
+            enlarge(1);
         valueBuffer.put(c);
         if (!containsNonSpace && c != ' ')
             containsNonSpace = true;
     }
 
-    private void enlarge() {
-        CharBuffer newBuffer = CharBuffer.wrap(new char[2 * valueBuffer.capacity()]);
-        valueBuffer.compact();
-        newBuffer.append(valueBuffer);
+    @Override
+    public void append(char[] chars, int offset, int length) {
+        if (valueBuffer.remaining() < length)
+            enlarge(length);
+        valueBuffer.put(chars, offset, length);
+        if (!containsNonSpace) {
+            for (int i = offset; i < offset + length; i++) {
+                if (chars[i] != ' ') {
+                    containsNonSpace = true;
+                    break;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void append(ByteBuffer bytes, int offset, int length) {
+        if (valueBuffer.remaining() < length)
+            enlarge(length);
+        char[] chars = valueBuffer.array();
+        int position = valueBuffer.position();
+        boolean nonSpace = containsNonSpace;
+        for (int i = 0; i < length; i++) {
+            char c = (char) (bytes.get(offset + i) & 0xFF);
+            chars[position + i] = c;
+            nonSpace |= c != ' ';
+        }
+        ((Buffer) valueBuffer).position(position + length);
+        containsNonSpace = nonSpace;
+    }
+
+    private void enlarge(int needed) {
+        int capacity = 2 * valueBuffer.capacity();
+        while (capacity - valueBuffer.position() < needed)
+            capacity *= 2;
+        CharBuffer newBuffer = CharBuffer.wrap(new char[capacity]);
+        ((Buffer) valueBuffer).flip();
+        newBuffer.put(valueBuffer);
         valueBuffer = newBuffer;
     }
 
@@ -91,6 +91,19 @@ public interface Tokenizer extends SourcePosition {
 
     char[] getChars(int n) throws IOException, EDISyntaxException;
 
+    /**
+     * Gets the next n chars of input into a portion of an array. This is equivalent
+     * to getChars(n), but allows a large object, such as the data of a BIN segment,
+     * to be read a portion at a time into a buffer of bounded size.
+     *
+     * @param buffer array to receive the chars
+     * @param offset position in the array for the first char
+     * @param n      number of chars to get
+     * @throws IOException        for problem reading EDI data
+     * @throws EDISyntaxException if the end of input is encountered before n chars
+     */
+    void getChars(char[] buffer, int offset, int n) throws IOException, EDISyntaxException;
+
     int getSegmentCount();
 
     int getElementInSegmentCount();
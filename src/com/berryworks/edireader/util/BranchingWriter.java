@@ -23,6 +23,7 @@ package com.berryworks.edireader.util;
 import java.io.FilterWriter;
 import java.io.IOException;
 import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.io.Writer;
 
 /**
@@ -40,12 +41,13 @@ import java.io.Writer;
  * <p>
  * Once the two versions diverge, the alternate versions are buffered in memory.
  * Therefore, this implementation is not appropriate for arbitrarily large volumes of data.
+ * SpillingBranchingWriter is a variant that buffers them in temporary files beyond a given size.
  */
 public class BranchingWriter extends FilterWriter {
 
     private boolean branchActive;
-    private StringWriter branch;
-    private StringWriter trunk;
+    private Writer branch;
+    private Writer trunk;
 
     public BranchingWriter(Writer out) {
         super(out);
@@ -90,35 +92,114 @@ public class BranchingWriter extends FilterWriter {
     @Override
     public void close() throws IOException {
         if (branchActive) {
-            out.write(trunk.toString());
-            out.close();
+            try {
+                writeVersion(trunk);
+                out.close();
+            } finally {
+                discardVersion(trunk);
+                discardVersion(branch);
+            }
         } else
             super.close();
     }
 
     public void writeTrunk(String s) {
-        if (!branchActive) {
-            branchActive = true;
-            trunk = new StringWriter();
-            branch = new StringWriter();
-        }
-        trunk.write(s);
+        if (!branchActive)
+            diverge();
+        writeTo(trunk, s);
     }
 
     public void writeBranch(String s) {
-        if (!branchActive) {
-            branchActive = true;
-            trunk = new StringWriter();
-            branch = new StringWriter();
-        }
-        branch.write(s);
+        if (!branchActive)
+            diverge();
+        writeTo(branch, s);
+    }
+
+    /**
+     * Writes a portion of an array of chars to the trunk only.
+     *
+     * @param cbuf array of chars
+     * @param off  offset of the first char to be written
+     * @param len  number of chars to be written
+     */
+    public void writeTrunk(char[] cbuf, int off, int len) {
+        if (!branchActive)
+            diverge();
+        writeTo(trunk, cbuf, off, len);
+    }
+
+    /**
+     * Writes a portion of an array of chars to the branch only.
+     *
+     * @param cbuf array of chars
+     * @param off  offset of the first char to be written
+     * @param len  number of chars to be written
+     */
+    public void writeBranch(char[] cbuf, int off, int len) {
+        if (!branchActive)
+            diverge();
+        writeTo(branch, cbuf, off, len);
     }
 
     public void closeUsingBranch() throws IOException {
         if (branchActive) {
-            out.write(branch.toString());
-            out.close();
+            try {
+                writeVersion(branch);
+                out.close();
+            } finally {
+                discardVersion(trunk);
+                discardVersion(branch);
+            }
         } else
             super.close();
     }
+
+    private static void writeTo(Writer version, String s) {
+        try {
+            version.write(s);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeTo(Writer version, char[] cbuf, int off, int len) {
+        try {
+            version.write(cbuf, off, len);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void diverge() {
+        branchActive = true;
+        trunk = createVersion();
+        branch = createVersion();
+    }
+
+    /**
+     * Creates a Writer to hold one of the alternate versions once they diverge.
+     *
+     * @return Writer buffering a version
+     */
+    protected Writer createVersion() {
+        return new StringWriter();
+    }
+
+    /**
+     * Writes the content of a version, as created by createVersion(), to the underlying Writer.
+     *
+     * @param version Writer buffering a version
+     * @throws IOException if thrown by the underlying Writer
+     */
+    protected void writeVersion(Writer version) throws IOException {
+        out.write(version.toString());
+    }
+
+    /**
+     * Releases any resources held by a version that is no longer needed.
+     *
+     * @param version Writer buffering a version
+     */
+    protected void discardVersion(Writer version) {
+    }
 }
@@ -21,76 +21,119 @@
 package com.berryworks.edireader.util;
 
 import com.berryworks.edireader.util.base64.AbstractEncoder;
+import com.berryworks.edireader.util.base64.Base64Codec;
 import org.xml.sax.ContentHandler;
 import org.xml.sax.SAXException;
 
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
-import java.nio.charset.CharsetEncoder;
-import java.nio.charset.CoderResult;
 
 /**
  * Encode char data using base-64 conventions
  * before presenting that data to a SAX ContentHandler.
+ * <p>
+ * In addition to encode(char[], ContentHandler), which encodes a complete data object,
+ * the data may be presented a portion at a time with start(), encode(char[], int, int)
+ * and finish(). The base-64 chars are passed to the ContentHandler in blocks of bounded
+ * size as they are produced, so that the memory used does not depend on the length of
+ * the data object. The inherited encode(byte[]), encode(InputStream) and encode(String)
+ * may also be used between start() and finish().
  */
 public class ContentHandlerBase64Encoder extends AbstractEncoder {
 
+    /**
+     * Greatest number of base-64 chars passed to the ContentHandler in each call to characters().
+     */
+    public static final int BLOCK_SIZE = 4096;
+
     private ContentHandler contentHandler;
-    private ByteBuffer base64Bytes;
+    private final ByteBuffer bytes = ByteBuffer.allocate(3 * BLOCK_SIZE / 4);
+    private final CharBuffer block = CharBuffer.allocate(BLOCK_SIZE);
 
     public void encode(char[] dataObject, ContentHandler contentHandler) {
-        this.contentHandler = contentHandler;
-        CharBuffer charBuffer = CharBuffer.wrap(dataObject);
-
-        // Allocate a modest sized non-direct ByteBuffer to receive the
-        // bytes as they are encoded from the chars
-        ByteBuffer byteBuffer = ByteBuffer.allocate(100);
+        try {
+            start(contentHandler);
+            encode(dataObject, 0, dataObject.length);
+            finish();
+        } catch (SAXException e) {
+            throw new RuntimeException("Unrecoverable failure in Base64 encoding");
+        }
+    }
 
-        // Allocate a similar ByteBuffer to receive the bytes as they are emitted
-        // by the Base 64 encoder.
-        base64Bytes = ByteBuffer.allocate(100);
+    /**
+     * Prepares to encode a data object presented a portion at a time.
+     *
+     * @param contentHandler receives the base-64 chars
+     */
+    public void start(ContentHandler contentHandler) {
+        this.contentHandler = contentHandler;
+        ((Buffer) bytes).clear();
+        ((Buffer) block).clear();
+    }
 
-        // Use an encoder repeatedly until all of the chars have been encoded as bytes
-        // and presented as input for base 64 encoding.
-        CharsetEncoder encoder = charset.newEncoder();
-        while (true) {
-            CoderResult coderResult = encoder.encode(charBuffer, byteBuffer, true);
-            if (coderResult.isError())
+    /**
+     * Encodes the next portion of the data object. Each char is taken to be a single
+     * ISO-8859-1 byte. The portions need not be multiples of 3 chars.
+     *
+     * @param chars  array containing the portion
+     * @param offset position of the first char of the portion
+     * @param length number of chars in the portion
+     * @throws SAXException if thrown by the ContentHandler
+     */
+    public void encode(char[] chars, int offset, int length) throws SAXException {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            char c = chars[i];
+            if (c > 0xFF)
                 throw new RuntimeException("Unrecoverable failure in Base64 encoding");
-            ((Buffer) byteBuffer).flip();
-            while (byteBuffer.hasRemaining())
-                consume(byteBuffer.get());
-            if (coderResult.isUnderflow()) break;
-            ((Buffer) byteBuffer).clear();
+            bytes.put((byte) c);
+            if (!bytes.hasRemaining())
+                encodeBlock(false);
         }
-        endOfData();
-        feedContentHandler();
     }
 
-    @Override
-    protected void emit(byte b) {
+    /**
+     * Encodes any bytes remaining from the last portion, with padding as necessary,
+     * and passes any base-64 chars not yet passed to the ContentHandler.
+     *
+     * @throws SAXException if thrown by the ContentHandler
+     */
+    public void finish() throws SAXException {
+        encodeBlock(true);
+    }
 
-        if (!base64Bytes.hasRemaining()) {
-            // Whenever the ByteBuffer gets full, use the CharSetEncoder
-            // to turn the bytes into chars in a CharBuffer.
-            // Whenever the CharBuffer gets full, give those chars
-            // to the SAX ContentHandler.
-            feedContentHandler();
-            ((Buffer) base64Bytes).clear();
-        }
-        // Put the byte into a byteBuffer.
-        base64Bytes.put(b);
+    /**
+     * Encodes the bytes accumulated so far, which are a multiple of 3 unless this is the
+     * end of the data object, and passes the resulting block of chars to the ContentHandler.
+     */
+    private void encodeBlock(boolean endOfInput) throws SAXException {
+        flushBlock();
+        ((Buffer) bytes).flip();
+        Base64Codec.encode(bytes, block, endOfInput);
+        ((Buffer) bytes).clear();
+        flushBlock();
     }
 
-    private void feedContentHandler() {
-        ((Buffer) base64Bytes).flip();
-        CharBuffer charBuffer = charset.decode(base64Bytes);
+    /**
+     * Passes the chars in the block, if any, to the ContentHandler and empties the block.
+     */
+    private void flushBlock() throws SAXException {
+        if (block.position() > 0)
+            contentHandler.characters(block.array(), 0, block.position());
+        ((Buffer) block).clear();
+    }
+
+    /**
+     * Receives a base-64 char produced by the inherited encode() methods, adding it to the block.
+     */
+    @Override
+    protected void emit(byte b) {
         try {
-            contentHandler.characters(charBuffer.array(), 0, charBuffer.length());
+            if (!block.hasRemaining())
+                flushBlock();
         } catch (SAXException e) {
             throw new RuntimeException("Unrecoverable failure in Base64 encoding");
         }
+        block.put((char) b);
     }
-
 }
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2005-2019 by BerryWorks Software, LLC. All rights reserved.
+ *
+ * This file is part of EDIReader. You may obtain a license for its use directly from
+ * BerryWorks Software, and you may also choose to use this software under the terms of the
+ * GPL version 3. Other products in the EDIReader software suite are available only by licensing
+ * with BerryWorks. Only those files bearing the GPL statement below are available under the GPL.
+ *
+ * EDIReader is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * EDIReader is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with EDIReader.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.berryworks.edireader.util;
+
+import com.berryworks.edireader.EDIEventReader;
+import com.berryworks.edireader.EDIStandard;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reads only the envelopes of EDI input containing a series of X12 and/or EDIFACT interchanges,
+ * producing an EnvelopeSummary for each interchange.
+ * <p>
+ * The elements of the interchange, group, and transaction headers and trailers are formed, but the
+ * segments within each transaction are passed over by looking only for their segment terminators,
+ * and the data of X12 BIN segments according to their length.
+ * The envelope is nevertheless checked as with a full parse: the segment counts and control numbers
+ * in the SE, GE, IEA, UNT, UNE, and UNZ segments, and the nesting of groups and transactions.
+ * This is considerably faster than parsing the input with a ContentHandler that ignores everything,
+ * and is intended for routing, inventory, and similar purposes where the content of the
+ * transactions is not needed.
+ * <p>
+ * A typical use is
+ * <br><code>
+ * for (EnvelopeSummary summary : EnvelopeScanner.scan(new InputSource(reader))) { ... }
+ * </code>
+ */
+public class EnvelopeScanner implements Closeable {
+
+    /**
+     * Default capacity of the tokenizer's buffer, larger than EDIReader's default so that more
+     * segments can be passed over between reads.
+     */
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    private final EDIEventReader events;
+
+    /**
+     * Scans EDI input from an InputSource.
+     *
+     * @param source EDI input
+     */
+    public EnvelopeScanner(InputSource source) {
+        events = new EDIEventReader(source);
+        events.setTokenizerBufferSize(BUFFER_SIZE);
+    }
+
+    /**
+     * Scans EDI input held in a ByteBuffer, from its position to its limit, with each byte
+     * taken as a single ISO-8859-1 character.
+     *
+     * @param buffer EDI input
+     */
+    public EnvelopeScanner(ByteBuffer buffer) {
+        events = new EDIEventReader(buffer);
+    }
+
+    /**
+     * Returns a summary of each interchange in EDI input from an InputSource.
+     *
+     * @param source EDI input
+     * @return summaries in the order of the interchanges
+     * @throws SAXException for invalid EDI, including errors in the envelope
+     * @throws IOException  for problem reading EDI data
+     */
+    public static List<EnvelopeSummary> scan(InputSource source) throws SAXException, IOException {
+        try (EnvelopeScanner scanner = new EnvelopeScanner(source)) {
+            return scanner.scanAll();
+        }
+    }
+
+    /**
+     * Returns a summary of each interchange in EDI input held in a ByteBuffer.
+     *
+     * @param buffer EDI input
+     * @return summaries in the order of the interchanges
+     * @throws SAXException for invalid EDI, including errors in the envelope
+     * @throws IOException  for problem reading EDI data
+     */
+    public static List<EnvelopeSummary> scan(ByteBuffer buffer) throws SAXException, IOException {
+        return new EnvelopeScanner(buffer).scanAll();
+    }
+
+    /**
+     * Passes a summary of each remaining interchange to a Consumer as soon as the interchange
+     * has been scanned, so that the summaries need not be held in memory together.
+     *
+     * @param consumer receives each summary
+     * @throws SAXException for invalid EDI, including errors in the envelope
+     * @throws IOException  for problem reading EDI data
+     */
+    public void scan(Consumer<EnvelopeSummary> consumer) throws SAXException, IOException {
+        EnvelopeSummary summary;
+        while ((summary = nextInterchange()) != null)
+            consumer.accept(summary);
+    }
+
+    /**
+     * Scans the next interchange.
+     *
+     * @return summary of the interchange, or null if there is no more input
+     * @throws SAXException for invalid EDI, including errors in the envelope
+     * @throws IOException  for problem reading EDI data
+     */
+    public EnvelopeSummary nextInterchange() throws SAXException, IOException {
+        if (events.next() == EDIEventReader.Event.END_OF_DATA)
+            return null;
+
+        EnvelopeSummary summary = new EnvelopeSummary();
+        summarizeInterchange(summary);
+        EnvelopeSummary.Group group = null;
+
+        while (true) {
+            switch (events.next()) {
+                case START_GROUP:
+                    group = summary.addGroup();
+                    summarizeGroup(group);
+                    break;
+                case START_TRANSACTION:
+                    if (group == null)
+                        // An EDIFACT message not within a UNG .. UNE group
+                        group = summary.addImplicitGroup();
+                    EnvelopeSummary.Transaction transaction = group.addTransaction();
+                    transaction.documentType = events.getDocumentType();
+                    transaction.controlNumber = events.getTransactionControlNumber();
+                    if (events.skipTransaction() != EDIEventReader.Event.END_TRANSACTION)
+                        throw new IllegalStateException("Transaction not ended by " + events.getSegmentType());
+                    // The trailer is now the current segment
+                    transaction.segmentCount = Integer.parseInt(events.getElement(1).trim());
+                    break;
+                case END_GROUP:
+                    group = null;
+                    break;
+                case END_INTERCHANGE:
+                case END_OF_DATA:
+                    return summary;
+                default:
+                    // A TA1 or similar segment outside of a transaction
+                    break;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        events.close();
+    }
+
+    private List<EnvelopeSummary> scanAll() throws SAXException, IOException {
+        List<EnvelopeSummary> summaries = new ArrayList<>();
+        scan(summaries::add);
+        return summaries;
+    }
+
+    private void summarizeInterchange(EnvelopeSummary summary) {
+        summary.standard = events.getStandard();
+        summary.controlNumber = events.getInterchangeControlNumber();
+        if (summary.standard == EDIStandard.ANSI) {
+            summary.senderQualifier = trimmed(5);
+            summary.senderId = trimmed(6);
+            summary.receiverQualifier = trimmed(7);
+            summary.receiverId = trimmed(8);
+            summary.date = events.getElement(9);
+            summary.time = events.getElement(10);
+            summary.version = events.getElement(12);
+            summary.testIndicator = events.getElement(15);
+        } else {
+            summary.version = subElement(1, 2);
+            summary.senderId = subElement(2, 1);
+            summary.senderQualifier = subElement(2, 2);
+            summary.receiverId = subElement(3, 1);
+            summary.receiverQualifier = subElement(3, 2);
+            summary.date = subElement(4, 1);
+            summary.time = subElement(4, 2);
+            summary.testIndicator = events.getElement(11);
+        }
+    }
+
+    private void summarizeGroup(EnvelopeSummary.Group group) {
+        group.controlNumber = events.getGroupControlNumber();
+        if (events.getStandard() == EDIStandard.ANSI) {
+            group.functionalIdentifier = events.getElement(1);
+            group.senderCode = events.getElement(2);
+            group.receiverCode = events.getElement(3);
+            group.version = events.getElement(8);
+        } else {
+            group.functionalIdentifier = events.getElement(1);
+            group.senderCode = subElement(2, 1);
+            group.receiverCode = subElement(3, 1);
+            group.version = subElement(7, 1);
+        }
+    }
+
+    private String trimmed(int position) {
+        String value = events.getElement(position);
+        return value == null ? null : value.trim();
+    }
+
+    private String subElement(int position, int subPosition) {
+        List<String> values = events.getSubElements(position);
+        return subPosition > values.size() ? null : values.get(subPosition - 1);
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2005-2019 by BerryWorks Software, LLC. All rights reserved.
+ *
+ * This file is part of EDIReader. You may obtain a license for its use directly from
+ * BerryWorks Software, and you may also choose to use this software under the terms of the
+ * GPL version 3. Other products in the EDIReader software suite are available only by licensing
+ * with BerryWorks. Only those files bearing the GPL statement below are available under the GPL.
+ *
+ * EDIReader is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * EDIReader is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with EDIReader.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.berryworks.edireader.util;
+
+import com.berryworks.edireader.EDIStandard;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Describes the envelope of one interchange: the values of its ISA or UNB header, and for each
+ * functional group and transaction within it, the values of the header and the number of segments.
+ * An EnvelopeSummary is produced by an EnvelopeScanner.
+ * <p>
+ * The EDIFACT messages of an interchange that are not within a UNG .. UNE group are placed
+ * in an implicit group whose header values are all null.
+ */
+public class EnvelopeSummary {
+
+    private final List<Group> groups = new ArrayList<>();
+    EDIStandard standard;
+    String senderQualifier;
+    String senderId;
+    String receiverQualifier;
+    String receiverId;
+    String date;
+    String time;
+    String version;
+    String controlNumber;
+    String testIndicator;
+
+    public EDIStandard getStandard() {
+        return standard;
+    }
+
+    public String getSenderQualifier() {
+        return senderQualifier;
+    }
+
+    public String getSenderId() {
+        return senderId;
+    }
+
+    public String getReceiverQualifier() {
+        return receiverQualifier;
+    }
+
+    public String getReceiverId() {
+        return receiverId;
+    }
+
+    public String getDate() {
+        return date;
+    }
+
+    public String getTime() {
+        return time;
+    }
+
+    /**
+     * Returns the version of the interchange header: ISA12 for ANSI X12, or the syntax version
+     * number of UNB01 for EDIFACT.
+     *
+     * @return version
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    public String getControlNumber() {
+        return controlNumber;
+    }
+
+    /**
+     * Returns ISA15 for ANSI X12, or UNB11 for EDIFACT, which is null if it is not present.
+     *
+     * @return test indicator
+     */
+    public String getTestIndicator() {
+        return testIndicator;
+    }
+
+    public List<Group> getGroups() {
+        return groups;
+    }
+
+    /**
+     * Returns the number of transactions in the interchange, across all of its groups.
+     *
+     * @return number of transactions
+     */
+    public int getTransactionCount() {
+        int n = 0;
+        for (Group group : groups)
+            n += group.transactions.size();
+        return n;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(standard).append(" interchange ").append(controlNumber)
+                .append(" from ").append(senderQualifier).append('/').append(senderId)
+                .append(" to ").append(receiverQualifier).append('/').append(receiverId)
+                .append(" at ").append(date).append(' ').append(time)
+                .append(" version ").append(version);
+        if (testIndicator != null)
+            sb.append(" test indicator ").append(testIndicator);
+        for (Group group : groups) {
+            if (group.implicit) {
+                for (Transaction transaction : group.transactions)
+                    sb.append("\n  ").append(transaction);
+                continue;
+            }
+            sb.append("\n  group ").append(group.controlNumber)
+                    .append(" ").append(group.functionalIdentifier)
+                    .append(" from ").append(group.senderCode)
+                    .append(" to ").append(group.receiverCode)
+                    .append(" version ").append(group.version);
+            for (Transaction transaction : group.transactions)
+                sb.append("\n    ").append(transaction);
+        }
+        return sb.toString();
+    }
+
+    Group addGroup() {
+        Group group = new Group();
+        groups.add(group);
+        return group;
+    }
+
+    Group addImplicitGroup() {
+        Group group = addGroup();
+        group.implicit = true;
+        return group;
+    }
+
+    /**
+     * Describes a functional group: a GS .. GE or UNG .. UNE group.
+     */
+    public static class Group {
+
+        private final List<Transaction> transactions = new ArrayList<>();
+        String functionalIdentifier;
+        String senderCode;
+        String receiverCode;
+        String controlNumber;
+        String version;
+        boolean implicit;
+
+        /**
+         * Returns GS01, or UNG01 for EDIFACT.
+         *
+         * @return functional identifier, such as PO or ORDERS
+         */
+        public String getFunctionalIdentifier() {
+            return functionalIdentifier;
+        }
+
+        public String getSenderCode() {
+            return senderCode;
+        }
+
+        public String getReceiverCode() {
+            return receiverCode;
+        }
+
+        public String getControlNumber() {
+            return controlNumber;
+        }
+
+        /**
+         * Returns GS08, or the message version number of UNG07 for EDIFACT.
+         *
+         * @return version
+         */
+        public String getVersion() {
+            return version;
+        }
+
+        /**
+         * Returns true for the group that holds EDIFACT messages not within a UNG .. UNE group,
+         * which has no header values of its own.
+         *
+         * @return true if the group has no UNG segment
+         */
+        public boolean isImplicit() {
+            return implicit;
+        }
+
+        public List<Transaction> getTransactions() {
+            return transactions;
+        }
+
+        Transaction addTransaction() {
+            Transaction transaction = new Transaction();
+            transactions.add(transaction);
+            return transaction;
+        }
+    }
+
+    /**
+     * Describes a transaction: an ST .. SE transaction set or a UNH .. UNT message.
+     */
+    public static class Transaction {
+
+        String documentType;
+        String controlNumber;
+        int segmentCount;
+
+        /**
+         * Returns the type of the transaction, such as 850 or ORDERS.
+         *
+         * @return document type
+         */
+        public String getDocumentType() {
+            return documentType;
+        }
+
+        public String getControlNumber() {
+            return controlNumber;
+        }
+
+        /**
+         * Returns the number of segments in the transaction, including its header and trailer,
+         * as given in its SE or UNT segment and checked by the EnvelopeScanner.
+         *
+         * @return segment count
+         */
+        public int getSegmentCount() {
+            return segmentCount;
+        }
+
+        @Override
+        public String toString() {
+            return "transaction " + controlNumber + " " + documentType + " with " + segmentCount + " segments";
+        }
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2005-2019 by BerryWorks Software, LLC. All rights reserved.
+ *
+ * This file is part of EDIReader. You may obtain a license for its use directly from
+ * BerryWorks Software, and you may also choose to use this software under the terms of the
+ * GPL version 3. Other products in the EDIReader software suite are available only by licensing
+ * with BerryWorks. Only those files bearing the GPL statement below are available under the GPL.
+ *
+ * EDIReader is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * EDIReader is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with EDIReader.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.berryworks.edireader.util;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Locates the beginning of each interchange in EDI input containing a series of
+ * X12 and/or EDIFACT interchanges, without fully parsing them.
+ * <p>
+ * The delimiters declared by each ISA, or by each UNA or defaulted by each UNB,
+ * are used to find the segments of that interchange until its IEA or UNZ segment.
+ * If the next non-whitespace input begins another ISA, UNA, or UNB, then that is
+ * taken to be the beginning of the next interchange. The scan stops as soon as
+ * anything else is encountered, or if the delimiters cannot be determined, so
+ * that all of the remaining input is left to be handled by a normal sequential parse.
+ * A boundary is therefore never reported within an interchange, although not every
+ * boundary is necessarily reported.
+ */
+public class InterchangeBoundaryScanner {
+
+    private static final int ISA_LOOKAHEAD = 128;
+
+    private final CharSequence input;
+    private final int length;
+
+    private char delimiter;
+    private char terminator;
+    private int release;
+
+    private InterchangeBoundaryScanner(CharSequence input) {
+        this.input = input;
+        this.length = input.length();
+    }
+
+    /**
+     * Returns the offsets at which interchanges begin. The first offset is always 0,
+     * so that any whitespace preceding the first interchange is included with it,
+     * and each interchange extends to the next offset or to the end of the input.
+     *
+     * @param input EDI input
+     * @return ascending array of offsets
+     */
+    public static int[] scan(CharSequence input) {
+        return new InterchangeBoundaryScanner(input).scan();
+    }
+
+    /**
+     * Equivalent to scan(CharSequence) for input held in a ByteBuffer, from its position
+     * to its limit, with each byte taken as a single ISO-8859-1 character. The offsets
+     * returned are relative to the position of the buffer, which is not disturbed.
+     *
+     * @param input EDI input
+     * @return ascending array of offsets
+     */
+    public static int[] scan(ByteBuffer input) {
+        return scan(new ByteSequence(input.slice()));
+    }
+
+    private int[] scan() {
+        int[] starts = new int[16];
+        int count = 0;
+        starts[count++] = 0;
+
+        int index = skipWhitespace(0);
+        while (index < length) {
+            int end = endOfInterchange(index);
+            if (end < 0)
+                break;
+            index = skipWhitespace(end);
+            if (index >= length || !isInterchangeStart(index))
+                break;
+            if (count == starts.length)
+                starts = Arrays.copyOf(starts, 2 * count);
+            starts[count++] = index;
+        }
+        return Arrays.copyOf(starts, count);
+    }
+
+    private boolean isInterchangeStart(int index) {
+        return matches(index, "ISA") || matches(index, "UNA") || matches(index, "UNB");
+    }
+
+    /**
+     * Returns the offset just beyond the terminator of the IEA or UNZ segment that ends
+     * the interchange beginning at a given offset, or -1 if the end cannot be determined.
+     */
+    private int endOfInterchange(int index) {
+        int segmentStart;
+        String trailerTag;
+        if (matches(index, "ISA")) {
+            segmentStart = previewISA(index);
+            trailerTag = "IEA";
+        } else if (matches(index, "UNA")) {
+            segmentStart = previewUNA(index);
+            trailerTag = "UNZ";
+        } else if (matches(index, "UNB")) {
+            segmentStart = previewUNB(index);
+            trailerTag = "UNZ";
+        } else {
+            return -1;
+        }
+        if (segmentStart < 0)
+            return -1;
+
+        while (segmentStart < length) {
+            segmentStart = skipWhitespace(segmentStart);
+            int segmentEnd = endOfSegment(segmentStart);
+            if (segmentEnd < 0)
+                return -1;
+            if (matches(segmentStart, trailerTag) && segmentStart + 3 < length && input.charAt(segmentStart + 3) == delimiter)
+                return segmentEnd;
+            segmentStart = segmentEnd;
+        }
+        return -1;
+    }
+
+    /**
+     * Establishes the delimiters declared by an ISA segment, returning the offset
+     * beyond its terminator, or -1 if the ISA is not well-formed.
+     */
+    private int previewISA(int index) {
+        if (index + 4 > length)
+            return -1;
+        delimiter = input.charAt(index + 3);
+        release = -1;
+
+        int limit = Math.min(length, index + ISA_LOOKAHEAD);
+        int fields = 0;
+        int i = index + 3;
+        for (; i < limit; i++) {
+            if (input.charAt(i) == delimiter && ++fields == 16)
+                break;
+        }
+        if (fields < 16 || i + 2 >= length)
+            return -1;
+        terminator = input.charAt(i + 2);
+        if (terminator == delimiter || Character.isLetterOrDigit(terminator))
+            return -1;
+        return i + 3;
+    }
+
+    /**
+     * Establishes the delimiters declared by a UNA segment, returning the offset
+     * of the UNB segment that follows, or -1 if the UNA is not well-formed.
+     */
+    private int previewUNA(int index) {
+        if (index + 9 > length)
+            return -1;
+        delimiter = input.charAt(index + 4);
+        char releaseChar = input.charAt(index + 6);
+        release = releaseChar == ' ' ? -1 : releaseChar;
+        terminator = input.charAt(index + 8);
+        int next = skipWhitespace(index + 9);
+        return matches(next, "UNB") ? next : -1;
+    }
+
+    /**
+     * Establishes the default delimiters for a UNB segment that is not preceded by a UNA,
+     * returning the offset of the UNB, or -1 if the defaults cannot be determined.
+     */
+    private int previewUNB(int index) {
+        if (index + 4 > length)
+            return -1;
+        char c = input.charAt(index + 3);
+        if (c == '+') {
+            delimiter = '+';
+            terminator = '\'';
+            release = '?';
+        } else if (c == '\u001D') {
+            delimiter = c;
+            terminator = '\u001C';
+            release = -1;
+        } else {
+            return -1;
+        }
+        return index;
+    }
+
+    private int endOfSegment(int index) {
+        for (int i = index; i < length; i++) {
+            char c = input.charAt(i);
+            if (c == terminator)
+                return i + 1;
+            if (c == release)
+                i++;
+        }
+        return -1;
+    }
+
+    private int skipWhitespace(int index) {
+        while (index < length && Character.isWhitespace(input.charAt(index)))
+            index++;
+        return index;
+    }
+
+    private boolean matches(int index, String tag) {
+        if (index + tag.length() > length)
+            return false;
+        for (int i = 0; i < tag.length(); i++) {
+            if (input.charAt(index + i) != tag.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * A view of the bytes of a ByteBuffer as ISO-8859-1 characters.
+     */
+    private static class ByteSequence implements CharSequence {
+        private final ByteBuffer buffer;
+
+        ByteSequence(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int length() {
+            return buffer.limit();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (buffer.get(index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            ByteBuffer duplicate = buffer.duplicate();
+            duplicate.position(start);
+            duplicate.limit(end);
+            return new ByteSequence(duplicate.slice());
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(length());
+            for (int i = 0; i < length(); i++)
+                sb.append(charAt(i));
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2005-2019 by BerryWorks Software, LLC. All rights reserved.
+ *
+ * This file is part of EDIReader. You may obtain a license for its use directly from
+ * BerryWorks Software, and you may also choose to use this software under the terms of the
+ * GPL version 3. Other products in the EDIReader software suite are available only by licensing
+ * with BerryWorks. Only those files bearing the GPL statement below are available under the GPL.
+ *
+ * EDIReader is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * EDIReader is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with EDIReader.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.berryworks.edireader.util;
+
+import com.berryworks.edireader.SyntaxDescriptor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Forms EDI segments one element at a time in a reusable buffer, for generating acknowledgments and
+ * similar output without creating intermediate Strings for each segment.
+ * <p>
+ * The delimiter and segment terminator, with any terminator suffix, are fixed when the SegmentWriter
+ * is constructed. A segment is begun with segment(), its elements are added in turn with element(),
+ * and it is completed with its terminator by writeTo(), writeTrunkTo(), or writeBranchTo(). For example,
+ * <br><code>
+ * segmentWriter.segment("AK2").element(documentType).element(controlNumber).writeTrunkTo(ackStream);
+ * </code><br>
+ * Element values are copied as given; no release characters are inserted.
+ */
+public class SegmentWriter {
+
+    private final char delimiter;
+    private final char[] terminator;
+    private char[] buffer = new char[128];
+    private int length;
+    private boolean terminated;
+
+    /**
+     * Creates a SegmentWriter.
+     *
+     * @param delimiter            char separating elements
+     * @param terminatorWithSuffix segment terminator followed by any terminator suffix, such as a line break
+     */
+    public SegmentWriter(char delimiter, String terminatorWithSuffix) {
+        this.delimiter = delimiter;
+        this.terminator = terminatorWithSuffix.toCharArray();
+    }
+
+    /**
+     * Creates a SegmentWriter using the delimiter, terminator, and terminator suffix of a SyntaxDescriptor.
+     *
+     * @param syntaxDescriptor syntax characters
+     */
+    public SegmentWriter(SyntaxDescriptor syntaxDescriptor) {
+        this(syntaxDescriptor.getDelimiter(), syntaxDescriptor.getTerminator()
+                + (syntaxDescriptor.getTerminatorSuffix() == null ? "" : syntaxDescriptor.getTerminatorSuffix()));
+    }
+
+    /**
+     * Begins a segment, discarding whatever was formed previously.
+     *
+     * @param segmentType segment type, such as "AK2"
+     * @return this SegmentWriter
+     */
+    public SegmentWriter segment(String segmentType) {
+        length = 0;
+        terminated = false;
+        return append(segmentType);
+    }
+
+    /**
+     * Adds an element to the segment.
+     *
+     * @param value of the element, or null for an empty element
+     * @return this SegmentWriter
+     */
+    public SegmentWriter element(String value) {
+        appendChar(delimiter);
+        return value == null ? this : append(value);
+    }
+
+    /**
+     * Adds an element with a numeric value to the segment.
+     *
+     * @param value of the element
+     * @return this SegmentWriter
+     */
+    public SegmentWriter element(int value) {
+        appendChar(delimiter);
+        if (value < 0) {
+            if (value == Integer.MIN_VALUE)
+                return append(String.valueOf(value));
+            appendChar('-');
+            value = -value;
+        }
+        int digits = 1;
+        for (int n = value; n >= 10; n /= 10)
+            digits++;
+        ensureCapacity(length + digits);
+        for (int i = length + digits - 1; i >= length; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        length += digits;
+        return this;
+    }
+
+    /**
+     * Adds text to the segment without a preceding delimiter, as when forming the
+     * sub-elements of a composite element.
+     *
+     * @param text to be added
+     * @return this SegmentWriter
+     */
+    public SegmentWriter append(String text) {
+        int n = text.length();
+        ensureCapacity(length + n);
+        text.getChars(0, n, buffer, length);
+        length += n;
+        return this;
+    }
+
+    /**
+     * Completes the segment with its terminator and writes it.
+     *
+     * @param writer receives the segment
+     * @throws IOException if thrown by the writer
+     */
+    public void writeTo(Writer writer) throws IOException {
+        terminate();
+        writer.write(buffer, 0, length);
+    }
+
+    /**
+     * Completes the segment with its terminator and writes it to the trunk of a BranchingWriter.
+     *
+     * @param writer receives the segment
+     */
+    public void writeTrunkTo(BranchingWriter writer) {
+        terminate();
+        writer.writeTrunk(buffer, 0, length);
+    }
+
+    /**
+     * Completes the segment with its terminator and writes it to the branch of a BranchingWriter.
+     *
+     * @param writer receives the segment
+     */
+    public void writeBranchTo(BranchingWriter writer) {
+        terminate();
+        writer.writeBranch(buffer, 0, length);
+    }
+
+    /**
+     * Returns the segment as formed so far.
+     *
+     * @return text of the segment
+     */
+    @Override
+    public String toString() {
+        return new String(buffer, 0, length);
+    }
+
+    private void terminate() {
+        if (terminated)
+            return;
+        ensureCapacity(length + terminator.length);
+        System.arraycopy(terminator, 0, buffer, length, terminator.length);
+        length += terminator.length;
+        terminated = true;
+    }
+
+    private void appendChar(char c) {
+        ensureCapacity(length + 1);
+        buffer[length++] = c;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > buffer.length)
+            buffer = Arrays.copyOf(buffer, Math.max(capacity, 2 * buffer.length));
+    }
+}
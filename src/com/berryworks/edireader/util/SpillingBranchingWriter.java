@@ -0,0 +1,177 @@
+/*
+ * Copyright 2005-2019 by BerryWorks Software, LLC. All rights reserved.
+ *
+ * This file is part of EDIReader. You may obtain a license for its use directly from
+ * BerryWorks Software, and you may also choose to use this software under the terms of the
+ * GPL version 3. Other products in the EDIReader software suite are available only by licensing
+ * with BerryWorks. Only those files bearing the GPL statement below are available under the GPL.
+ *
+ * EDIReader is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * EDIReader is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with EDIReader.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.berryworks.edireader.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A BranchingWriter that holds each of the alternate versions in memory only up to a given number
+ * of chars, beyond which the version is moved to a temporary file. At close() or closeUsingBranch(),
+ * the version selected is streamed from its file to the underlying Writer, and the files are deleted.
+ * <p>
+ * The memory used is therefore bounded regardless of the volume of data, which makes this suitable
+ * for the acknowledgment of an interchange with a very large number of transactions, where the
+ * transaction-level detail of a 997 or 999 accumulates in the trunk until the end of the group.
+ */
+public class SpillingBranchingWriter extends BranchingWriter {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
+
+    /**
+     * Default number of chars of a version held in memory
+     */
+    public static final int DEFAULT_THRESHOLD = 64 * 1024;
+
+    private final int threshold;
+    private final Path directory;
+
+    /**
+     * Creates a SpillingBranchingWriter using the default temporary-file directory.
+     *
+     * @param out       underlying Writer
+     * @param threshold number of chars of a version held in memory before it is moved to a file
+     */
+    public SpillingBranchingWriter(Writer out, int threshold) {
+        this(out, threshold, null);
+    }
+
+    /**
+     * Creates a SpillingBranchingWriter.
+     *
+     * @param out       underlying Writer
+     * @param threshold number of chars of a version held in memory before it is moved to a file
+     * @param directory directory for the temporary files, or null for the default temporary-file directory
+     */
+    public SpillingBranchingWriter(Writer out, int threshold, Path directory) {
+        super(out);
+        this.threshold = threshold;
+        this.directory = directory;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    @Override
+    protected Writer createVersion() {
+        return new SpillableVersion();
+    }
+
+    @Override
+    protected void writeVersion(Writer version) throws IOException {
+        ((SpillableVersion) version).writeTo(out);
+    }
+
+    @Override
+    protected void discardVersion(Writer version) {
+        ((SpillableVersion) version).discard();
+    }
+
+    /**
+     * Buffers the chars of a version in a StringBuilder until the threshold is reached,
+     * and in a temporary file thereafter.
+     */
+    private class SpillableVersion extends Writer {
+        private final StringBuilder buffer = new StringBuilder();
+        private Path file;
+        private Writer fileWriter;
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            if (fileWriter != null) {
+                fileWriter.write(cbuf, off, len);
+                return;
+            }
+            buffer.append(cbuf, off, len);
+            if (buffer.length() > threshold)
+                spill();
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            if (fileWriter != null) {
+                fileWriter.write(str, off, len);
+                return;
+            }
+            buffer.append(str, off, off + len);
+            if (buffer.length() > threshold)
+                spill();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (fileWriter != null)
+                fileWriter.flush();
+        }
+
+        @Override
+        public void close() {
+            discard();
+        }
+
+        private void spill() throws IOException {
+            file = directory == null
+                    ? Files.createTempFile("edireader", ".tmp")
+                    : Files.createTempFile(directory, "edireader", ".tmp");
+            logger.debug("Moving {} chars of acknowledgment output to {}", buffer.length(), file);
+            fileWriter = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8));
+            fileWriter.append(buffer);
+            buffer.setLength(0);
+            buffer.trimToSize();
+        }
+
+        void writeTo(Writer target) throws IOException {
+            if (fileWriter == null) {
+                target.append(buffer);
+                return;
+            }
+            fileWriter.close();
+            fileWriter = null;
+            try (Reader reader = new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8)) {
+                char[] chars = new char[8192];
+                int n;
+                while ((n = reader.read(chars)) != -1)
+                    target.write(chars, 0, n);
+            }
+        }
+
+        void discard() {
+            buffer.setLength(0);
+            if (file == null)
+                return;
+            try {
+                if (fileWriter != null)
+                    fileWriter.close();
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.warn("Unable to delete {}: {}", file, e.getMessage());
+            }
+            fileWriter = null;
+            file = null;
+        }
+    }
+}
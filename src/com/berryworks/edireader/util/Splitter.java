@@ -21,7 +21,7 @@
 package com.berryworks.edireader.util;
 
 import com.berryworks.edireader.EDIReader;
-import com.berryworks.edireader.EDIReaderFactory;
+import com.berryworks.edireader.EDIReaderPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.Attributes;
@@ -43,6 +43,7 @@ public class Splitter {
     private final InputSource inputSource;
     private EDIReader parser;
     private final FileSequenceNameGenerator handlerFactory;
+    private final EDIReaderPool readerPool = new EDIReaderPool();
 
 
     public Splitter(Reader inputReader, String outputFileNamePattern) {
@@ -56,15 +57,17 @@ public class Splitter {
 
     public void split(InputSource inputSource) throws IOException, SAXException {
         char[] leftOver = null;
-        while ((parser = EDIReaderFactory.createEDIReader(inputSource, leftOver)) != null) {
+        while ((parser = readerPool.acquire(inputSource, leftOver)) != null) {
             String outputFilename = handlerFactory.generateName();
             logger.info("EDI interchange written to {}", outputFilename);
             parser.setContentHandler(new ScanningHandler());
             try (Writer writer = new FileWriter(outputFilename)) {
                 parser.setCopyWriter(writer);
                 parser.parse(inputSource);
+                leftOver = parser.getTokenizer().getBuffered();
+            } finally {
+                readerPool.release(parser);
             }
-            leftOver = parser.getTokenizer().getBuffered();
         }
     }
 
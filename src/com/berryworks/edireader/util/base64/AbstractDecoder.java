@@ -22,18 +22,25 @@ package com.berryworks.edireader.util.base64;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 
 /**
  * Decodes a sequence of base-64 encoded bytes into an
  * 8-bit byte sequence representing the original data.
+ * <p>
+ * The decoding of complete sequences of bytes is done a block at a time by Base64Codec,
+ * with each resulting byte passed to emit(). The byte-at-a-time consume() method remains
+ * available for decoding bytes as they arrive.
  */
 public abstract class AbstractDecoder extends AbstractEncoderDecoder {
 
     private final DecoderFrontEnd frontEnd;
     private final DecoderBackEnd backEnd;
 
-    private static final int BUFFER_SIZE = 1000;
+    private static final int BUFFER_SIZE = 4 * 1024;
+    private final ByteBuffer block = ByteBuffer.allocate(Base64Codec.maxDecodedLength(BUFFER_SIZE));
 
     public AbstractDecoder() {
         frontEnd = new DecoderFrontEnd() {
@@ -76,16 +83,28 @@ public abstract class AbstractDecoder extends AbstractEncoderDecoder {
     public void decode(InputStream inputStream) throws IOException {
         reset();
         byte[] buffer = new byte[BUFFER_SIZE];
+        CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
 
         while (true) {
-            int n = inputStream.read(buffer);
+            int n = inputStream.read(buffer, 0, Math.min(buffer.length, chars.remaining()));
 
             if (n < 0) {
-                endOfData();
+                ((Buffer) chars).flip();
+                decodeBlocks(chars, true);
                 break;
-            } else if (n > 0)
+            } else if (n > 0) {
                 for (int i = 0; i < n; i++)
-                    consume(buffer[i]);
+                    chars.put(asChar(buffer[i]));
+                ((Buffer) chars).flip();
+                decodeBlocks(chars, false);
+                chars.compact();
+                if (!chars.hasRemaining()) {
+                    // What remains is an incomplete group among many chars that are ignored
+                    CharBuffer larger = CharBuffer.allocate(2 * chars.capacity());
+                    ((Buffer) chars).flip();
+                    chars = larger.put(chars);
+                }
+            }
         }
     }
 
@@ -97,8 +116,10 @@ public abstract class AbstractDecoder extends AbstractEncoderDecoder {
      */
     public void decode(byte[] bytes) {
         reset();
-        for (byte aByte : bytes) consume(aByte);
-        endOfData();
+        char[] chars = new char[bytes.length];
+        for (int i = 0; i < bytes.length; i++)
+            chars[i] = asChar(bytes[i]);
+        decodeBlocks(CharBuffer.wrap(chars), true);
     }
 
     public void decode(String s) {
@@ -106,6 +127,30 @@ public abstract class AbstractDecoder extends AbstractEncoderDecoder {
         decode(charset.encode(charBuffer).array());
     }
 
+    /**
+     * Decodes the chars in a buffer with Base64Codec, emitting the resulting bytes.
+     * Unless endOfInput is true, an incomplete group of chars is left in the buffer.
+     */
+    private void decodeBlocks(CharBuffer src, boolean endOfInput) {
+        while (true) {
+            int before = src.position();
+            ((Buffer) block).clear();
+            Base64Codec.decode(src, block, endOfInput);
+            ((Buffer) block).flip();
+            while (block.hasRemaining())
+                emit(block.get());
+            if (src.position() == before || !src.hasRemaining())
+                break;
+        }
+    }
+
+    /**
+     * Only the low-order 7 bits of each encoded byte are significant.
+     */
+    private static char asChar(byte b) {
+        return (char) (b & 127);
+    }
+
     @Override
     protected void reset() {
         frontEnd.reset();
@@ -22,6 +22,8 @@ package com.berryworks.edireader.util.base64;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 
 /**
@@ -29,13 +31,18 @@ import java.nio.CharBuffer;
  * In the encoded form, each byte contains only 6 bits of data from the
  * original data stream. Therefore there is an 3-to-4 expansion factor in the
  * expansion process.
+ * <p>
+ * The encoding of complete sequences of bytes is done a block at a time by Base64Codec,
+ * with each resulting byte passed to emit(). The byte-at-a-time consume() method remains
+ * available for encoding bytes as they arrive.
  */
 public abstract class AbstractEncoder extends AbstractEncoderDecoder {
 
     private final EncoderFrontEnd frontEnd;
     private final EncoderBackEnd backEnd;
 
-    private static final int BUFFER_SIZE = 1000;
+    private static final int BUFFER_SIZE = 3 * 1024;
+    private final CharBuffer block = CharBuffer.allocate(Base64Codec.encodedLength(BUFFER_SIZE));
 
     protected AbstractEncoder() {
         frontEnd = new EncoderFrontEnd() {
@@ -77,17 +84,21 @@ public abstract class AbstractEncoder extends AbstractEncoderDecoder {
      */
     public void encode(InputStream inputStream) throws IOException {
         reset();
-        byte[] buffer = new byte[BUFFER_SIZE];
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
 
         while (true) {
-            int n = inputStream.read(buffer);
+            int n = inputStream.read(buffer.array(), buffer.position(), buffer.remaining());
 
             if (n < 0) {
-                endOfData();
+                ((Buffer) buffer).flip();
+                encodeBlocks(buffer, true);
                 break;
-            } else if (n > 0)
-                for (int i = 0; i < n; i++)
-                    consume(buffer[i]);
+            } else if (n > 0) {
+                ((Buffer) buffer).position(buffer.position() + n);
+                ((Buffer) buffer).flip();
+                encodeBlocks(buffer, false);
+                buffer.compact();
+            }
         }
     }
 
@@ -100,8 +111,7 @@ public abstract class AbstractEncoder extends AbstractEncoderDecoder {
      */
     public void encode(byte[] bytes) {
         reset();
-        for (byte aByte : bytes) consume(aByte);
-        endOfData();
+        encodeBlocks(ByteBuffer.wrap(bytes), true);
     }
 
     public void encode(String s) {
@@ -109,6 +119,20 @@ public abstract class AbstractEncoder extends AbstractEncoderDecoder {
         encode(charset.encode(charBuffer).array());
     }
 
+    /**
+     * Encodes the bytes in a buffer with Base64Codec, emitting the resulting bytes.
+     * Unless endOfInput is true, an incomplete group of bytes is left in the buffer.
+     */
+    private void encodeBlocks(ByteBuffer src, boolean endOfInput) {
+        do {
+            ((Buffer) block).clear();
+            Base64Codec.encode(src, block, endOfInput);
+            ((Buffer) block).flip();
+            while (block.hasRemaining())
+                emit((byte) block.get());
+        } while (src.remaining() >= 3 || (endOfInput && src.hasRemaining()));
+    }
+
     @Override
     protected void reset() {
         frontEnd.reset();
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2005-2015 by BerryWorks Software, LLC. All rights reserved.
+ *
+ * This file is part of EDIReader. You may obtain a license for its use directly from
+ * BerryWorks Software, and you may also choose to use this software under the terms of the
+ * GPL version 3. Other products in the EDIReader software suite are available only by licensing
+ * with BerryWorks. Only those files bearing the GPL statement below are available under the GPL.
+ *
+ * EDIReader is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * EDIReader is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with EDIReader.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.berryworks.edireader.util.base64;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * Encodes and decodes base-64 data a block at a time.
+ * <p>
+ * Each group of 3 bytes is encoded as 4 chars, and each group of 4 chars is decoded
+ * as 3 bytes, in loops over the backing arrays of the buffers when they have them.
+ * As with a java.nio.charset.CharsetEncoder, the methods consume as much of the source
+ * buffer as will fit in the destination buffer, and leave the position of each buffer
+ * just beyond what was consumed or produced. Unless the end of input is indicated, an
+ * incomplete group is left in the source buffer to be completed by more input.
+ * <p>
+ * When decoding, chars that are not part of the base-64 alphabet, including the
+ * "=" used as padding and any whitespace, are ignored, as they are by AbstractDecoder.
+ */
+public abstract class Base64Codec {
+
+    private static final char[] ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+    private static final char PAD = '=';
+    private static final byte[] SEXTETS = new byte[128];
+
+    static {
+        Arrays.fill(SEXTETS, (byte) -1);
+        for (int i = 0; i < ALPHABET.length; i++)
+            SEXTETS[ALPHABET[i]] = (byte) i;
+    }
+
+    /**
+     * Returns the number of chars in the base-64 encoding of a given number of bytes.
+     *
+     * @param n number of bytes
+     * @return number of chars
+     */
+    public static int encodedLength(int n) {
+        return 4 * ((n + 2) / 3);
+    }
+
+    /**
+     * Returns the greatest number of bytes that a given number of base-64 chars can represent.
+     *
+     * @param n number of chars
+     * @return number of bytes
+     */
+    public static int maxDecodedLength(int n) {
+        return 3 * ((n + 3) / 4);
+    }
+
+    /**
+     * Encodes bytes from the source buffer into base-64 chars in the destination buffer.
+     *
+     * @param src        bytes to be encoded
+     * @param dst        receives the base-64 chars
+     * @param endOfInput true if there are no bytes to follow those remaining in src,
+     *                   so that a final incomplete group is to be encoded with padding
+     */
+    public static void encode(ByteBuffer src, CharBuffer dst, boolean endOfInput) {
+        int groups = Math.min(src.remaining() / 3, dst.remaining() / 4);
+        if (src.hasArray() && dst.hasArray()) {
+            byte[] in = src.array();
+            char[] out = dst.array();
+            int i = src.arrayOffset() + src.position();
+            int o = dst.arrayOffset() + dst.position();
+            for (int end = i + 3 * groups; i < end; i += 3) {
+                int group = (in[i] & 0xFF) << 16 | (in[i + 1] & 0xFF) << 8 | (in[i + 2] & 0xFF);
+                out[o++] = ALPHABET[group >>> 18];
+                out[o++] = ALPHABET[group >>> 12 & 63];
+                out[o++] = ALPHABET[group >>> 6 & 63];
+                out[o++] = ALPHABET[group & 63];
+            }
+            ((Buffer) src).position(src.position() + 3 * groups);
+            ((Buffer) dst).position(dst.position() + 4 * groups);
+        } else {
+            for (int g = 0; g < groups; g++) {
+                int group = (src.get() & 0xFF) << 16 | (src.get() & 0xFF) << 8 | (src.get() & 0xFF);
+                dst.put(ALPHABET[group >>> 18]);
+                dst.put(ALPHABET[group >>> 12 & 63]);
+                dst.put(ALPHABET[group >>> 6 & 63]);
+                dst.put(ALPHABET[group & 63]);
+            }
+        }
+
+        int remaining = src.remaining();
+        if (endOfInput && remaining > 0 && remaining < 3 && dst.remaining() >= 4) {
+            int b0 = src.get() & 0xFF;
+            int b1 = remaining > 1 ? src.get() & 0xFF : 0;
+            dst.put(ALPHABET[b0 >>> 2]);
+            dst.put(ALPHABET[(b0 & 3) << 4 | b1 >>> 4]);
+            dst.put(remaining > 1 ? ALPHABET[(b1 & 15) << 2] : PAD);
+            dst.put(PAD);
+        }
+    }
+
+    /**
+     * Decodes base-64 chars from the source buffer into bytes in the destination buffer.
+     *
+     * @param src        base-64 chars to be decoded
+     * @param dst        receives the decoded bytes
+     * @param endOfInput true if there are no chars to follow those remaining in src,
+     *                   so that a final incomplete group is to be decoded as far as possible
+     */
+    public static void decode(CharBuffer src, ByteBuffer dst, boolean endOfInput) {
+        if (src.hasArray() && dst.hasArray()) {
+            char[] in = src.array();
+            byte[] out = dst.array();
+            int base = src.arrayOffset();
+            int i = base + src.position();
+            int end = base + src.limit();
+            int o = dst.arrayOffset() + dst.position();
+            int outEnd = dst.arrayOffset() + dst.limit();
+
+            while (o + 3 <= outEnd) {
+                // The common case of 4 consecutive chars of the alphabet
+                if (i + 4 <= end) {
+                    int s0 = sextet(in[i]), s1 = sextet(in[i + 1]), s2 = sextet(in[i + 2]), s3 = sextet(in[i + 3]);
+                    if ((s0 | s1 | s2 | s3) >= 0) {
+                        int group = s0 << 18 | s1 << 12 | s2 << 6 | s3;
+                        out[o++] = (byte) (group >>> 16);
+                        out[o++] = (byte) (group >>> 8);
+                        out[o++] = (byte) group;
+                        i += 4;
+                        continue;
+                    }
+                }
+                // Otherwise gather the group one char at a time, skipping chars outside the alphabet
+                int group = 0, count = 0, j = i;
+                for (; j < end && count < 4; j++) {
+                    int s = sextet(in[j]);
+                    if (s >= 0) {
+                        group = group << 6 | s;
+                        count++;
+                    }
+                }
+                if (count == 4) {
+                    out[o++] = (byte) (group >>> 16);
+                    out[o++] = (byte) (group >>> 8);
+                    out[o++] = (byte) group;
+                    i = j;
+                    continue;
+                }
+                if (endOfInput) {
+                    o = finish(group, count, out, o);
+                    i = j;
+                }
+                break;
+            }
+            ((Buffer) src).position(i - base);
+            ((Buffer) dst).position(o - dst.arrayOffset());
+        } else {
+            while (dst.remaining() >= 3) {
+                int mark = src.position();
+                int group = 0, count = 0;
+                while (src.hasRemaining() && count < 4) {
+                    int s = sextet(src.get());
+                    if (s >= 0) {
+                        group = group << 6 | s;
+                        count++;
+                    }
+                }
+                if (count == 4) {
+                    dst.put((byte) (group >>> 16));
+                    dst.put((byte) (group >>> 8));
+                    dst.put((byte) group);
+                    continue;
+                }
+                if (endOfInput) {
+                    byte[] tail = new byte[2];
+                    int n = finish(group, count, tail, 0);
+                    dst.put(tail, 0, n);
+                } else {
+                    ((Buffer) src).position(mark);
+                }
+                break;
+            }
+        }
+    }
+
+    /**
+     * Decodes an incomplete final group of fewer than 4 sextets, returning the new output position.
+     */
+    private static int finish(int group, int count, byte[] out, int o) {
+        switch (count) {
+            case 2:
+                out[o++] = (byte) (group >>> 4);
+                break;
+            case 3:
+                out[o++] = (byte) (group >>> 10);
+                out[o++] = (byte) (group >>> 2);
+                break;
+            default:
+                break;
+        }
+        return o;
+    }
+
+    private static int sextet(char c) {
+        return c < 128 ? SEXTETS[c] : -1;
+    }
+}
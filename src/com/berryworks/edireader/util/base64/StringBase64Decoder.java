@@ -23,8 +23,6 @@ package com.berryworks.edireader.util.base64;
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
-import java.nio.charset.CharsetEncoder;
-import java.nio.charset.CoderResult;
 
 /**
  * Provides for base-64 decoding of Java Strings.
@@ -55,31 +53,20 @@ public class StringBase64Decoder extends AbstractDecoder {
      * @return decoded text
      */
     public String decodeAsString(String encodedText) {
-        CharBuffer charBuffer = CharBuffer.wrap(encodedText);
-
-        // Allocate a modest sized non-direct ByteBuffer to receive the
-        // bytes as they are encoded from the String
-        ByteBuffer base64ByteBuffer = ByteBuffer.allocate(100);
-
-        // Use the encoder repeatedly until all of the chars have been encoded as bytes
-        // and presented as input for base 64 encoding.
-        CharsetEncoder encoder = charset.newEncoder();
-        while (true) {
-            CoderResult coderResult = encoder.encode(charBuffer, base64ByteBuffer, true);
-            if (coderResult.isError()) {
+        char[] chars = new char[encodedText.length()];
+        for (int i = 0; i < chars.length; i++) {
+            char c = encodedText.charAt(i);
+            if (c > 0xFF) {
                 throw new RuntimeException("Unrecoverable failure in Base64 encoding");
             }
-            ((Buffer) base64ByteBuffer).flip();
-            while (base64ByteBuffer.hasRemaining()) {
-                consume(base64ByteBuffer.get());
-            }
-            if (coderResult.isUnderflow()) {
-                break;
-            }
-            ((Buffer) base64ByteBuffer).clear();
+            // Only the low-order 7 bits are significant, as with AbstractDecoder
+            chars[i] = (char) (c & 127);
         }
-        endOfData();
-        feedStringBuffer();
+
+        ByteBuffer decodedBytes = ByteBuffer.allocate(Base64Codec.maxDecodedLength(chars.length));
+        Base64Codec.decode(CharBuffer.wrap(chars), decodedBytes, true);
+        ((Buffer) decodedBytes).flip();
+        stringBuffer.append(charset.decode(decodedBytes));
 
         return stringBuffer.toString();
     }
@@ -0,0 +1,507 @@
+/*
+ * Copyright 2005-2019 by BerryWorks Software, LLC. All rights reserved.
+ *
+ * This file is part of EDIReader. You may obtain a license for its use directly from
+ * BerryWorks Software, and you may also choose to use this software under the terms of the
+ * GPL version 3. Other products in the EDIReader software suite are available only by licensing
+ * with BerryWorks. Only those files bearing the GPL statement below are available under the GPL.
+ *
+ * EDIReader is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * EDIReader is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with EDIReader.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.berryworks.edireader.util.sax;
+
+import com.berryworks.edireader.DefaultXMLTags;
+import com.berryworks.edireader.XMLTags;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * This implementation of a SAX ContentHandler writes a JSON representation
+ * of the SAX calls it receives directly to a Writer, as they are received.
+ * <p>
+ * It is intended for the SAX calls generated by EDIReader, allowing parsed EDI to be
+ * passed to JSON-based consumers without first producing XML. Each XML element becomes
+ * a JSON object with a "name" member for the element name, a string member for each
+ * attribute, a "value" member for any character data, and a "children" array for any
+ * nested elements. For example, the segment
+ * <br><code>
+ * &lt;segment Id="BGM"&gt;&lt;element Id="BGM01"&gt;220&lt;/element&gt;&lt;/segment&gt;
+ * </code><br>
+ * is written as
+ * <br><code>
+ * {"name":"segment","Id":"BGM","children":[{"name":"element","Id":"BGM01","value":"220"}]}
+ * </code><br>
+ * <p>
+ * In compact mode, the interchange, group, and transaction elements are written in the same
+ * way, but the content of each transaction is a "segments" array in which loops are
+ * flattened and each segment is an array of strings: the segment Id followed by the value of
+ * each element in its position, with "" for an omitted element. A composite element is an
+ * array of its sub-element values, positioned by their sequence, and a repeated element is
+ * an array with one array for each repetition. The BGM segment above is written as
+ * <br><code>
+ * ["BGM","220"]
+ * </code><br>
+ * <p>
+ * Only the element being written is held in memory, so that memory use does not depend on the
+ * size of the EDI input. Output is buffered and the Writer is flushed, but not closed, at the
+ * end of the document, which is followed by a line separator.
+ */
+public class JsonWriterHandler extends DefaultHandler {
+
+    private static final String SEPARATOR = System.getProperty("line.separator");
+    private static final String NAME = "name";
+    private static final String VALUE = "value";
+    private static final String CHILDREN = "children";
+    private static final String SEGMENTS = "segments";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Writer writer;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int count;
+    private XMLTags xmlTags = DefaultXMLTags.getInstance();
+    private boolean compact;
+
+    // For each open element, whether its children array has been started and whether its
+    // children are segments written compactly
+    private boolean[] childrenStarted = new boolean[16];
+    private boolean[] segmentContainer = new boolean[16];
+    private int depth;
+    private boolean stringOpen;
+
+    // State of the segment being written in compact mode
+    private boolean inSegment;
+    private String segmentId;
+    private int segmentPosition;
+    private boolean inElement;
+    private boolean composite;
+    private int subElementPosition;
+    private final StringBuilder pending = new StringBuilder();
+    private int pendingPosition;
+    private boolean pendingSimple;
+    private int pendingRepetitions;
+    private boolean capturing;
+
+    public JsonWriterHandler(Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Writes the JSON to an OutputStream in UTF-8.
+     *
+     * @param outputStream receives the JSON
+     */
+    public JsonWriterHandler(OutputStream outputStream) {
+        this(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+    }
+
+    public boolean isCompact() {
+        return compact;
+    }
+
+    /**
+     * Selects the compact representation, in which each segment is an array of element values.
+     *
+     * @param compact true to write each transaction as an array of segments
+     */
+    public void setCompact(boolean compact) {
+        this.compact = compact;
+    }
+
+    public XMLTags getXMLTags() {
+        return xmlTags;
+    }
+
+    /**
+     * Sets the XMLTags used by the parser, so that segments, loops, and elements can be
+     * recognized in compact mode. DefaultXMLTags are assumed if this is not called.
+     *
+     * @param xmlTags XMLTags used by the parser
+     */
+    public void setXMLTags(XMLTags xmlTags) {
+        this.xmlTags = xmlTags;
+    }
+
+    @Override
+    public void startDocument() {
+        depth = 0;
+        stringOpen = false;
+        inSegment = false;
+        inElement = false;
+        capturing = false;
+    }
+
+    @Override
+    public void endDocument() throws SAXException {
+        closeString();
+        write(SEPARATOR);
+        flush();
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+        String name = isPresent(qName) ? qName : localName;
+        if (compact) {
+            if (inSegment) {
+                startSegmentContent(name, attributes);
+                return;
+            }
+            if (depth > 0 && segmentContainer[depth - 1]) {
+                if (name.equals(xmlTags.getLoopTag()))
+                    return;
+                if (name.equals(xmlTags.getSegTag())) {
+                    startSegment(attributes);
+                    return;
+                }
+            }
+        }
+
+        startChild();
+        write('{');
+        writeString(NAME);
+        write(':');
+        writeString(name);
+        if (attributes != null) {
+            for (int i = 0; i < attributes.getLength(); i++) {
+                String attributeName = attributes.getQName(i);
+                write(',');
+                writeString(isPresent(attributeName) ? attributeName : attributes.getLocalName(i));
+                write(':');
+                writeString(attributes.getValue(i));
+            }
+        }
+
+        if (depth == childrenStarted.length) {
+            childrenStarted = Arrays.copyOf(childrenStarted, 2 * depth);
+            segmentContainer = Arrays.copyOf(segmentContainer, 2 * depth);
+        }
+        childrenStarted[depth] = false;
+        segmentContainer[depth] = compact && name.equals(xmlTags.getDocumentTag());
+        depth++;
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        if (compact) {
+            String name = isPresent(qName) ? qName : localName;
+            if (inSegment) {
+                endSegmentContent(name);
+                return;
+            }
+            if (depth > 0 && segmentContainer[depth - 1] && name.equals(xmlTags.getLoopTag()))
+                return;
+        }
+
+        closeString();
+        depth--;
+        if (childrenStarted[depth])
+            write(']');
+        write('}');
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) throws SAXException {
+        if (length == 0)
+            return;
+        if (inSegment) {
+            if (inElement) {
+                capturing = true;
+                writeEscaped(ch, start, start + length);
+                capturing = false;
+            }
+            return;
+        }
+        if (depth == 0)
+            return;
+
+        if (!stringOpen) {
+            if (childrenStarted[depth - 1]) {
+                write(',');
+            } else {
+                write(',');
+                writeString(VALUE);
+                write(':');
+            }
+            write('"');
+            stringOpen = true;
+        }
+        writeEscaped(ch, start, start + length);
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+        characters(ch, start, length);
+    }
+
+    /**
+     * Writes any buffered output to the Writer and flushes it.
+     *
+     * @throws SAXException if an IOException occurs
+     */
+    public void flush() throws SAXException {
+        drain();
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    /**
+     * Prepares for a nested element to be written as the next member of the children
+     * array of the enclosing element, beginning the array if necessary.
+     */
+    private void startChild() throws SAXException {
+        closeString();
+        if (depth == 0)
+            return;
+        if (childrenStarted[depth - 1]) {
+            write(',');
+        } else {
+            write(',');
+            writeString(segmentContainer[depth - 1] ? SEGMENTS : CHILDREN);
+            write(':');
+            write('[');
+            childrenStarted[depth - 1] = true;
+        }
+    }
+
+    private void startSegment(Attributes attributes) throws SAXException {
+        startChild();
+        segmentId = attributes == null ? null : attributes.getValue(xmlTags.getIdAttribute());
+        if (segmentId == null)
+            segmentId = "";
+        write('[');
+        writeString(segmentId);
+        inSegment = true;
+        segmentPosition = 0;
+        pendingPosition = 0;
+        pendingRepetitions = 0;
+        pending.setLength(0);
+    }
+
+    private void endSegment() throws SAXException {
+        writePending();
+        write(']');
+        inSegment = false;
+    }
+
+    private void startSegmentContent(String name, Attributes attributes) throws SAXException {
+        if (inElement) {
+            if (composite && name.equals(xmlTags.getSubElementTag())) {
+                int sequence = parsePosition(attributes == null ? null : attributes.getValue(xmlTags.getSubElementSequence()), "");
+                if (sequence <= subElementPosition)
+                    sequence = subElementPosition + 1;
+                while (subElementPosition < sequence - 1) {
+                    pending.append(subElementPosition++ == 0 ? "\"\"" : ",\"\"");
+                }
+                pending.append(subElementPosition++ == 0 ? "\"" : ",\"");
+            }
+            return;
+        }
+        if (!name.equals(xmlTags.getElementTag()))
+            return;
+
+        String id = attributes == null ? null : attributes.getValue(xmlTags.getIdAttribute());
+        int position = parsePosition(id, segmentId);
+        if (position <= 0)
+            position = segmentPosition + 1;
+        composite = attributes != null && "yes".equals(attributes.getValue(xmlTags.getCompositeIndicator()));
+
+        if (position == pendingPosition && pendingRepetitions > 0) {
+            // A repetition of the element just written
+            if (pendingRepetitions == 1) {
+                if (pendingSimple)
+                    pending.insert(0, '[').append(']');
+                pending.insert(0, '[');
+            }
+            pending.append(',');
+            if (!composite)
+                pending.append('[');
+        } else {
+            writePending();
+            pendingPosition = position;
+            pendingSimple = !composite;
+        }
+        pendingRepetitions++;
+
+        if (composite) {
+            pending.append('[');
+            subElementPosition = 0;
+        } else {
+            pending.append('"');
+        }
+        inElement = true;
+    }
+
+    private void endSegmentContent(String name) throws SAXException {
+        if (!inElement) {
+            if (name.equals(xmlTags.getSegTag()))
+                endSegment();
+            return;
+        }
+        if (composite) {
+            if (name.equals(xmlTags.getSubElementTag())) {
+                pending.append('"');
+                return;
+            }
+            pending.append(']');
+        } else {
+            pending.append('"');
+            if (pendingRepetitions > 1)
+                pending.append(']');
+        }
+        inElement = false;
+    }
+
+    /**
+     * Writes the element held in the pending buffer, preceded by "" for any positions
+     * skipped since the previous element of the segment.
+     */
+    private void writePending() throws SAXException {
+        if (pendingRepetitions == 0)
+            return;
+        while (segmentPosition < pendingPosition - 1) {
+            write(',');
+            write('"');
+            write('"');
+            segmentPosition++;
+        }
+        write(',');
+        for (int i = 0, n = pending.length(); i < n; i++)
+            write(pending.charAt(i));
+        if (pendingRepetitions > 1)
+            write(']');
+        segmentPosition = pendingPosition;
+        pending.setLength(0);
+        pendingRepetitions = 0;
+    }
+
+    /**
+     * Returns the position indicated by the digits following a prefix, as in BGM01
+     * following BGM, or 0 if the value does not consist of the prefix followed by digits.
+     */
+    private static int parsePosition(String value, String prefix) {
+        if (value == null || !value.startsWith(prefix) || value.length() == prefix.length())
+            return 0;
+        int result = 0;
+        for (int i = prefix.length(); i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9' || result > 100000)
+                return 0;
+            result = 10 * result + (c - '0');
+        }
+        return result;
+    }
+
+    private void closeString() throws SAXException {
+        if (stringOpen) {
+            write('"');
+            stringOpen = false;
+        }
+    }
+
+    private void writeString(String s) throws SAXException {
+        write('"');
+        if (s != null) {
+            for (int i = 0, n = s.length(); i < n; i++)
+                writeEscaped(s.charAt(i));
+        }
+        write('"');
+    }
+
+    private void writeEscaped(char[] ch, int start, int end) throws SAXException {
+        for (int i = start; i < end; i++)
+            writeEscaped(ch[i]);
+    }
+
+    private void writeEscaped(char c) throws SAXException {
+        switch (c) {
+            case '"':
+            case '\\':
+                write('\\');
+                write(c);
+                break;
+            case '\n':
+                write('\\');
+                write('n');
+                break;
+            case '\r':
+                write('\\');
+                write('r');
+                break;
+            case '\t':
+                write('\\');
+                write('t');
+                break;
+            case '\b':
+                write('\\');
+                write('b');
+                break;
+            case '\f':
+                write('\\');
+                write('f');
+                break;
+            default:
+                if (c < 0x20 || Character.isSurrogate(c)) {
+                    // Surrogates are escaped individually, so that output is valid even for an unpaired surrogate
+                    write('\\');
+                    write('u');
+                    write(HEX[c >> 12]);
+                    write(HEX[(c >> 8) & 0xF]);
+                    write(HEX[(c >> 4) & 0xF]);
+                    write(HEX[c & 0xF]);
+                } else {
+                    write(c);
+                }
+        }
+    }
+
+    private void write(String s) throws SAXException {
+        for (int i = 0, n = s.length(); i < n; i++)
+            write(s.charAt(i));
+    }
+
+    private void write(char c) throws SAXException {
+        if (capturing) {
+            pending.append(c);
+            return;
+        }
+        if (count == BUFFER_SIZE)
+            drain();
+        buffer[count++] = c;
+    }
+
+    private void drain() throws SAXException {
+        if (count > 0) {
+            try {
+                writer.write(buffer, 0, count);
+            } catch (IOException e) {
+                throw new SAXException(e);
+            }
+            count = 0;
+        }
+    }
+
+    private static boolean isPresent(String s) {
+        return s != null && s.length() > 0;
+    }
+}
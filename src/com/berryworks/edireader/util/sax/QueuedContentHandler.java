@@ -27,7 +27,7 @@ import org.xml.sax.ContentHandler;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
-import java.util.LinkedList;
+import java.util.NoSuchElementException;
 
 import static com.berryworks.edireader.util.FixedLength.isPresent;
 
@@ -36,17 +36,39 @@ import static com.berryworks.edireader.util.FixedLength.isPresent;
  * to a delegate ContentHandler with the added value of buffering these events
  * in a queue so that items in the queue may be modified as needed
  * before they are sent to the delegate.
+ * <p>
+ * The queue is a ring of preallocated slots, one per startElement or endElement,
+ * which are reused as events are passed to the delegate. The character data of the
+ * queued elements is held in a single char array shared by all of the slots, and
+ * is passed to the delegate directly from that array. Therefore the Attributes and
+ * char[] passed to the delegate are valid only for the duration of the call, as
+ * provided by the SAX conventions.
  */
 public class QueuedContentHandler extends DefaultHandler {
+
+    /**
+     * The queue capacity used unless a PluginController calls for another.
+     */
+    public static final int DEFAULT_CAPACITY = 10;
+
+    private static final int INITIAL_ARENA_SIZE = 1024;
+
     private final ContentHandler wrappedHandler;
-    private final LinkedList<QueuedItem> queue = new LinkedList<>();
-    private final int queueSizeLimit;
+    private final Slot[] slots;
     private final SourcePosition sourcePosition;
+    private int head;
+    private int size;
+    private char[] arena = new char[INITIAL_ARENA_SIZE];
+    private int arenaEnd;
 
     public QueuedContentHandler(ContentHandler handler, int queueSizeLimit, SourcePosition sourcePosition) {
+        if (queueSizeLimit < 1)
+            throw new IllegalArgumentException("Queue size limit must be at least 1");
         wrappedHandler = handler;
-        this.queueSizeLimit = queueSizeLimit;
         this.sourcePosition = sourcePosition;
+        slots = new Slot[queueSizeLimit];
+        for (int i = 0; i < slots.length; i++)
+            slots[i] = new Slot();
     }
 
     @Override
@@ -61,8 +83,8 @@ public class QueuedContentHandler extends DefaultHandler {
     }
 
     public void drainQueue() throws SAXException {
-        while (queue.size() > 0) {
-            queue.removeFirst().process(wrappedHandler);
+        while (size > 0) {
+            processFirst();
         }
         if (wrappedHandler instanceof SourcePosition) {
             ((SourcePosition) wrappedHandler).setCharCounts(-1, -1);
@@ -72,42 +94,143 @@ public class QueuedContentHandler extends DefaultHandler {
 
     @Override
     public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
-        limitSize();
-        final int charCount = sourcePosition == null ? 0 : sourcePosition.getCharCount();
-        final int segmentCharCount = sourcePosition == null ? 0 : sourcePosition.getSegmentCharCount();
-        queue.add(new QueuedStartItem(uri, localName, qName, attributes, charCount, segmentCharCount));
+        Slot slot = addSlot(uri, localName, qName, true);
+        if (attributes != null) {
+            for (int i = 0; i < attributes.getLength(); i++) {
+                slot.attributes.addAttribute(
+                        attributes.getURI(i),
+                        attributes.getLocalName(i),
+                        attributes.getQName(i),
+                        attributes.getType(i),
+                        attributes.getValue(i));
+            }
+        }
     }
 
     @Override
     public void endElement(String uri, String localName, String qName) throws SAXException {
+        addSlot(uri, localName, qName, false);
+    }
+
+    private Slot addSlot(String uri, String localName, String qName, boolean start) throws SAXException {
         limitSize();
-        final int charCount = sourcePosition == null ? 0 : sourcePosition.getCharCount();
-        final int segmentCharCount = sourcePosition == null ? 0 : sourcePosition.getSegmentCharCount();
-        queue.add(new QueuedEndItem(uri, localName, qName, charCount, segmentCharCount));
+        Slot slot = slots[(head + size++) % slots.length];
+        slot.start = start;
+        slot.uri = uri;
+        slot.localName = localName;
+        slot.qName = qName;
+        slot.charCount = sourcePosition == null ? 0 : sourcePosition.getCharCount();
+        slot.segmentCharCount = sourcePosition == null ? 0 : sourcePosition.getSegmentCharCount();
+        slot.attributes.clear();
+        slot.hasData = false;
+        slot.dataStart = arenaEnd;
+        slot.dataLength = 0;
+        return slot;
     }
 
     private void limitSize() throws SAXException {
-        while (queue.size() >= queueSizeLimit) {
-            final QueuedItem queuedItem = queue.removeFirst();
-            queuedItem.process(wrappedHandler);
+        while (size >= slots.length) {
+            processFirst();
         }
     }
 
     @Override
     public void characters(char[] chars, int start, int length) throws SAXException {
-        characters(new String(chars, start, length));
+        Slot slot = getLastDataSlot();
+        ensureArenaSpace(length);
+        System.arraycopy(chars, start, arena, arenaEnd, length);
+        arenaEnd += length;
+        slot.dataLength += length;
+        slot.hasData = true;
     }
 
     public void characters(String data) {
-        queue.getLast().addData(data);
+        Slot slot = getLastDataSlot();
+        int length = data.length();
+        ensureArenaSpace(length);
+        data.getChars(0, length, arena, arenaEnd);
+        arenaEnd += length;
+        slot.dataLength += length;
+        slot.hasData = true;
+    }
+
+    private Slot getLastDataSlot() {
+        if (size == 0)
+            throw new NoSuchElementException();
+        Slot slot = slots[(head + size - 1) % slots.length];
+        if (!slot.start)
+            throw new RuntimeException("addData() should not be called on an end item");
+        return slot;
+    }
+
+    /**
+     * Makes room at the end of the arena for more data of the last slot, whose data
+     * is always at the end of the arena. The data of slots that have been passed to
+     * the delegate is discarded, and the arena is enlarged only if that is not enough.
+     */
+    private void ensureArenaSpace(int length) {
+        if (arenaEnd + length <= arena.length)
+            return;
+
+        int liveStart = arenaEnd;
+        for (int i = 0; i < size; i++) {
+            Slot slot = slots[(head + i) % slots.length];
+            if (slot.start && slot.dataStart < liveStart)
+                liveStart = slot.dataStart;
+        }
+        int liveLength = arenaEnd - liveStart;
+        char[] target = arena;
+        if (liveLength + length > arena.length)
+            target = new char[Math.max(2 * arena.length, liveLength + length)];
+        System.arraycopy(arena, liveStart, target, 0, liveLength);
+        arena = target;
+        arenaEnd = liveLength;
+        for (int i = 0; i < size; i++)
+            slots[(head + i) % slots.length].dataStart -= liveStart;
+    }
+
+    private void processFirst() throws SAXException {
+        Slot slot = slots[head];
+        head = (head + 1) % slots.length;
+        size--;
+        if (size == 0)
+            arenaEnd = 0;
+
+        if (slot.start) {
+            if (slot.localName == null)
+                throw new RuntimeException("null name");
+            if (slot.qName == null)
+                throw new RuntimeException("null qname");
+            if (slot.uri == null)
+                throw new RuntimeException("null uri");
+        }
+        if (wrappedHandler instanceof SourcePosition) {
+            ((SourcePosition) wrappedHandler).setCharCounts(slot.charCount, slot.segmentCharCount);
+        }
+        if (!slot.start) {
+            wrappedHandler.endElement(slot.uri, slot.localName, slot.qName);
+            return;
+        }
+
+        if (wrappedHandler instanceof StartWithDataContentHandler) {
+            // If the handler is prepared to accept a startElement with the data at the same time, then do that.
+            String data = slot.hasData ? new String(arena, slot.dataStart, slot.dataLength) : null;
+            ((StartWithDataContentHandler) wrappedHandler).startElement(
+                    slot.uri, slot.localName, slot.qName, slot.attributes, data);
+        } else {
+            // Otherwise, we have to pass the data separately.
+            wrappedHandler.startElement(slot.uri, slot.localName, slot.qName, slot.attributes);
+            if (slot.hasData) {
+                wrappedHandler.characters(arena, slot.dataStart, slot.dataLength);
+            }
+        }
     }
 
     public String getAttribute(String tag, String attributeName) {
-        for (int i = queue.size() - 1; i >= 0; i--) {
-            QueuedItem queuedItem = queue.get(i);
-            if (tag.equals(queuedItem.getLocalName())) {
-                EDIAttributes attributes = queuedItem.getAttributes();
-                return attributes.getValue(attributeName);
+        for (int i = size - 1; i >= 0; i--) {
+            Slot slot = slots[(head + i) % slots.length];
+            if (tag.equals(slot.localName)) {
+                return slot.getAttributes().getValue(attributeName);
             }
         }
         return null;
@@ -115,10 +238,10 @@ public class QueuedContentHandler extends DefaultHandler {
 
     public void putAttribute(String tag, String attributeName, String data) {
         if (!isPresent(data)) return;
-        for (int i = queue.size() - 1; i >= 0; i--) {
-            QueuedItem queuedItem = queue.get(i);
-            if (tag.equals(queuedItem.getLocalName())) {
-                EDIAttributes attributes = queuedItem.getAttributes();
+        for (int i = size - 1; i >= 0; i--) {
+            Slot slot = slots[(head + i) % slots.length];
+            if (tag.equals(slot.localName)) {
+                EDIAttributes attributes = slot.getAttributes();
                 int index = attributes.getIndex(attributeName);
                 if (index >= 0)
                     attributes.removeAttribute(index);
@@ -130,13 +253,36 @@ public class QueuedContentHandler extends DefaultHandler {
     }
 
     EDIAttributes getFirstAttributes() {
-        if (queue.size() == 0)
+        if (size == 0)
             return null;
 
-        return queue.getFirst().getAttributes();
+        return slots[head].getAttributes();
     }
 
     public ContentHandler getWrappedContentHandler() {
         return wrappedHandler;
     }
+
+    /**
+     * A reusable entry in the queue, representing either a startElement, with its
+     * attributes and data, or an endElement.
+     */
+    private static class Slot {
+        private final EDIAttributes attributes = new EDIAttributes();
+        private boolean start;
+        private String uri;
+        private String localName;
+        private String qName;
+        private int charCount;
+        private int segmentCharCount;
+        private boolean hasData;
+        private int dataStart;
+        private int dataLength;
+
+        private EDIAttributes getAttributes() {
+            if (!start)
+                throw new RuntimeException("getAttributes() should not be called on an end item");
+            return attributes;
+        }
+    }
 }
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2005-2019 by BerryWorks Software, LLC. All rights reserved.
+ *
+ * This file is part of EDIReader. You may obtain a license for its use directly from
+ * BerryWorks Software, and you may also choose to use this software under the terms of the
+ * GPL version 3. Other products in the EDIReader software suite are available only by licensing
+ * with BerryWorks. Only those files bearing the GPL statement below are available under the GPL.
+ *
+ * EDIReader is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * EDIReader is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with EDIReader.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.berryworks.edireader.util.sax;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Defines the compact binary representation of a sequence of SAX calls
+ * written by SAXBinaryHandler and read by SAXBinaryReader.
+ * <p>
+ * The stream begins with a 4-byte signature and a version byte. Each SAX call is then
+ * represented by a single opcode byte followed by its operands. Integers are written as
+ * unsigned varints of 7 bits per byte, low-order bits first. Strings are written by
+ * reference: a varint of 0 represents null, 1 introduces a literal consisting of a
+ * varint char count followed by each char as a varint, and any other value n refers
+ * to the string in entry n-2 of a StringTable. Element and attribute names, URIs and
+ * types refer to one StringTable, while attribute values and character data refer to
+ * another, so that the short values that recur throughout EDI data are written in
+ * full only once in a while.
+ */
+abstract class SAXBinaryFormat {
+
+    static final byte[] SIGNATURE = {'E', 'S', 'A', 'X'};
+    static final int VERSION = 1;
+
+    static final int START_DOCUMENT = 1;
+    static final int END_DOCUMENT = 2;
+    static final int START_ELEMENT = 3;
+    static final int END_ELEMENT = 4;
+    static final int CHARACTERS = 5;
+    static final int END_OF_STREAM = 6;
+
+    static final int NULL_REFERENCE = 0;
+    static final int LITERAL = 1;
+    static final int FIRST_ENTRY = 2;
+
+    static final int NAME_TABLE_SIZE = 1024;
+    static final int VALUE_TABLE_SIZE = 4096;
+
+    /**
+     * Strings longer than this are always written as literals without entering them in the value table.
+     */
+    static final int MAX_VALUE_ENTRY_LENGTH = 64;
+
+    /**
+     * A fixed number of recently introduced strings, maintained identically by the writer and the reader.
+     * Each new string takes the next entry in turn, replacing whatever string held it before.
+     */
+    static class StringTable {
+        private final String[] entries;
+        private final Map<String, Integer> indexes;
+        private int next;
+
+        StringTable(int size, boolean writer) {
+            entries = new String[size];
+            indexes = writer ? new HashMap<>(2 * size) : null;
+        }
+
+        /**
+         * Returns the entry holding a string, or -1 if it is not held. Used only by the writer.
+         */
+        int indexOf(String s) {
+            Integer index = indexes.get(s);
+            return index == null ? -1 : index;
+        }
+
+        String get(int index) {
+            return entries[index];
+        }
+
+        void add(String s) {
+            String replaced = entries[next];
+            if (indexes != null) {
+                if (replaced != null)
+                    indexes.remove(replaced);
+                indexes.put(s, next);
+            }
+            entries[next] = s;
+            next = (next + 1) % entries.length;
+        }
+    }
+}
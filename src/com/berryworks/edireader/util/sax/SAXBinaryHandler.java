@@ -0,0 +1,256 @@
+/*
+ * Copyright 2005-2019 by BerryWorks Software, LLC. All rights reserved.
+ *
+ * This file is part of EDIReader. You may obtain a license for its use directly from
+ * BerryWorks Software, and you may also choose to use this software under the terms of the
+ * GPL version 3. Other products in the EDIReader software suite are available only by licensing
+ * with BerryWorks. Only those files bearing the GPL statement below are available under the GPL.
+ *
+ * EDIReader is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * EDIReader is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with EDIReader.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.berryworks.edireader.util.sax;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static com.berryworks.edireader.util.sax.SAXBinaryFormat.*;
+
+/**
+ * This implementation of a SAX ContentHandler
+ * turns the sequence of SAX method calls received from
+ * a parser into a compact binary stream that can be
+ * replayed by a SAXBinaryReader.
+ * <p>
+ * This is an alternative to SAXObjectHandler, producing much less data with much
+ * less work than Java serialization. Names are written in full only the first time
+ * they occur, and recurring short values are written as references to earlier
+ * occurrences. The output is buffered, and is flushed at the end of each document
+ * and by markEndOfStream().
+ */
+public class SAXBinaryHandler extends DefaultHandler {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final OutputStream outputStream;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int count;
+    private final StringTable names = new StringTable(NAME_TABLE_SIZE, true);
+    private final StringTable values = new StringTable(VALUE_TABLE_SIZE, true);
+    private int sAXEventsWritten;
+    private boolean disabled;
+
+    public SAXBinaryHandler(OutputStream outputStream) throws IOException {
+        this.outputStream = outputStream;
+        outputStream.write(SIGNATURE);
+        outputStream.write(VERSION);
+    }
+
+    @Override
+    public void startDocument() {
+        if (disabled)
+            return;
+
+        try {
+            writeOpcode(START_DOCUMENT);
+        } catch (IOException e) {
+            e.printStackTrace();
+            disable();
+        }
+    }
+
+    @Override
+    public void endDocument() {
+        if (disabled)
+            return;
+
+        try {
+            writeOpcode(END_DOCUMENT);
+            flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+            disable();
+        }
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) {
+        if (disabled)
+            return;
+
+        try {
+            writeOpcode(START_ELEMENT);
+            writeName(uri);
+            writeName(localName);
+            writeName(qName);
+            int n = attributes == null ? 0 : attributes.getLength();
+            writeVarint(n);
+            for (int i = 0; i < n; i++) {
+                writeName(attributes.getURI(i));
+                writeName(attributes.getLocalName(i));
+                writeName(attributes.getQName(i));
+                writeName(attributes.getType(i));
+                writeValue(attributes.getValue(i));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            disable();
+        }
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) {
+        if (disabled)
+            return;
+
+        try {
+            writeOpcode(END_ELEMENT);
+            writeName(uri);
+            writeName(localName);
+            writeName(qName);
+        } catch (IOException e) {
+            e.printStackTrace();
+            disable();
+        }
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) {
+        if (disabled)
+            return;
+
+        try {
+            writeOpcode(CHARACTERS);
+            if (length <= MAX_VALUE_ENTRY_LENGTH) {
+                writeValue(new String(ch, start, length));
+            } else {
+                writeVarint(LITERAL);
+                writeChars(ch, start, length);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            disable();
+        }
+    }
+
+    public int getSAXEventsWritten() {
+        return sAXEventsWritten;
+    }
+
+    public void markEndOfStream() throws IOException {
+        if (disabled)
+            return;
+
+        writeOpcode(END_OF_STREAM);
+        flush();
+    }
+
+    /**
+     * Writes any buffered data to the underlying OutputStream and flushes it.
+     *
+     * @throws IOException if thrown by the OutputStream
+     */
+    public void flush() throws IOException {
+        if (count > 0) {
+            outputStream.write(buffer, 0, count);
+            count = 0;
+        }
+        outputStream.flush();
+    }
+
+    public void disable() {
+        disabled = true;
+        try {
+            outputStream.close();
+        } catch (IOException ignore) {
+        }
+    }
+
+    private void writeOpcode(int opcode) throws IOException {
+        writeByte(opcode);
+        if (opcode != END_OF_STREAM)
+            sAXEventsWritten++;
+    }
+
+    private void writeName(String s) throws IOException {
+        if (s == null) {
+            writeVarint(NULL_REFERENCE);
+            return;
+        }
+        int index = names.indexOf(s);
+        if (index >= 0) {
+            writeVarint(FIRST_ENTRY + index);
+        } else {
+            writeVarint(LITERAL);
+            writeString(s);
+            names.add(s);
+        }
+    }
+
+    private void writeValue(String s) throws IOException {
+        if (s == null) {
+            writeVarint(NULL_REFERENCE);
+            return;
+        }
+        if (s.length() > MAX_VALUE_ENTRY_LENGTH) {
+            writeVarint(LITERAL);
+            writeString(s);
+            return;
+        }
+        int index = values.indexOf(s);
+        if (index >= 0) {
+            writeVarint(FIRST_ENTRY + index);
+        } else {
+            writeVarint(LITERAL);
+            writeString(s);
+            values.add(s);
+        }
+    }
+
+    private void writeString(String s) throws IOException {
+        int length = s.length();
+        writeVarint(length);
+        for (int i = 0; i < length; i++)
+            writeVarint(s.charAt(i));
+    }
+
+    private void writeChars(char[] ch, int start, int length) throws IOException {
+        writeVarint(length);
+        for (int i = start; i < start + length; i++)
+            writeVarint(ch[i]);
+    }
+
+    private void writeVarint(int value) throws IOException {
+        if (count + 5 > BUFFER_SIZE)
+            drain();
+        while ((value & ~0x7F) != 0) {
+            buffer[count++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[count++] = (byte) value;
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (count == BUFFER_SIZE)
+            drain();
+        buffer[count++] = (byte) b;
+    }
+
+    private void drain() throws IOException {
+        outputStream.write(buffer, 0, count);
+        count = 0;
+    }
+
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2005-2019 by BerryWorks Software, LLC. All rights reserved.
+ *
+ * This file is part of EDIReader. You may obtain a license for its use directly from
+ * BerryWorks Software, and you may also choose to use this software under the terms of the
+ * GPL version 3. Other products in the EDIReader software suite are available only by licensing
+ * with BerryWorks. Only those files bearing the GPL statement below are available under the GPL.
+ *
+ * EDIReader is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * EDIReader is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with EDIReader.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.berryworks.edireader.util.sax;
+
+import org.xml.sax.*;
+import org.xml.sax.helpers.AttributesImpl;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static com.berryworks.edireader.util.sax.SAXBinaryFormat.*;
+
+/**
+ * This class implements a playback facility so that
+ * a stream written by a SAXBinaryHandler can be used to make calls to
+ * an arbitrary SAX ContentHandler.
+ * <p>
+ * As with SAXObjectReader, each call to parse() continues reading the stream
+ * from where the previous call left off, making SAX calls through the next
+ * endDocument. An EOFException is thrown if the end of the stream, or the
+ * point marked by SAXBinaryHandler.markEndOfStream(), is reached instead.
+ */
+public class SAXBinaryReader implements XMLReader {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private ContentHandler contentHandler;
+    private InputStream inputStream;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private final StringTable names = new StringTable(NAME_TABLE_SIZE, false);
+    private final StringTable values = new StringTable(VALUE_TABLE_SIZE, false);
+    private final AttributesImpl attributes = new AttributesImpl();
+    private char[] chars = new char[256];
+
+    public void setContentHandler(ContentHandler contentHandler) {
+        this.contentHandler = contentHandler;
+    }
+
+    public ContentHandler getContentHandler() {
+        return contentHandler;
+    }
+
+    public void parse(InputSource input) throws IOException, SAXException {
+        /*
+          Parse may be called multiple times, so establish the inputStream
+          only on the first call. Thereafter, just read further into the inputStream
+          used on the previous call.
+         */
+        if (inputStream == null) {
+            inputStream = input.getByteStream();
+            for (byte b : SIGNATURE) {
+                if (readByte() != b)
+                    throw new SAXException("Input is not a binary SAX event stream");
+            }
+            int version = readByte();
+            if (version != VERSION)
+                throw new SAXException("Unsupported binary SAX event stream version " + version);
+        }
+
+        while (true) {
+            int opcode = readByte();
+            switch (opcode) {
+                case START_DOCUMENT:
+                    contentHandler.startDocument();
+                    break;
+                case END_DOCUMENT:
+                    contentHandler.endDocument();
+                    return;
+                case START_ELEMENT: {
+                    String uri = readName();
+                    String localName = readName();
+                    String qName = readName();
+                    attributes.clear();
+                    for (int n = readVarint(); n > 0; n--) {
+                        String attributeUri = readName();
+                        String attributeLocalName = readName();
+                        String attributeQName = readName();
+                        String type = readName();
+                        attributes.addAttribute(attributeUri, attributeLocalName, attributeQName, type, readValue());
+                    }
+                    contentHandler.startElement(uri, localName, qName, attributes);
+                    break;
+                }
+                case END_ELEMENT: {
+                    String uri = readName();
+                    String localName = readName();
+                    String qName = readName();
+                    contentHandler.endElement(uri, localName, qName);
+                    break;
+                }
+                case CHARACTERS: {
+                    int reference = readVarint();
+                    if (reference == LITERAL) {
+                        int length = readChars();
+                        if (length <= MAX_VALUE_ENTRY_LENGTH)
+                            values.add(new String(chars, 0, length));
+                        contentHandler.characters(chars, 0, length);
+                    } else if (reference != NULL_REFERENCE) {
+                        String value = values.get(reference - FIRST_ENTRY);
+                        int length = value.length();
+                        ensureChars(length);
+                        value.getChars(0, length, chars, 0);
+                        contentHandler.characters(chars, 0, length);
+                    }
+                    break;
+                }
+                case END_OF_STREAM:
+                    throw new EOFException();
+                default:
+                    throw new SAXException("Unexpected code " + opcode + " in binary SAX event stream");
+            }
+        }
+    }
+
+    private String readName() throws IOException, SAXException {
+        int reference = readVarint();
+        if (reference == NULL_REFERENCE)
+            return null;
+        if (reference == LITERAL) {
+            String s = new String(chars, 0, readChars());
+            names.add(s);
+            return s;
+        }
+        return names.get(reference - FIRST_ENTRY);
+    }
+
+    private String readValue() throws IOException, SAXException {
+        int reference = readVarint();
+        if (reference == NULL_REFERENCE)
+            return null;
+        if (reference == LITERAL) {
+            int length = readChars();
+            String s = new String(chars, 0, length);
+            if (length <= MAX_VALUE_ENTRY_LENGTH)
+                values.add(s);
+            return s;
+        }
+        return values.get(reference - FIRST_ENTRY);
+    }
+
+    /**
+     * Reads the char count and chars of a literal into the chars array, returning the count.
+     */
+    private int readChars() throws IOException, SAXException {
+        int length = readVarint();
+        ensureChars(length);
+        for (int i = 0; i < length; i++)
+            chars[i] = (char) readVarint();
+        return length;
+    }
+
+    private void ensureChars(int length) {
+        if (chars.length < length)
+            chars = new char[Math.max(length, 2 * chars.length)];
+    }
+
+    private int readVarint() throws IOException, SAXException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new SAXException("Malformed integer in binary SAX event stream");
+    }
+
+    private int readByte() throws IOException {
+        if (position == limit) {
+            limit = inputStream.read(buffer, 0, BUFFER_SIZE);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                throw new EOFException();
+            }
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    public boolean getFeature(String name) throws SAXNotRecognizedException, SAXNotSupportedException {
+        return false;
+    }
+
+    public void setFeature(String name, boolean value) throws SAXNotRecognizedException, SAXNotSupportedException {
+    }
+
+    public Object getProperty(String name) throws SAXNotRecognizedException, SAXNotSupportedException {
+        return null;
+    }
+
+    public void setProperty(String name, Object value) throws SAXNotRecognizedException, SAXNotSupportedException {
+    }
+
+    public void setEntityResolver(EntityResolver resolver) {
+    }
+
+    public EntityResolver getEntityResolver() {
+        return null;
+    }
+
+    public void setDTDHandler(DTDHandler handler) {
+    }
+
+    public DTDHandler getDTDHandler() {
+        return null;
+    }
+
+    public void setErrorHandler(ErrorHandler handler) {
+    }
+
+    public ErrorHandler getErrorHandler() {
+        return null;
+    }
+
+    public void parse(String systemId) throws IOException, SAXException {
+    }
+}
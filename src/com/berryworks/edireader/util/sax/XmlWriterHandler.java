@@ -0,0 +1,367 @@
+/*
+ * Copyright 2005-2019 by BerryWorks Software, LLC. All rights reserved.
+ *
+ * This file is part of EDIReader. You may obtain a license for its use directly from
+ * BerryWorks Software, and you may also choose to use this software under the terms of the
+ * GPL version 3. Other products in the EDIReader software suite are available only by licensing
+ * with BerryWorks. Only those files bearing the GPL statement below are available under the GPL.
+ *
+ * EDIReader is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * EDIReader is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with EDIReader.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.berryworks.edireader.util.sax;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This implementation of a SAX ContentHandler writes the XML
+ * represented by the SAX calls it receives directly to a Writer.
+ * <p>
+ * It is intended for the XML generated by EDIReader, and produces the same output
+ * as passing a SAXSource to the identity Transformer with a StreamResult, without the
+ * overhead of the general purpose serializer: an XML declaration, the same escaping of
+ * special characters in data and attribute values, an empty-element tag for an element
+ * with no content, and a default namespace declaration for an element with a namespace
+ * URI that is not already in scope. With indentation enabled, the output is the same
+ * as that written through an XmlFormatter.
+ * <p>
+ * Output is buffered and the Writer is flushed, but not closed, at the end of the document.
+ */
+public class XmlWriterHandler extends DefaultHandler {
+
+    private static final String SEPARATOR = System.getProperty("line.separator");
+    private static final String INDENT = "    ";
+    private static final String DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Writer writer;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int count;
+    private boolean indent;
+
+    private boolean startTagOpen;
+    private final List<String> namespaces = new ArrayList<>();
+    private final List<String> pendingPrefixes = new ArrayList<>();
+    private final List<String> pendingUris = new ArrayList<>();
+
+    // State equivalent to that of an XmlFormatter, used only if indenting
+    private boolean afterTagClose;
+    private char mostRecentCharOfInterest;
+    private int indentLevel;
+
+    public XmlWriterHandler(Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Writes the XML to an OutputStream in UTF-8.
+     *
+     * @param outputStream receives the XML
+     */
+    public XmlWriterHandler(OutputStream outputStream) {
+        this(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+    }
+
+    public boolean isIndent() {
+        return indent;
+    }
+
+    /**
+     * Enables indentation of the XML output for readability.
+     *
+     * @param indent true to indent nested elements on separate lines
+     */
+    public void setIndent(boolean indent) {
+        this.indent = indent;
+    }
+
+    @Override
+    public void startDocument() throws SAXException {
+        write(DECLARATION);
+        mostRecentCharOfInterest = '?';
+        afterTagClose = true;
+    }
+
+    @Override
+    public void endDocument() throws SAXException {
+        closeStartTag();
+        flush();
+    }
+
+    @Override
+    public void startPrefixMapping(String prefix, String uri) {
+        pendingPrefixes.add(prefix);
+        pendingUris.add(uri);
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+        closeStartTag();
+        String name = isPresent(qName) ? qName : localName;
+        openTag(name.charAt(0));
+        write(name, afterTagClose ? 1 : 0);
+
+        String defaultNamespace = namespaces.isEmpty() ? "" : namespaces.get(namespaces.size() - 1);
+        for (int i = 0; i < pendingPrefixes.size(); i++) {
+            String prefix = pendingPrefixes.get(i);
+            if (isPresent(prefix)) {
+                writeAttribute("xmlns:" + prefix, pendingUris.get(i));
+            } else {
+                defaultNamespace = pendingUris.get(i);
+                writeAttribute("xmlns", defaultNamespace);
+            }
+        }
+        if (isPresent(uri) && name.indexOf(':') < 0 && !uri.equals(defaultNamespace)) {
+            defaultNamespace = uri;
+            writeAttribute("xmlns", uri);
+        }
+        pendingPrefixes.clear();
+        pendingUris.clear();
+        namespaces.add(defaultNamespace);
+
+        if (attributes != null) {
+            for (int i = 0; i < attributes.getLength(); i++) {
+                String attributeName = attributes.getQName(i);
+                writeAttribute(isPresent(attributeName) ? attributeName : attributes.getLocalName(i), attributes.getValue(i));
+            }
+        }
+        startTagOpen = true;
+        afterTagClose = false;
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        namespaces.remove(namespaces.size() - 1);
+        if (startTagOpen) {
+            write('/');
+            write('>');
+            startTagOpen = false;
+            mostRecentCharOfInterest = '/';
+            afterTagClose = true;
+            return;
+        }
+        openTag('/');
+        if (!afterTagClose)
+            mostRecentCharOfInterest = '/';
+        write('/');
+        write(isPresent(qName) ? qName : localName, 0);
+        write('>');
+        afterTagClose = true;
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) throws SAXException {
+        if (length == 0)
+            return;
+        closeStartTag();
+        int end = start + length;
+        for (int i = start; i < end; i++) {
+            char c = ch[i];
+            switch (c) {
+                case '&':
+                    write("&amp;");
+                    break;
+                case '<':
+                    write("&lt;");
+                    break;
+                case '>':
+                    write("&gt;");
+                    break;
+                case '\n':
+                    write(SEPARATOR);
+                    break;
+                case '\t':
+                    write(c);
+                    break;
+                default:
+                    if (c < 0x20 || (c >= 0x7F && c <= 0x9F)) {
+                        writeCharacterReference(c);
+                    } else if (Character.isSurrogate(c)) {
+                        i = writeSurrogatePair(ch, i, end);
+                    } else {
+                        write(c);
+                        if (indent && (c == '/' || c == '?') && !(afterTagClose && i == start))
+                            mostRecentCharOfInterest = c;
+                    }
+            }
+        }
+        afterTagClose = false;
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+        characters(ch, start, length);
+    }
+
+    /**
+     * Writes any buffered output to the Writer and flushes it.
+     *
+     * @throws SAXException if an IOException occurs
+     */
+    public void flush() throws SAXException {
+        drain();
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    /**
+     * Writes the '&lt;' beginning a start or end tag, preceded by a line separator and
+     * indentation where an XmlFormatter would place them, which is wherever the tag
+     * immediately follows another tag.
+     *
+     * @param next the char following the '&lt;'
+     */
+    private void openTag(char next) throws SAXException {
+        if (afterTagClose) {
+            if (indent) {
+                if (next == '/') {
+                    if (indentLevel > 0) indentLevel--;
+                } else if (mostRecentCharOfInterest == '?' || mostRecentCharOfInterest == '/') {
+                    mostRecentCharOfInterest = '<';
+                } else {
+                    indentLevel++;
+                }
+                write(SEPARATOR);
+                for (int i = 0; i < indentLevel; i++)
+                    write(INDENT);
+            }
+        } else {
+            mostRecentCharOfInterest = '<';
+        }
+        write('<');
+    }
+
+    private void closeStartTag() throws SAXException {
+        if (startTagOpen) {
+            write('>');
+            startTagOpen = false;
+            afterTagClose = true;
+        }
+    }
+
+    private void writeAttribute(String name, String value) throws SAXException {
+        write(' ');
+        write(name, 0);
+        write('=');
+        write('"');
+        if (value != null) {
+            for (int i = 0, n = value.length(); i < n; i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '&':
+                        write("&amp;");
+                        break;
+                    case '<':
+                        write("&lt;");
+                        break;
+                    case '>':
+                        write("&gt;");
+                        break;
+                    case '"':
+                        write("&quot;");
+                        break;
+                    default:
+                        if (c < 0x20) {
+                            writeCharacterReference(c);
+                        } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(value.charAt(i + 1))) {
+                            writeCharacterReference(Character.toCodePoint(c, value.charAt(++i)));
+                        } else if (Character.isSurrogate(c)) {
+                            throw new SAXException("Invalid UTF-16 surrogate in attribute value");
+                        } else {
+                            write(c);
+                            if (c == '/' || c == '?')
+                                mostRecentCharOfInterest = c;
+                        }
+                }
+            }
+        }
+        write('"');
+    }
+
+    private int writeSurrogatePair(char[] ch, int i, int end) throws SAXException {
+        if (Character.isHighSurrogate(ch[i]) && i + 1 < end && Character.isLowSurrogate(ch[i + 1])) {
+            writeCharacterReference(Character.toCodePoint(ch[i], ch[i + 1]));
+            return i + 1;
+        }
+        throw new SAXException("Invalid UTF-16 surrogate in character data");
+    }
+
+    private void writeCharacterReference(int codePoint) throws SAXException {
+        write("&#");
+        write(Integer.toString(codePoint));
+        write(';');
+    }
+
+    /**
+     * Writes a name, noting any chars that an XmlFormatter would take into account.
+     */
+    private void write(String name, int trackFrom) throws SAXException {
+        int n = name.length();
+        for (int i = trackFrom; i < n; i++) {
+            char c = name.charAt(i);
+            if (c == '/' || c == '?')
+                mostRecentCharOfInterest = c;
+        }
+        write(name);
+    }
+
+    private void write(String s) throws SAXException {
+        int n = s.length();
+        if (count + n > BUFFER_SIZE) {
+            drain();
+            if (n > BUFFER_SIZE) {
+                try {
+                    writer.write(s);
+                } catch (IOException e) {
+                    throw new SAXException(e);
+                }
+                return;
+            }
+        }
+        s.getChars(0, n, buffer, count);
+        count += n;
+    }
+
+    private void write(char c) throws SAXException {
+        if (count == BUFFER_SIZE)
+            drain();
+        buffer[count++] = c;
+    }
+
+    private void drain() throws SAXException {
+        if (count > 0) {
+            try {
+                writer.write(buffer, 0, count);
+            } catch (IOException e) {
+                throw new SAXException(e);
+            }
+            count = 0;
+        }
+    }
+
+    private static boolean isPresent(String s) {
+        return s != null && s.length() > 0;
+    }
+}